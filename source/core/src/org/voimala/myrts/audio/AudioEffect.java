@@ -12,6 +12,7 @@ public class AudioEffect {
     private Sound sound;
     private long soundStartedPlayingTimestamp = 0;
     private float volume;
+    private boolean isTaggedToBeRemoved = false;
 
     /** Default constructor creates a global audio effect.
      * @param volume Between 0 and 1. */
@@ -33,6 +34,48 @@ public class AudioEffect {
         play();
     }
 
+    /** Creates an audio effect which is not playing. Used by the audio effect pool, see playLocal. */
+    public AudioEffect(final WorldController worldController) {
+        this.worldController = worldController;
+    }
+
+    /** Starts playing this effect as a local audio effect. Used for effects taken from the pool.
+     * @param volume Between 0 and 1. */
+    public void playLocal(final Sound sound, final float volume, final float x, final float y) {
+        this.sound = sound;
+        audioEffectType = AudioEffectType.LOCAL;
+        if (position == null) {
+            position = new Vector2(x, y);
+        } else {
+            position.set(x, y);
+        }
+        this.volume = volume;
+        play();
+    }
+
+    /** Called when the effect is put to the pool. */
+    public void reset() {
+        sound = null;
+        audioEffectType = AudioEffectType.GLOBAL;
+        soundStartedPlayingTimestamp = 0;
+        isTaggedToBeRemoved = false;
+    }
+
+    /** Marks the effect to be removed from the world in the end of the world update.
+     * @return Returns false if the effect was already marked. */
+    public boolean tagToBeRemoved() {
+        if (isTaggedToBeRemoved) {
+            return false;
+        }
+
+        isTaggedToBeRemoved = true;
+        return true;
+    }
+
+    public boolean isTaggedToBeRemoved() {
+        return isTaggedToBeRemoved;
+    }
+
     public void updateState() {
         // TODO Implement master sound and local sound volume.
 
@@ -1,15 +1,31 @@
 package org.voimala.myrts.graphics;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Sprite;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 
+/** Sprites are loaded from the texture atlas if it exists. The atlas is created from the images under
+ * graphics folder by the desktop project's packTextures task. Keeping the images on the same texture allows
+ * SpriteBatch to draw ground, units, ammunition and effects without flushing between them.
+ *
+ * If the atlas does not exist or an image is not in the atlas, the image is loaded to its own texture. */
 public class SpriteContainer {
 
     private static final String TAG = SpriteContainer.class.getName();
+    public static final String ATLAS_PATH = "atlas/game.atlas";
+    /** Region names in the atlas are image paths relative to this folder, without the file extension. */
+    private static final String ATLAS_IMAGE_FOLDER = "graphics/";
+
     private static SpriteContainer instanceOfThis = null;
     private HashMap<String, Sprite> sprites = new HashMap<String, Sprite>();
+    private TextureAtlas atlas = null;
+    /** Textures of the sprites which were not found in the atlas. */
+    private ArrayList<Texture> separateTextures = new ArrayList<Texture>();
 
     private SpriteContainer() {}
 
@@ -34,11 +50,53 @@ public class SpriteContainer {
         sprites.put(id, sprite);
     }
 
+    /** Loads the texture atlas if it has not been loaded yet and it exists. */
+    public void loadAtlas() {
+        if (atlas != null) {
+            return;
+        }
+
+        FileHandle atlasFile = Gdx.files.internal(ATLAS_PATH);
+        if (!atlasFile.exists()) {
+            Gdx.app.debug(TAG, "WARNING: Texture atlas " + ATLAS_PATH + " not found, images are loaded separately.");
+            return;
+        }
+
+        atlas = new TextureAtlas(atlasFile);
+        Gdx.app.debug(TAG, "Texture atlas loaded, " + atlas.getTextures().size + " pages.");
+    }
+
+    /** Adds a sprite from the atlas, or from the image file if the image is not in the atlas.
+     * @param imagePath Path of the image file, for example graphics/weapons/m4-bullet.png */
+    public void loadSprite(final String id, final String imagePath) {
+        if (atlas != null && imagePath.startsWith(ATLAS_IMAGE_FOLDER)) {
+            String regionName = imagePath.substring(ATLAS_IMAGE_FOLDER.length(), imagePath.lastIndexOf('.'));
+            Sprite sprite = atlas.createSprite(regionName);
+            if (sprite != null) {
+                addSprite(id, sprite);
+                return;
+            }
+
+            Gdx.app.debug(TAG, "WARNING: Image " + imagePath + " not found in the texture atlas.");
+        }
+
+        Texture texture = new Texture(imagePath);
+        separateTextures.add(texture);
+        addSprite(id, new Sprite(texture));
+    }
+
     public void freeResources() {
-        for (Sprite sprite : sprites.values()) {
-            sprite.getTexture().dispose();
+        if (atlas != null) {
+            atlas.dispose();
+            atlas = null;
+        }
+
+        for (Texture texture : separateTextures) {
+            texture.dispose();
         }
 
+        separateTextures.clear();
+        sprites.clear();
         Gdx.app.debug(TAG, "Sprites disposed.");
     }
 }
@@ -1,8 +1,9 @@
 package org.voimala.myrts.movements;
 
-import com.badlogic.gdx.math.Vector2;
 import org.voimala.myrts.screens.gameplay.world.AbstractGameObject;
 
+/** Bullets move straight towards their angle with constant velocity. The movement itself is done for all
+ * bullets at once by TransformStore.integrateLinearMovement, this class only gives the velocity to the store. */
 public class BulletMovement extends AbstractMovement {
 
     public BulletMovement(final AbstractGameObject owner) {
@@ -11,18 +12,13 @@ public class BulletMovement extends AbstractMovement {
 
     @Override
     public void update(float deltaTime) {
-        handlePhysicalMotion(deltaTime);
+        // See the class comment.
     }
 
-    private void handlePhysicalMotion(float deltaTime) {
-        handleVelocity(deltaTime);
-    }
-
-    private void handleVelocity(float deltaTime) {
-        Vector2 nextPosition = new Vector2(
-                (float) (owner.getX() + Math.cos(owner.getAngleInRadians()) * currentVelocity * deltaTime),
-                (float) (owner.getY() + Math.sin(owner.getAngleInRadians()) * currentVelocity * deltaTime));
-        owner.setPosition(nextPosition);
+    @Override
+    public void setVelocity(final double velocity) {
+        super.setVelocity(velocity);
+        owner.setLinearVelocity(velocity);
     }
 
 }
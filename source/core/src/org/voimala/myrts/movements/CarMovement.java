@@ -30,9 +30,8 @@ public class CarMovement extends AbstractMovement {
     }
 
     private void handlePhysicalVelocity(float deltaTime) {
-        Vector2 nextPosition = new Vector2(
-                (float) (owner.getX() + Math.cos(owner.getAngleInRadians()) * currentVelocity * deltaTime),
-                (float) (owner.getY() + Math.sin(owner.getAngleInRadians()) * currentVelocity * deltaTime));
+        float nextX = (float) (owner.getX() + Math.cos(owner.getAngleInRadians()) * currentVelocity * deltaTime);
+        float nextY = (float) (owner.getY() + Math.sin(owner.getAngleInRadians()) * currentVelocity * deltaTime);
 
         // Make sure that the next position is not inside obstacle
 
@@ -43,7 +42,7 @@ public class CarMovement extends AbstractMovement {
                 continue;
             }
 
-            if (unit.onCollision(nextPosition)) {
+            if (unit.onCollision(new Vector2(nextX, nextY))) {
                 isCollisionDetected = true;
                 break;
             }
@@ -53,7 +52,7 @@ public class CarMovement extends AbstractMovement {
         // TODO Count buildings, trees, rocks etc. too
 
         if (!isCollisionDetected) {
-            owner.setPosition(nextPosition);
+            owner.setPosition(nextX, nextY);
         }
     }
 
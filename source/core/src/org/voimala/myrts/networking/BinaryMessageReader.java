@@ -0,0 +1,60 @@
+package org.voimala.myrts.networking;
+
+import org.voimala.myrts.exceptions.UnableToHandleNetworkMessage;
+
+/** Reads the payload of a binary network message. See BinaryMessageWriter for the format. */
+public class BinaryMessageReader {
+
+    private final byte[] buffer;
+    private final int end;
+    private int position;
+    private final int opcode;
+
+    /** @param offset The position of the opcode.
+     *  @param length Payload length including the opcode. */
+    public BinaryMessageReader(final byte[] buffer, final int offset, final int length) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.end = offset + length;
+        this.opcode = readByte();
+    }
+
+    public int getOpcode() {
+        return opcode;
+    }
+
+    public int readByte() {
+        if (position >= end) {
+            throw new UnableToHandleNetworkMessage("Binary network message ended unexpectedly.");
+        }
+
+        return buffer[position++] & 0xFF;
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int readByte = readByte();
+            value |= (long) (readByte & 0x7F) << shift;
+            if ((readByte & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new UnableToHandleNetworkMessage("Varint in binary network message is too long.");
+    }
+
+    public long readSignedVarLong() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public float readCoordinate() {
+        return (float) readSignedVarLong() / BinaryMessageWriter.COORDINATE_SCALE;
+    }
+
+    public boolean hasRemaining() {
+        return position < end;
+    }
+
+}
@@ -0,0 +1,91 @@
+package org.voimala.myrts.networking;
+
+/** Writes a binary network message. Binary messages are sent alongside the text messages when both ends support
+ * them, see RTSProtocolManager.
+ *
+ * A binary message (frame) is in the following format:
+ * FRAME_MARKER (1 byte) | payload length (varint) | opcode (1 byte) | content
+ * Payload length includes the opcode. Text messages always start with '<', so the marker tells the reader
+ * which kind of message follows.
+ *
+ * Numbers are written as varints: 7 bits per byte, the highest bit tells if more bytes follow.
+ * Signed numbers are zigzag encoded so that small negative numbers are short too. */
+public class BinaryMessageWriter {
+
+    public static final byte FRAME_MARKER = 0;
+    /** Coordinates are sent as fixed-point numbers with the precision of 1 / COORDINATE_SCALE pixels. */
+    public static final int COORDINATE_SCALE = 16;
+
+    private byte[] payload = new byte[64];
+    private int payloadLength = 0;
+
+    public BinaryMessageWriter(final int opcode) {
+        writeByte(opcode);
+    }
+
+    public BinaryMessageWriter writeByte(final int value) {
+        ensureCapacity(1);
+        payload[payloadLength++] = (byte) value;
+        return this;
+    }
+
+    /** @param value Should not be negative. Use writeSignedVarLong for signed numbers. */
+    public BinaryMessageWriter writeVarLong(final long value) {
+        ensureCapacity(10);
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            payload[payloadLength++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        payload[payloadLength++] = (byte) remaining;
+        return this;
+    }
+
+    public BinaryMessageWriter writeSignedVarLong(final long value) {
+        return writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /** Writes the coordinate rounded to the precision of 1 / COORDINATE_SCALE pixels. */
+    public BinaryMessageWriter writeCoordinate(final float coordinate) {
+        return writeSignedVarLong(toFixedPoint(coordinate));
+    }
+
+    /** @return Returns the coordinate rounded the same way as writeCoordinate rounds it. Text messages use
+     * this so that a command has the same value in both forms. */
+    public static float roundCoordinate(final float coordinate) {
+        return (float) toFixedPoint(coordinate) / COORDINATE_SCALE;
+    }
+
+    private static long toFixedPoint(final float coordinate) {
+        return Math.round((double) coordinate * COORDINATE_SCALE);
+    }
+
+    private void ensureCapacity(final int bytes) {
+        if (payloadLength + bytes > payload.length) {
+            byte[] payloadCopy = new byte[Math.max(payload.length * 2, payloadLength + bytes)];
+            System.arraycopy(payload, 0, payloadCopy, 0, payloadLength);
+            payload = payloadCopy;
+        }
+    }
+
+    /** @return Returns the whole frame which can be sent to the network. */
+    public byte[] toFrame() {
+        int lengthBytes = 1;
+        for (int remaining = payloadLength >>> 7; remaining != 0; remaining >>>= 7) {
+            lengthBytes++;
+        }
+
+        byte[] frame = new byte[1 + lengthBytes + payloadLength];
+        int position = 0;
+        frame[position++] = FRAME_MARKER;
+        int remaining = payloadLength;
+        while ((remaining & ~0x7F) != 0) {
+            frame[position++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        frame[position++] = (byte) remaining;
+        System.arraycopy(payload, 0, frame, position, payloadLength);
+        return frame;
+    }
+
+}
@@ -0,0 +1,11 @@
+package org.voimala.myrts.networking;
+
+/** Handles one type of binary network message. Handlers are registered to RTSProtocolManager by the opcode
+ * of the message. */
+public interface BinaryNetworkMessageHandler {
+
+    /** @param message Reader positioned after the opcode.
+     *  @return True if the message was handled. */
+    boolean handleBinaryNetworkMessage(final BinaryMessageReader message, final NetworkConnection client);
+
+}
@@ -1,10 +1,17 @@
 package org.voimala.myrts.networking;
 
+import org.voimala.utility.SingleProducerSingleConsumerQueue;
+
 import java.util.ArrayList;
 
+/** Chat messages are added by the network thread and read by the game thread. New messages are passed through
+ * a lock-free queue and moved to the message list when the game thread reads the messages. */
 public class ChatContainer {
 
+    /** Used only by the game thread. */
     private ArrayList<ChatMessage> chatMessages = new ArrayList<ChatMessage>();
+    private final SingleProducerSingleConsumerQueue<ChatMessage> newChatMessages =
+            new SingleProducerSingleConsumerQueue<ChatMessage>();
 
     private static ChatContainer instanceOfThis;
     private long latestMessageReceivedTimestamp = 0;
@@ -19,7 +26,17 @@ public class ChatContainer {
         return instanceOfThis;
     }
 
+    private void takeNewChatMessages() {
+        ChatMessage chatMessage;
+        while ((chatMessage = newChatMessages.poll()) != null) {
+            chatMessages.add(chatMessage);
+            latestMessageReceivedTimestamp = chatMessage.getTimeStamp();
+        }
+    }
+
+    /** Called by the game thread. */
     public ArrayList<ChatMessage> getChatMessages() {
+        takeNewChatMessages();
         return chatMessages;
     }
 
@@ -29,6 +46,7 @@ public class ChatContainer {
      * the second newest message and so on.
      */
     public String[] getNewestChatMessagesAsStrings(int maxNumberOfMessages) {
+        takeNewChatMessages();
         ArrayList<String> messages = new ArrayList<String>();
 
         for (int i = 0; i < chatMessages.size(); i++) {
@@ -57,16 +75,20 @@ public class ChatContainer {
         return messagesArray;
     }
 
+    /** Called by the game thread. */
     public void clearAllChatMessages() {
+        takeNewChatMessages();
         chatMessages.clear();
     }
 
+    /** Called by the network thread. */
     public void addChatMessage(final ChatMessage chatMessage) {
-        chatMessages.add(chatMessage);
-        latestMessageReceivedTimestamp = System.currentTimeMillis();
+        newChatMessages.offer(chatMessage);
     }
 
+    /** Called by the game thread. */
     public long getMillisecondsPassedSinceLastMessageReceived() {
+        takeNewChatMessages();
         return System.currentTimeMillis() - latestMessageReceivedTimestamp;
     }
 
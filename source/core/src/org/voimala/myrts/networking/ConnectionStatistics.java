@@ -0,0 +1,54 @@
+package org.voimala.myrts.networking;
+
+/** Round trip times and gaps between received messages of one connection. Thread-safe. */
+public class ConnectionStatistics {
+
+    private static final int MAX_SAMPLES = 64;
+
+    private final LatencyStatistics roundTripStatistics = new LatencyStatistics(MAX_SAMPLES);
+    /** Time between received messages. Large gaps mean that the other end or the connection stalls. */
+    private final LatencyStatistics messageGapStatistics = new LatencyStatistics(MAX_SAMPLES);
+    private volatile long latestMessageReceivedTimestamp = 0;
+
+    /** @return Returns the current time for ping timestamps. The timestamp is only compared to the time when
+     * the answer arrives, so it does not have to be the same in both ends. */
+    public static long getTimestampMs() {
+        return System.nanoTime() / 1000000;
+    }
+
+    /** @param pingTimestampMs The timestamp that was sent in PING and returned in PONG. */
+    public void handlePongReceived(final long pingTimestampMs) {
+        roundTripStatistics.addSample(getTimestampMs() - pingTimestampMs);
+    }
+
+    public void handleMessageReceived() {
+        long now = getTimestampMs();
+        if (latestMessageReceivedTimestamp != 0) {
+            messageGapStatistics.addSample(now - latestMessageReceivedTimestamp);
+        }
+
+        latestMessageReceivedTimestamp = now;
+    }
+
+    public LatencyStatistics getRoundTripStatistics() {
+        return roundTripStatistics;
+    }
+
+    public LatencyStatistics getMessageGapStatistics() {
+        return messageGapStatistics;
+    }
+
+    /** @return Returns for example "RTT 42 ms (min 40, p95 48, jitter 2), message gap p95 170 ms" */
+    @Override
+    public String toString() {
+        if (roundTripStatistics.getSampleCount() == 0) {
+            return "RTT not measured yet";
+        }
+
+        return "RTT " + roundTripStatistics.getAverage() + " ms (min " + roundTripStatistics.getMin()
+                + ", p95 " + roundTripStatistics.getPercentile(95)
+                + ", jitter " + roundTripStatistics.getJitter() + "), message gap p95 "
+                + messageGapStatistics.getPercentile(95) + " ms";
+    }
+
+}
@@ -0,0 +1,119 @@
+package org.voimala.myrts.networking;
+
+import org.voimala.myrts.screens.gameplay.world.GameStateHashTree;
+
+/** Used by the server to find out which object differs between two players when the game goes out of sync.
+ * The locator walks down the game state hash trees of the players (see GameStateHashTree): it asks both players
+ * for the children of a node, compares them, and continues from the first child which differs. */
+public class DesyncLocator {
+
+    private final long simTick;
+    private final int playerNumberA;
+    private final int playerNumberB;
+    private String path = GameStateHashTree.ROOT_PATH;
+    private String entriesA = null;
+    private String entriesB = null;
+    private boolean hasResponseA = false;
+    private boolean hasResponseB = false;
+    private String result = null;
+
+    public DesyncLocator(final long simTick, final int playerNumberA, final int playerNumberB) {
+        this.simTick = simTick;
+        this.playerNumberA = playerNumberA;
+        this.playerNumberB = playerNumberB;
+    }
+
+    /** Stores a player's response for the current path. When both players have responded, compares the
+     * responses and moves to the next path or finishes.
+     * @param entries Child entries of the node, see GameStateHashTree.getChildEntries. Null if the player
+     *                did not have the node.
+     * @return True if the locator moved to the next path or finished. */
+    public boolean addResponse(final int playerNumber, final long simTick, final String path, final String entries) {
+        if (isFinished() || simTick != this.simTick || !path.equals(this.path)) {
+            return false; // Old or unexpected response
+        }
+
+        if (playerNumber == playerNumberA) {
+            entriesA = entries;
+            hasResponseA = true;
+        } else if (playerNumber == playerNumberB) {
+            entriesB = entries;
+            hasResponseB = true;
+        }
+
+        if (!hasResponseA || !hasResponseB) {
+            return false;
+        }
+
+        if (entriesA == null || entriesB == null) {
+            result = "Player " + (entriesA == null ? playerNumberA : playerNumberB) + " does not have "
+                    + path + " of SimTick " + simTick + ".";
+        } else {
+            compareEntries();
+        }
+
+        hasResponseA = false;
+        hasResponseB = false;
+        return true;
+    }
+
+    private void compareEntries() {
+        String[] childrenA = entriesA.isEmpty() ? new String[0] : entriesA.split(",");
+        String[] childrenB = entriesB.isEmpty() ? new String[0] : entriesB.split(",");
+
+        for (int i = 0; i < Math.max(childrenA.length, childrenB.length); i++) {
+            if (i >= childrenA.length || i >= childrenB.length) {
+                result = "Object count differs at " + path + ": player " + playerNumberA + " has "
+                        + childrenA.length + " children, player " + playerNumberB + " has " + childrenB.length + ".";
+                return;
+            }
+
+            if (childrenA[i].equals(childrenB[i])) {
+                continue;
+            }
+
+            String keyA = childrenA[i].split(":")[0];
+            String keyB = childrenB[i].split(":")[0];
+            if (!keyA.equals(keyB)) {
+                result = "Objects differ at " + path + ": player " + playerNumberA + " has " + keyA
+                        + ", player " + playerNumberB + " has " + keyB + ".";
+            } else if (keyA.startsWith(GameStateHashTree.LEAF_KEY_PREFIX)) {
+                result = "Object id " + keyA.substring(GameStateHashTree.LEAF_KEY_PREFIX.length())
+                        + " differs between players " + playerNumberA + " and " + playerNumberB + ".";
+            } else {
+                path = path + "." + keyA;
+            }
+
+            return;
+        }
+
+        result = "Players " + playerNumberA + " and " + playerNumberB + " have the same state at " + path + ".";
+    }
+
+    public long getSimTick() {
+        return simTick;
+    }
+
+    public int getPlayerNumberA() {
+        return playerNumberA;
+    }
+
+    public int getPlayerNumberB() {
+        return playerNumberB;
+    }
+
+    /** @return Returns the path whose children should be requested next. */
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isFinished() {
+        return result != null;
+    }
+
+    /** @return Returns a description of the found difference, or null if the locator has not finished. */
+    public String getResult() {
+        return result;
+    }
+
+}
@@ -0,0 +1,107 @@
+package org.voimala.myrts.networking;
+
+import java.util.Arrays;
+
+/** Keeps the latest latency samples and calculates statistics from them. Thread-safe. */
+public class LatencyStatistics {
+
+    private final long[] samples;
+    private int sampleCount = 0;
+    private int nextSampleIndex = 0;
+
+    /** @param maxSamples How many of the latest samples are used. */
+    public LatencyStatistics(final int maxSamples) {
+        samples = new long[maxSamples];
+    }
+
+    public synchronized void addSample(final long latencyMs) {
+        samples[nextSampleIndex] = latencyMs;
+        nextSampleIndex = (nextSampleIndex + 1) % samples.length;
+        sampleCount = Math.min(sampleCount + 1, samples.length);
+    }
+
+    public synchronized int getSampleCount() {
+        return sampleCount;
+    }
+
+    /** @return Returns the latest sample, or 0 if there are no samples. */
+    public synchronized long getLatest() {
+        if (sampleCount == 0) {
+            return 0;
+        }
+
+        return samples[(nextSampleIndex - 1 + samples.length) % samples.length];
+    }
+
+    /** @return Returns the average of the samples, or 0 if there are no samples. */
+    public synchronized long getAverage() {
+        if (sampleCount == 0) {
+            return 0;
+        }
+
+        long sum = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            sum += samples[i];
+        }
+
+        return sum / sampleCount;
+    }
+
+    /** @return Returns the average distance of the samples from their average, or 0 if there are no samples. */
+    public synchronized long getJitter() {
+        if (sampleCount == 0) {
+            return 0;
+        }
+
+        long average = getAverage();
+        long sum = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            sum += Math.abs(samples[i] - average);
+        }
+
+        return sum / sampleCount;
+    }
+
+    /** @return Returns the smallest sample, or 0 if there are no samples. */
+    public synchronized long getMin() {
+        if (sampleCount == 0) {
+            return 0;
+        }
+
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < sampleCount; i++) {
+            min = Math.min(min, samples[i]);
+        }
+
+        return min;
+    }
+
+    /** @param percentile 1-100
+     * @return Returns the smallest sample which is larger than or equal to the given percent of the samples,
+     * or 0 if there are no samples. */
+    public synchronized long getPercentile(final int percentile) {
+        if (sampleCount == 0) {
+            return 0;
+        }
+
+        long[] sortedSamples = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sortedSamples);
+        int index = (int) Math.ceil(percentile / 100.0 * sampleCount) - 1;
+        return sortedSamples[Math.max(0, Math.min(index, sampleCount - 1))];
+    }
+
+    public synchronized long getMax() {
+        long max = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            max = Math.max(max, samples[i]);
+        }
+
+        return max;
+    }
+
+    public synchronized void reset() {
+        sampleCount = 0;
+        nextSampleIndex = 0;
+    }
+
+}
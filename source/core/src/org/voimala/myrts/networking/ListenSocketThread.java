@@ -1,5 +1,6 @@
 package org.voimala.myrts.networking;
 
+import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Net;
 import com.badlogic.gdx.net.Socket;
@@ -7,9 +8,10 @@ import com.badlogic.gdx.net.SocketHints;
 import org.voimala.myrts.app.GameMain;
 import org.voimala.myrts.screens.gameplay.world.Player;
 
-import java.io.InputStreamReader;
+import java.util.Timer;
+import java.util.TimerTask;
 
-public class ListenSocketThread extends Thread {
+public class ListenSocketThread extends Thread implements NetworkConnection, NetworkMessageReader.BinaryMessageListener {
 
     private static final String TAG = ListenSocketThread.class.getName();
     private SocketHints socketHints;
@@ -23,6 +25,12 @@ public class ListenSocketThread extends Thread {
 
     private Player player;
     private SocketType socketType;
+    /** True if the other end supports binary messages. */
+    private volatile boolean isBinaryProtocolEnabled = false;
+    private final ConnectionStatistics connectionStatistics = new ConnectionStatistics();
+    /** Pings the server. Not used when the server is connected to a player, because the server pings all
+     * players itself. */
+    private volatile Timer pingTimer;
 
     /** Used when the server creates a new thread for the connected client. */
     public ListenSocketThread(final ServerThread serverThread, final Socket socket) {
@@ -73,36 +81,27 @@ public class ListenSocketThread extends Thread {
             Gdx.app.debug(TAG, "Listening messages from the player.");
         }
 
-        InputStreamReader inputStream = new InputStreamReader(socket.getInputStream());
-        char[] readCharacter = new char[1]; // Read character will be stored in this array
-        StringBuilder constructMessage = new StringBuilder();
+        NetworkMessageReader messageReader = new NetworkMessageReader(socket.getInputStream(),
+                NetworkManager.getInstance().NETWORK_MESSAGE_MAX_LENGTH_CHARACTERS,
+                this);
 
         while (running) {
             try {
-                // Read one character from buffer or wait until there is a message in the buffer
-                if (inputStream.read(readCharacter) == -1) {
+                // Wait until there is a whole message in the buffer
+                String message = messageReader.readMessage();
+                if (message == null) {
                     // Socket disconnected.
                     running = false;
                 } else {
-                    constructMessage.append(readCharacter[0]);
-
-                    // Message is too long?
-                    if (constructMessage.length() > NetworkManager.getInstance().NETWORK_MESSAGE_MAX_LENGTH_CHARACTERS) {
-                        constructMessage = new StringBuilder();
-                        Gdx.app.debug(TAG, "WARNING: Network message was too long and was rejected!");
-                    }
-
-                    if (readCharacter[0] == '>') { // End of the message reached, handle message
+                    if (Gdx.app.getLogLevel() >= Application.LOG_DEBUG) {
                         if (socketType == SocketType.SERVER_SOCKET) {
-                            Gdx.app.debug(TAG, "Got message from the server: " + constructMessage);
+                            Gdx.app.debug(TAG, "Got message from the server: " + message);
                         } else if (socketType == SocketType.PLAYER_SOCKET) {
-                            Gdx.app.debug(TAG, "Got message from the player " + player.getNumber() + ": " + constructMessage);
+                            Gdx.app.debug(TAG, "Got message from the player " + player.getNumber() + ": " + message);
                         }
-
-                        RTSProtocolManager.getInstance().handleNetworkMessage(constructMessage.toString(),
-                                this);
-                        constructMessage = new StringBuilder();
                     }
+
+                    RTSProtocolManager.getInstance().handleNetworkMessage(message, this);
                 }
             } catch (Exception e) {
                 Gdx.app.debug(TAG, "ERROR: while reading buffer: " + e.getMessage());
@@ -111,8 +110,15 @@ public class ListenSocketThread extends Thread {
         }
     }
 
+    @Override
+    public void onBinaryMessage(final byte[] buffer, final int offset, final int length) {
+        RTSProtocolManager.getInstance().handleBinaryNetworkMessage(new BinaryMessageReader(buffer, offset, length),
+                this);
+    }
+
     private void handleDisconnection() {
         connectionState = ConnectionState.NOT_CONNECTED;
+        stopPingTimer();
         if (socketType == SocketType.PLAYER_SOCKET && serverThread != null) {
             serverThread.removeClient(this);
         }
@@ -133,6 +139,7 @@ public class ListenSocketThread extends Thread {
                 socket = Gdx.net.newClientSocket(Net.Protocol.TCP, ip, port, socketHints);
                 connectionState = ConnectionState.CONNECTED;
                 Gdx.app.debug(TAG, "Connected to the server.");
+                startPingTimer();
                 sendMessage(RTSProtocolManager.getInstance().createNetworkMessageNewConnectionInfo(
                         GameMain.getInstance().getPlayer().getName(),
                         GameMain.getInstance().getPlayer().getNetworkId()));
@@ -153,15 +160,47 @@ public class ListenSocketThread extends Thread {
 
     }
 
-    public void sendMessage(final String message) {
+    private void startPingTimer() {
+        pingTimer = new Timer(ListenSocketThread.class.getName() + "-Ping", true);
+        pingTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                sendMessage(RTSProtocolManager.getInstance().createNetworkMessagePing(
+                        ConnectionStatistics.getTimestampMs()));
+            }
+        }, NetworkManager.getInstance().PING_INTERVAL_MS, NetworkManager.getInstance().PING_INTERVAL_MS);
+    }
+
+    private void stopPingTimer() {
+        if (pingTimer != null) {
+            pingTimer.cancel();
+        }
+    }
+
+    public synchronized void sendMessage(final byte[] binaryMessage) {
         try {
+            socket.getOutputStream().write(binaryMessage);
+            socket.getOutputStream().flush();
+        } catch (Exception e) {
             if (socketType == SocketType.SERVER_SOCKET) {
-                Gdx.app.debug(TAG, "Player " + GameMain.getInstance().getPlayer().getNumber() + ": Sending message to the server: " + message);
+                Gdx.app.debug(TAG, "WARNING: Unable to send binary message to server: " + e.getMessage());
             } else if (socketType == SocketType.PLAYER_SOCKET) {
-                Gdx.app.debug(TAG, "Server: Sending message to the player " + player.getNumber() + ": " + message);
+                Gdx.app.debug(TAG, "WARNING: Unable to send binary message to player: " + e.getMessage());
+            }
+        }
+    }
+
+    public synchronized void sendMessage(final String message) {
+        try {
+            if (Gdx.app.getLogLevel() >= Application.LOG_DEBUG) {
+                if (socketType == SocketType.SERVER_SOCKET) {
+                    Gdx.app.debug(TAG, "Player " + GameMain.getInstance().getPlayer().getNumber() + ": Sending message to the server: " + message);
+                } else if (socketType == SocketType.PLAYER_SOCKET) {
+                    Gdx.app.debug(TAG, "Server: Sending message to the player " + player.getNumber() + ": " + message);
+                }
             }
 
-            socket.getOutputStream().write(message.getBytes());
+            socket.getOutputStream().write(message.getBytes(NetworkMessageReader.CHARSET));
             socket.getOutputStream().flush();
         } catch (Exception e) {
             if (socketType == SocketType.SERVER_SOCKET) {
@@ -175,6 +214,7 @@ public class ListenSocketThread extends Thread {
 
     public void die() {
         running = false;
+        stopPingTimer();
 
         if (socket != null) {
             socket.dispose();
@@ -197,4 +237,16 @@ public class ListenSocketThread extends Thread {
     public SocketType getSocketType() {
         return socketType;
     }
+
+    public ConnectionStatistics getConnectionStatistics() {
+        return connectionStatistics;
+    }
+
+    public boolean isBinaryProtocolEnabled() {
+        return isBinaryProtocolEnabled;
+    }
+
+    public void setBinaryProtocolEnabled(final boolean isBinaryProtocolEnabled) {
+        this.isBinaryProtocolEnabled = isBinaryProtocolEnabled;
+    }
 }
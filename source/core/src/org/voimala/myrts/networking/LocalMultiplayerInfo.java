@@ -1,15 +1,22 @@
 package org.voimala.myrts.networking;
 
+import org.voimala.utility.SingleProducerSingleConsumerQueue;
+
 import java.util.HashMap;
 
 /** This class contains local information about the multiplayer game. Things like player names,
- * current map name etc. are kept in this class. */
+ * current map name etc. are kept in this class.
+ *
+ * Slot changes are received by the network thread and passed to the game thread through a lock-free queue. */
 public class LocalMultiplayerInfo {
 
     private static LocalMultiplayerInfo instanceOfThis;
 
-    /** This should be identical to the server's hash map. See: ServerThreads class.*/
+    /** This should be identical to the server's hash map. See: ServerThreads class.
+     * Used only by the game thread. */
     private HashMap<Integer, String> slots = new HashMap<Integer, String>();
+    private final SingleProducerSingleConsumerQueue<SlotUpdate> slotUpdates =
+            new SingleProducerSingleConsumerQueue<SlotUpdate>();
     private String mapName;
 
     private LocalMultiplayerInfo() {
@@ -30,7 +37,28 @@ public class LocalMultiplayerInfo {
         return instanceOfThis;
     }
 
+    private static class SlotUpdate {
+        private final int slotNumber;
+        private final String content;
+
+        private SlotUpdate(final int slotNumber, final String content) {
+            this.slotNumber = slotNumber;
+            this.content = content;
+        }
+    }
+
+    /** Called by the network thread. */
+    public void updateSlot(final int slotNumber, final String content) {
+        slotUpdates.offer(new SlotUpdate(slotNumber, content));
+    }
+
+    /** Called by the game thread. */
     public HashMap<Integer, String> getSlots() {
+        SlotUpdate slotUpdate;
+        while ((slotUpdate = slotUpdates.poll()) != null) {
+            slots.put(slotUpdate.slotNumber, slotUpdate.content);
+        }
+
         return slots;
     }
 }
@@ -0,0 +1,32 @@
+package org.voimala.myrts.networking;
+
+import org.voimala.myrts.screens.gameplay.world.Player;
+
+/** Connection to the other end: to the server when this is a player, or to a player when this is the server.
+ * Network message handlers use this for answering. */
+public interface NetworkConnection {
+
+    void sendMessage(final String message);
+
+    /** Sends bytes which are already encoded: a whole binary frame (see BinaryMessageWriter) or a UTF-8
+     * encoded text message. The array is not copied, so the same array can be given to many connections.
+     * It must not be modified afterwards. */
+    void sendMessage(final byte[] binaryMessage);
+
+    /** @return SERVER_SOCKET if the other end is the server, PLAYER_SOCKET if it is a player. */
+    SocketType getSocketType();
+
+    /** @return Returns the information of the player in the other end. */
+    Player getPlayerInfo();
+
+    /** @return True if the other end supports binary messages. */
+    boolean isBinaryProtocolEnabled();
+
+    void setBinaryProtocolEnabled(final boolean isBinaryProtocolEnabled);
+
+    ConnectionStatistics getConnectionStatistics();
+
+    /** Closes the connection. */
+    void die();
+
+}
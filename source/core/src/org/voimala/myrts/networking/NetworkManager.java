@@ -10,6 +10,18 @@ public class NetworkManager {
     public final int DEFAULT_PORT = 52829;
     public final long NETWORK_MESSAGE_MAX_LENGTH_CHARACTERS = 262144;
     public final int SLOTS_MAX = 30;
+    /** If true, binary messages are used with players and servers that support them. Otherwise only
+     * text messages are used. */
+    public final boolean BINARY_PROTOCOL_ENABLED = true;
+    /** If true, the server handles all players in one thread with non-blocking sockets. Otherwise every player
+     * has its own thread. */
+    public final boolean SELECTOR_SERVER_ENABLED = true;
+    /** The server disconnects a player if more than this many bytes are waiting to be sent to the player. */
+    public final long CONNECTION_MAX_QUEUED_BYTES = 8388608;
+    /** How long the server waits for the missing inputs of a SimTick before it sends the turn without them. */
+    public final long TURN_DEADLINE_MS = 3000;
+    /** How often the players and the server send PING messages to each other. */
+    public final long PING_INTERVAL_MS = 1000;
 
     private boolean isHost = false;
     private int joinPort;
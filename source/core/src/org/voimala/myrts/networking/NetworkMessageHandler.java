@@ -0,0 +1,10 @@
+package org.voimala.myrts.networking;
+
+/** Handles one type of text network message. Handlers are registered to RTSProtocolManager by the opcode of
+ * the message, which is the part between '<' and the first '|' or '>'. */
+public interface NetworkMessageHandler {
+
+    /** @return True if the message was handled. */
+    boolean handleNetworkMessage(final String message, final NetworkConnection client);
+
+}
@@ -0,0 +1,261 @@
+package org.voimala.myrts.networking;
+
+import com.badlogic.gdx.Gdx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+/** Reads network messages from a stream. Every text message ends with '>'. Binary messages
+ * (see BinaryMessageWriter) start with a marker byte and their length, and are given to BinaryMessageListener.
+ *
+ * Bytes are read from the stream in large chunks and scanned for the end of the message. A message which is
+ * completely inside one chunk is decoded straight from the read buffer. Only messages which continue to the next
+ * chunk are collected to a separate buffer. Both buffers are reused.
+ *
+ * Messages are UTF-8 encoded. In UTF-8 the byte of '>' is never a part of another character, so the end of the
+ * message can be found without decoding. */
+public class NetworkMessageReader {
+
+    private static final String TAG = NetworkMessageReader.class.getName();
+    public static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final int READ_BUFFER_SIZE = 16384;
+    private static final byte MESSAGE_END = '>';
+
+    private final InputStream inputStream;
+    private final long maxMessageLengthCharacters;
+
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+    /** Wraps readBuffer when reading from a channel. */
+    private ByteBuffer readByteBuffer = null;
+    private int readPosition = 0;
+    private int readLimit = 0;
+
+    /** The beginning of a message which did not fit in the read buffer. */
+    private byte[] partialMessage = new byte[1024];
+    private int partialMessageLength = 0;
+    private long messageLengthCharacters = 0;
+
+    private final BinaryMessageListener binaryMessageListener;
+    private boolean isReadingBinaryMessage = false;
+    /** -1 until the length of the binary message has been read. */
+    private int binaryMessageLength = -1;
+    private long binaryMessageLengthValue = 0;
+    private int binaryMessageLengthShift = 0;
+    /** Bytes of a rejected binary message that have not been skipped yet. */
+    private long binaryBytesToSkip = 0;
+
+    public interface BinaryMessageListener {
+        /** Called when a whole binary message has been read. The buffer is reused after the method returns.
+         * @param length Payload length including the opcode. */
+        void onBinaryMessage(final byte[] buffer, final int offset, final int length);
+    }
+
+    /** @param maxMessageLengthCharacters Longer messages are rejected. For binary messages this is the maximum
+     *                                   number of bytes.
+     *  @param binaryMessageListener Receives binary messages. If null, binary messages are skipped. */
+    public NetworkMessageReader(final InputStream inputStream,
+                                final long maxMessageLengthCharacters,
+                                final BinaryMessageListener binaryMessageListener) {
+        this.inputStream = inputStream;
+        this.maxMessageLengthCharacters = maxMessageLengthCharacters;
+        this.binaryMessageListener = binaryMessageListener;
+    }
+
+    public NetworkMessageReader(final InputStream inputStream, final long maxMessageLengthCharacters) {
+        this(inputStream, maxMessageLengthCharacters, null);
+    }
+
+    /** Creates a reader for a non-blocking channel, see readFrom and pollMessage. */
+    public NetworkMessageReader(final long maxMessageLengthCharacters,
+                                final BinaryMessageListener binaryMessageListener) {
+        this(null, maxMessageLengthCharacters, binaryMessageListener);
+    }
+
+    /** Waits until a whole text message has been read. Binary messages read before it are given to
+     * the listener.
+     * @return Returns the message including '<' and '>' characters, or null if the stream has ended. */
+    public String readMessage() throws IOException {
+        while (true) {
+            if (readPosition == readLimit) {
+                int readBytes = inputStream.read(readBuffer);
+                if (readBytes == -1) {
+                    return null;
+                }
+
+                readPosition = 0;
+                readLimit = readBytes;
+            }
+
+            String message = readMessageFromReadBuffer();
+            if (message != null) {
+                return message;
+            }
+        }
+    }
+
+    /** Used with non-blocking channels. Reads bytes from the channel if everything read earlier has
+     * already been handled. Messages can then be taken with pollMessage.
+     * @return Returns the number of bytes read, 0 if there was nothing to read or the earlier bytes have not
+     * been handled yet, or -1 if the channel has ended. */
+    public int readFrom(final ReadableByteChannel channel) throws IOException {
+        if (readPosition < readLimit) {
+            return 0;
+        }
+
+        if (readByteBuffer == null) {
+            readByteBuffer = ByteBuffer.wrap(readBuffer);
+        }
+
+        readByteBuffer.clear();
+        int readBytes = channel.read(readByteBuffer);
+        if (readBytes > 0) {
+            readPosition = 0;
+            readLimit = readBytes;
+        }
+
+        return readBytes;
+    }
+
+    /** Used with non-blocking channels. Does not wait: handles the bytes already read by readFrom.
+     * Binary messages are given to the listener.
+     * @return Returns the next text message, or null if more bytes have to be read first. */
+    public String pollMessage() throws IOException {
+        if (readPosition == readLimit) {
+            return null;
+        }
+
+        return readMessageFromReadBuffer();
+    }
+
+    /** Handles bytes from the read buffer until a whole text message has been read or the buffer runs out.
+     * @return Returns the text message, or null if the read buffer ran out before the end of the message. */
+    private String readMessageFromReadBuffer() throws IOException {
+        while (readPosition < readLimit) {
+            if (isReadingBinaryMessage) {
+                readBinaryMessage();
+                continue;
+            }
+
+            if (partialMessageLength == 0 && messageLengthCharacters == 0
+                    && readBuffer[readPosition] == BinaryMessageWriter.FRAME_MARKER) {
+                readPosition++;
+                isReadingBinaryMessage = true;
+                binaryMessageLength = -1;
+                binaryMessageLengthValue = 0;
+                binaryMessageLengthShift = 0;
+                continue;
+            }
+
+            int messageStart = readPosition;
+            for (int i = readPosition; i < readLimit; i++) {
+                byte readByte = readBuffer[i];
+                if ((readByte & 0xC0) != 0x80) { // Not a continuation byte, so a new character starts here
+                    messageLengthCharacters++;
+                }
+
+                // Message is too long?
+                if (messageLengthCharacters > maxMessageLengthCharacters) {
+                    partialMessageLength = 0;
+                    messageLengthCharacters = 0;
+                    messageStart = i + 1;
+                    Gdx.app.debug(TAG, "WARNING: Network message was too long and was rejected!");
+                    continue;
+                }
+
+                if (readByte == MESSAGE_END) {
+                    readPosition = i + 1;
+                    messageLengthCharacters = 0;
+
+                    if (partialMessageLength == 0) {
+                        return new String(readBuffer, messageStart, readPosition - messageStart, CHARSET);
+                    }
+
+                    appendToPartialMessage(messageStart, readPosition - messageStart);
+                    String message = new String(partialMessage, 0, partialMessageLength, CHARSET);
+                    partialMessageLength = 0;
+                    return message;
+                }
+            }
+
+            appendToPartialMessage(messageStart, readLimit - messageStart);
+            readPosition = readLimit;
+        }
+
+        return null;
+    }
+
+    /** Reads as much of the binary message as there is in the read buffer. */
+    private void readBinaryMessage() throws IOException {
+        while (binaryMessageLength == -1 && readPosition < readLimit) {
+            byte readByte = readBuffer[readPosition++];
+            binaryMessageLengthValue |= (long) (readByte & 0x7F) << binaryMessageLengthShift;
+            binaryMessageLengthShift += 7;
+
+            if ((readByte & 0x80) == 0) {
+                if (binaryMessageLengthValue > maxMessageLengthCharacters) {
+                    Gdx.app.debug(TAG, "WARNING: Binary network message was too long and was rejected!");
+                    binaryBytesToSkip = binaryMessageLengthValue;
+                    binaryMessageLength = 0;
+                } else {
+                    binaryMessageLength = (int) binaryMessageLengthValue;
+                }
+            } else if (binaryMessageLengthShift > 35) {
+                throw new IOException("Invalid binary network message length.");
+            }
+        }
+
+        if (binaryMessageLength == -1) {
+            return; // Wait for the rest of the length
+        }
+
+        if (binaryBytesToSkip > 0) {
+            int skippedBytes = (int) Math.min(binaryBytesToSkip, readLimit - readPosition);
+            readPosition += skippedBytes;
+            binaryBytesToSkip -= skippedBytes;
+            if (binaryBytesToSkip == 0) {
+                isReadingBinaryMessage = false;
+            }
+            return;
+        }
+
+        if (partialMessageLength == 0 && readLimit - readPosition >= binaryMessageLength) {
+            // The whole message is in the read buffer
+            int messageStart = readPosition;
+            readPosition += binaryMessageLength;
+            isReadingBinaryMessage = false;
+            notifyBinaryMessage(readBuffer, messageStart, binaryMessageLength);
+            return;
+        }
+
+        int copiedBytes = Math.min(binaryMessageLength - partialMessageLength, readLimit - readPosition);
+        appendToPartialMessage(readPosition, copiedBytes);
+        readPosition += copiedBytes;
+
+        if (partialMessageLength == binaryMessageLength) {
+            partialMessageLength = 0;
+            isReadingBinaryMessage = false;
+            notifyBinaryMessage(partialMessage, 0, binaryMessageLength);
+        }
+    }
+
+    private void notifyBinaryMessage(final byte[] buffer, final int offset, final int length) {
+        if (binaryMessageListener != null && length > 0) {
+            binaryMessageListener.onBinaryMessage(buffer, offset, length);
+        }
+    }
+
+    private void appendToPartialMessage(final int start, final int length) {
+        if (partialMessageLength + length > partialMessage.length) {
+            byte[] partialMessageCopy = new byte[Math.max(partialMessage.length * 2, partialMessageLength + length)];
+            System.arraycopy(partialMessage, 0, partialMessageCopy, 0, partialMessageLength);
+            partialMessage = partialMessageCopy;
+        }
+
+        System.arraycopy(readBuffer, start, partialMessage, partialMessageLength, length);
+        partialMessageLength += length;
+    }
+
+}
@@ -11,10 +11,16 @@ import org.voimala.myrts.screens.gameplay.input.commands.AbstractRTSCommand;
 import org.voimala.myrts.screens.gameplay.input.commands.RTSCommandEmpty;
 import org.voimala.myrts.screens.gameplay.input.commands.RTSCommandMoveUnit;
 import org.voimala.myrts.screens.gameplay.input.commands.RTSCommandType;
+import org.voimala.myrts.screens.gameplay.multiplayer.MultiplayerSynchronizationManager;
+import org.voimala.myrts.screens.gameplay.multiplayer.TurnConfig;
 import org.voimala.myrts.screens.gameplay.world.WorldController;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /** This class is used to sendInputsToOtherPlayers network messages that respect the game's protocol. */
 
@@ -23,10 +29,42 @@ public class RTSProtocolManager {
 
     private static final String TAG = RTSProtocolManager.class.getName();
     private static RTSProtocolManager instanceOfThis = null;
+    /** Sent in HASH_TREE message when the requested node is not available. */
+    private static final String HASH_TREE_NODE_NOT_AVAILABLE = "NONE";
+
+    /** Name of the binary protocol version. Sent in NEW_CONNECTION_INFO by players who support it.
+     * If the server supports it too, it answers with PROTOCOL message. */
+    public static final String BINARY_PROTOCOL_NAME = "BINARY2";
+    /** Player inputs sent by a player to the server: simTick, commands */
+    private static final int BINARY_OPCODE_INPUT = 1;
+    /** Inputs of all players sent by the server to the players: simTick, playerCount,
+     * and playerNumber, commands for each player */
+    private static final int BINARY_OPCODE_TURN = 2;
+    private static final int BINARY_COMMAND_NO_INPUT = 0;
+    private static final int BINARY_COMMAND_UNIT_MOVE = 1;
     private WorldController worldController;
 
+    /** Handlers are registered by the network message opcode. Messages are handled by network threads. */
+    private final ConcurrentHashMap<String, RegisteredHandler<NetworkMessageHandler>> networkMessageHandlers =
+            new ConcurrentHashMap<String, RegisteredHandler<NetworkMessageHandler>>();
+    /** Index = binary opcode. */
+    private final AtomicReferenceArray<RegisteredHandler<BinaryNetworkMessageHandler>> binaryNetworkMessageHandlers =
+            new AtomicReferenceArray<RegisteredHandler<BinaryNetworkMessageHandler>>(256);
+    private final AtomicLong unknownNetworkMessageCount = new AtomicLong();
+
+    private static class RegisteredHandler<T> {
+        private final T handler;
+        private final AtomicLong handledCount = new AtomicLong();
+        private final AtomicLong rejectedCount = new AtomicLong();
+
+        private RegisteredHandler(final T handler) {
+            this.handler = handler;
+        }
+    }
+
     private RTSProtocolManager() {
         Gdx.app.setLogLevel(GameMain.LOG_LEVEL);
+        registerNetworkMessageHandlers();
     }
 
     public static RTSProtocolManager getInstance() {
@@ -41,39 +79,246 @@ public class RTSProtocolManager {
         this.worldController = worldController;
     }
 
-    public boolean handleNetworkMessage(final String message, final ListenSocketThread listenSocketThread) {
+    private void registerNetworkMessageHandlers() {
+        registerNetworkMessageHandler("MOTD", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                return handleNetworkMessageMotd(message);
+            }
+        });
+        registerNetworkMessageHandler("INPUT", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                return handleNetworkMessageInput(message, client);
+            }
+        });
+        registerNetworkMessageHandler("TURN", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                return handleNetworkMessageTurn(message, client);
+            }
+        });
+        registerNetworkMessageHandler("TURN_CONFIG", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                return handleNetworkMessageTurnConfig(message, client);
+            }
+        });
+        registerNetworkMessageHandler("LATENCY", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                return handleNetworkMessageLatency(message, client);
+            }
+        });
+        registerNetworkMessageHandler("CHAT", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                return handleNetworkMessageChat(message, client.getSocketType());
+            }
+        });
+        registerNetworkMessageHandler("PING", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                return handleNetworkMessagePing(message, client);
+            }
+        });
+        registerNetworkMessageHandler("PONG", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                return handleNetworkMessagePong(message, client);
+            }
+        });
+        registerNetworkMessageHandler("SLOT", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                return handleNetworkMessageSlot(message, client.getSocketType());
+            }
+        });
+        registerNetworkMessageHandler("NEW_CONNECTION_INFO", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                return handleNetworkMessageNewConnectionInfo(message, client);
+            }
+        });
+        registerNetworkMessageHandler("ADMIN_RIGHTS", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                return handleNetworkMessageAdminRights(message, client.getSocketType());
+            }
+        });
+        registerNetworkMessageHandler("ADMIN", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                return handleNetworkMessageAdminStart(message, client);
+            }
+        });
+        registerNetworkMessageHandler("COMMAND_AND_CONQUER", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                return handleNetworkMessageStartGame(message, client.getSocketType());
+            }
+        });
+        registerNetworkMessageHandler("HASH", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                return handleNetworkMessageGameStateHash(message, client);
+            }
+        });
+        registerNetworkMessageHandler("HASH_TREE_REQUEST", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                return handleNetworkMessageGameStateHashTreeRequest(message, client);
+            }
+        });
+        registerNetworkMessageHandler("HASH_TREE", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                return handleNetworkMessageGameStateHashTree(message, client);
+            }
+        });
+        registerNetworkMessageHandler("PROTOCOL", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                return handleNetworkMessageProtocol(message, client);
+            }
+        });
+        registerBinaryNetworkMessageHandler(BINARY_OPCODE_INPUT, new BinaryNetworkMessageHandler() {
+            @Override
+            public boolean handleBinaryNetworkMessage(final BinaryMessageReader message,
+                                                      final NetworkConnection client) {
+                return handleBinaryNetworkMessageInput(message, client);
+            }
+        });
+        registerBinaryNetworkMessageHandler(BINARY_OPCODE_TURN, new BinaryNetworkMessageHandler() {
+            @Override
+            public boolean handleBinaryNetworkMessage(final BinaryMessageReader message,
+                                                      final NetworkConnection client) {
+                return handleBinaryNetworkMessageTurn(message, client);
+            }
+        });
+    }
+
+    /** Sets the handler for the text messages which have the given opcode, for example "CHAT" for
+     * <CHAT|nick|message>. Replaces the previous handler of the opcode. */
+    public void registerNetworkMessageHandler(final String opcode, final NetworkMessageHandler handler) {
+        networkMessageHandlers.put(opcode, new RegisteredHandler<NetworkMessageHandler>(handler));
+    }
+
+    /** Sets the handler for the binary messages which have the given opcode (0-255).
+     * Replaces the previous handler of the opcode. */
+    public void registerBinaryNetworkMessageHandler(final int opcode, final BinaryNetworkMessageHandler handler) {
+        binaryNetworkMessageHandlers.set(opcode, new RegisteredHandler<BinaryNetworkMessageHandler>(handler));
+    }
+
+    /** @return Returns the part between '<' and the first '|' or '>', or null if the message does not
+     * start with '<'. */
+    public static String getNetworkMessageOpcode(final String message) {
+        if (message.length() < 2 || message.charAt(0) != '<') {
+            return null;
+        }
+
+        int opcodeEnd = 1;
+        while (opcodeEnd < message.length()) {
+            char character = message.charAt(opcodeEnd);
+            if (character == '|' || character == '>') {
+                break;
+            }
+            opcodeEnd++;
+        }
+
+        return message.substring(1, opcodeEnd);
+    }
+
+    public boolean handleNetworkMessage(final String message, final NetworkConnection listenSocketThread) {
+        listenSocketThread.getConnectionStatistics().handleMessageReceived();
+        String opcode = getNetworkMessageOpcode(message);
+        RegisteredHandler<NetworkMessageHandler> registeredHandler =
+                opcode == null ? null : networkMessageHandlers.get(opcode);
+
+        if (registeredHandler == null) {
+            unknownNetworkMessageCount.incrementAndGet();
+            Gdx.app.debug(TAG, "WARNING: Unknown message: " + message);
+            return false;
+        }
+
         try {
-            if (handleNetworkMessageMotd(message)
-                    || handleNetworkMessageInput(message, listenSocketThread)
-                    || handleNetworkMessageChat(message, listenSocketThread.getSocketType())
-                    || handleNetworkMessagePing(message, listenSocketThread.getSocketType())
-                    || handleNetworkMessagePong(message, listenSocketThread.getSocketType())
-                    || handleNetworkMessageSlot(message, listenSocketThread.getSocketType())
-                    || handleNetworkMessageNewConnectionInfo(message, listenSocketThread)
-                    || handleNetworkMessageAdminRights(message, listenSocketThread.getSocketType())
-                    || handleNetworkMessageAdminStart(message, listenSocketThread)
-                    || handleNetworkMessageStartGame(message, listenSocketThread.getSocketType())
-                    || handleNetworkMessageGameStateHash(message, listenSocketThread)) {
+            if (registeredHandler.handler.handleNetworkMessage(message, listenSocketThread)) {
+                registeredHandler.handledCount.incrementAndGet();
                 return true;
-            } else {
-                Gdx.app.debug(TAG, "WARNING: Unable to handle message: " + message);
-                return false;
             }
+
+            registeredHandler.rejectedCount.incrementAndGet();
+            Gdx.app.debug(TAG, "WARNING: Unable to handle message: " + message);
+            return false;
         } catch (Exception e) {
-            Gdx.app.debug(TAG, "WARNING: An exception was thrown while reading network message: " + e.getMessage());
+            registeredHandler.rejectedCount.incrementAndGet();
+            Gdx.app.debug(TAG, "WARNING: " + e.getClass().getSimpleName() + " was thrown while handling "
+                    + opcode + " message: " + e.getMessage());
             return false;
         }
     }
 
-    private boolean handleNetworkMessageMotd(final String message) {
-        if (message.startsWith("<MOTD|")) {
-            String[] messageSplitted = splitNetworkMessage(message);
-            ChatContainer.getInstance().addChatMessage(new ChatMessage("Server", messageSplitted[1], System.currentTimeMillis()));
-            Gdx.app.debug(TAG, "Message of the day: " + messageSplitted[1]);
-            return true;
+    public boolean handleBinaryNetworkMessage(final BinaryMessageReader message,
+                                              final NetworkConnection listenSocketThread) {
+        listenSocketThread.getConnectionStatistics().handleMessageReceived();
+        RegisteredHandler<BinaryNetworkMessageHandler> registeredHandler =
+                binaryNetworkMessageHandlers.get(message.getOpcode());
+
+        if (registeredHandler == null) {
+            unknownNetworkMessageCount.incrementAndGet();
+            Gdx.app.debug(TAG, "WARNING: Unknown binary message with opcode " + message.getOpcode());
+            return false;
         }
 
-        return false;
+        try {
+            if (registeredHandler.handler.handleBinaryNetworkMessage(message, listenSocketThread)) {
+                registeredHandler.handledCount.incrementAndGet();
+                return true;
+            }
+
+            registeredHandler.rejectedCount.incrementAndGet();
+            Gdx.app.debug(TAG, "WARNING: Unable to handle binary message with opcode " + message.getOpcode());
+            return false;
+        } catch (Exception e) {
+            registeredHandler.rejectedCount.incrementAndGet();
+            Gdx.app.debug(TAG, "WARNING: " + e.getClass().getSimpleName() + " was thrown while handling "
+                    + "binary message with opcode " + message.getOpcode() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** @return Returns the number of successfully handled messages with the given opcode. */
+    public long getHandledNetworkMessageCount(final String opcode) {
+        RegisteredHandler<NetworkMessageHandler> registeredHandler = networkMessageHandlers.get(opcode);
+        return registeredHandler == null ? 0 : registeredHandler.handledCount.get();
+    }
+
+    /** @return Returns the number of messages with the given opcode which could not be handled. */
+    public long getRejectedNetworkMessageCount(final String opcode) {
+        RegisteredHandler<NetworkMessageHandler> registeredHandler = networkMessageHandlers.get(opcode);
+        return registeredHandler == null ? 0 : registeredHandler.rejectedCount.get();
+    }
+
+    public long getHandledBinaryNetworkMessageCount(final int opcode) {
+        RegisteredHandler<BinaryNetworkMessageHandler> registeredHandler = binaryNetworkMessageHandlers.get(opcode);
+        return registeredHandler == null ? 0 : registeredHandler.handledCount.get();
+    }
+
+    public long getRejectedBinaryNetworkMessageCount(final int opcode) {
+        RegisteredHandler<BinaryNetworkMessageHandler> registeredHandler = binaryNetworkMessageHandlers.get(opcode);
+        return registeredHandler == null ? 0 : registeredHandler.rejectedCount.get();
+    }
+
+    /** @return Returns the number of messages whose opcode did not have a handler. */
+    public long getUnknownNetworkMessageCount() {
+        return unknownNetworkMessageCount.get();
+    }
+
+    private boolean handleNetworkMessageMotd(final String message) {
+        String[] messageSplitted = splitNetworkMessage(message);
+        ChatContainer.getInstance().addChatMessage(new ChatMessage("Server", messageSplitted[1], System.currentTimeMillis()));
+        Gdx.app.debug(TAG, "Message of the day: " + messageSplitted[1]);
+        return true;
     }
 
     /** Returns a string array which contains individual inputs in the of the message.
@@ -96,31 +341,16 @@ public class RTSProtocolManager {
         return messageSplitted;
     }
 
-    private boolean handleNetworkMessageInput(final String message, final ListenSocketThread client) {
-        if (message.startsWith("<INPUT|")) {
-            if (client.getSocketType() == SocketType.SERVER_SOCKET) { // The message came from the server
+    private boolean handleNetworkMessageInput(final String message, final NetworkConnection client) {
+        if (client.getSocketType() == SocketType.PLAYER_SOCKET) { // The message came to the server from a player
+            ServerThread server = NetworkManager.getInstance().getServerThread();
+            if (server != null) {
                 String messageSplitted[] = splitNetworkMessage(message);
-                /* Convert message to PlayerInput and add it to the queue. MultiplayerSynchronizationManager
-                 * will execute the inputs at the right SimTick. */
-                List<PlayerInput> playerInputs = RTSProtocolManager.getInstance().createPlayerInputFromNetworkMessage(
+                int playerNumber = client.getPlayerInfo().getNumber();
+                server.addPlayerInputs(
                         Long.valueOf(messageSplitted[1]),
-                        Integer.valueOf(messageSplitted[2]),
-                        messageSplitted[3]);
-                for (PlayerInput playerInput : playerInputs) {
-                    NetworkInputQueue.getInstance().addPlayerInputToQueue(playerInput);
-                }
-            } else if (client.getSocketType() == SocketType.PLAYER_SOCKET) { // The message came to the server from a player
-                // Append the player number to the message and send it to other players
-                ServerThread server = NetworkManager.getInstance().getServerThread();
-                if (server != null) {
-                    String messageSplitted[] = splitNetworkMessage(message);
-                    server.sendMessageToAllClients(
-                            RTSProtocolManager.getInstance().createNetworkMessagePlayerInputsToBeSentForOtherPlayers(
-                                Long.valueOf(messageSplitted[1]),
-                                client.getPlayerInfo().getNumber(),
-                                messageSplitted[2]));
-                }
-
+                        playerNumber,
+                        createRTSCommandsFromNetworkInputMessage(playerNumber, messageSplitted[2]));
             }
 
             return true;
@@ -129,19 +359,13 @@ public class RTSProtocolManager {
         return false;
     }
 
-    private boolean handleNetworkMessageChat(final String message, final SocketType source) {
-        if (message.startsWith("<CHAT|")) {
-            if (source == SocketType.SERVER_SOCKET) {
-                String[] messageSplitted = splitNetworkMessage(message);
-                ChatContainer.getInstance().addChatMessage(new ChatMessage(messageSplitted[1],
-                        messageSplitted[2],
-                        System.currentTimeMillis()));
-                Gdx.app.debug(TAG, messageSplitted[1] + ": " + messageSplitted[2]);
-            } else if (source == SocketType.PLAYER_SOCKET) {
-                ServerThread serverThread = NetworkManager.getInstance().getServerThread();
-                if (serverThread != null) {
-                    serverThread.sendMessageToAllClients(message);
-                }
+    private boolean handleBinaryNetworkMessageInput(final BinaryMessageReader message, final NetworkConnection client) {
+        if (client.getSocketType() == SocketType.PLAYER_SOCKET) {
+            ServerThread server = NetworkManager.getInstance().getServerThread();
+            if (server != null) {
+                long simTick = message.readVarLong();
+                int playerNumber = client.getPlayerInfo().getNumber();
+                server.addPlayerInputs(simTick, playerNumber, readBinaryRTSCommands(message, playerNumber));
             }
 
             return true;
@@ -150,68 +374,168 @@ public class RTSProtocolManager {
         return false;
     }
 
-    private boolean handleNetworkMessagePing(final String message, final SocketType source) {
-        return false; // TODO Implement ping protocol
+    private boolean handleNetworkMessageTurn(final String message, final NetworkConnection client) {
+        if (client.getSocketType() == SocketType.SERVER_SOCKET) {
+            String messageSplitted[] = splitNetworkMessage(message);
+            long simTick = Long.valueOf(messageSplitted[1]);
+            List<PlayerInput> playerInputs = readTurnPlayerInputs(messageSplitted, simTick);
+
+            /* MultiplayerSynchronizationManager will execute the inputs at the right SimTick. */
+            NetworkInputQueue.getInstance().addTurn(simTick, playerInputs);
+            MultiplayerSynchronizationManager.getInstance().handleTurnReceived(simTick);
+            return true;
+        }
+
+        return false;
+    }
+
+    private boolean handleBinaryNetworkMessageTurn(final BinaryMessageReader message,
+                                                   final NetworkConnection client) {
+        if (client.getSocketType() == SocketType.SERVER_SOCKET) {
+            long simTick = message.readVarLong();
+            List<PlayerInput> playerInputs = readBinaryTurnPlayerInputs(message, simTick);
+
+            NetworkInputQueue.getInstance().addTurn(simTick, playerInputs);
+            MultiplayerSynchronizationManager.getInstance().handleTurnReceived(simTick);
+            return true;
+        }
+
+        return false;
     }
 
-    private boolean handleNetworkMessagePong(final String message, final SocketType source) {
-        return false; // TODO Implement ping protocol
+    /** @param messageSplitted TURN message split by splitNetworkMessage. */
+    List<PlayerInput> readTurnPlayerInputs(final String[] messageSplitted, final long simTick) {
+        List<PlayerInput> playerInputs = new ArrayList<PlayerInput>();
+        for (int i = 2; i + 1 < messageSplitted.length; i += 2) {
+            playerInputs.addAll(createPlayerInputFromNetworkMessage(
+                    simTick,
+                    Integer.valueOf(messageSplitted[i]),
+                    messageSplitted[i + 1]));
+        }
+
+        return playerInputs;
     }
 
-    private boolean handleNetworkMessageSlot(final String message, final SocketType source) {
-        if (message.startsWith("<SLOT|")) {
-            if (source == SocketType.SERVER_SOCKET) {
-                String messageSplitted[] = splitNetworkMessage(message);
-                 if (messageSplitted[2].equals("PLAYER")) {
-                     // Update local player info first
-                     if (GameMain.getInstance().getPlayer().getNetworkId() == (Integer.valueOf(messageSplitted[4]))) {
-                         GameMain.getInstance().getPlayer().setNumber(Integer.valueOf(messageSplitted[1]));
-                     }
-                     LocalMultiplayerInfo.getInstance().getSlots().put(
-                             Integer.valueOf(messageSplitted[1]),
-                             messageSplitted[2] + "|" + messageSplitted[3] + "|" + messageSplitted[4]);
-                 } else {
-                     LocalMultiplayerInfo.getInstance().getSlots().put(
-                             Integer.valueOf(messageSplitted[1]),
-                             messageSplitted[2]);
-                 }
-                Gdx.app.debug(TAG, "Slot" + " " + messageSplitted[1] + " " + "content changed to" + " " + messageSplitted[2]);
-                return true;
+    /** Reads the rest of a binary TURN message after the SimTick. */
+    List<PlayerInput> readBinaryTurnPlayerInputs(final BinaryMessageReader message, final long simTick) {
+        long playerCount = message.readVarLong();
+        List<PlayerInput> playerInputs = new ArrayList<PlayerInput>();
+        for (long i = 0; i < playerCount; i++) {
+            int playerNumber = (int) message.readVarLong();
+            for (AbstractRTSCommand command : readBinaryRTSCommands(message, playerNumber)) {
+                playerInputs.add(new PlayerInput(playerNumber, simTick, command));
             }
         }
 
+        return playerInputs;
+    }
+
+    private boolean handleNetworkMessageTurnConfig(final String message, final NetworkConnection client) {
+        if (client.getSocketType() == SocketType.SERVER_SOCKET) {
+            String messageSplitted[] = splitNetworkMessage(message);
+            MultiplayerSynchronizationManager.getInstance().addTurnConfig(new TurnConfig(
+                    Long.valueOf(messageSplitted[1]),
+                    Integer.valueOf(messageSplitted[2]),
+                    Integer.valueOf(messageSplitted[3])));
+            return true;
+        }
+
         return false;
     }
 
-    private boolean handleNetworkMessageAdminRights(final String message, final SocketType source) {
-        if (message.startsWith("<ADMIN_RIGHTS|")) {
-            if (source == SocketType.SERVER_SOCKET) {
-                String messageSplitted[] = splitNetworkMessage(message);
-                if (messageSplitted[1].equals("GIVE")) {
-                    Gdx.app.debug(TAG, "Admin rights have been given.");
-                    GameMain.getInstance().getPlayer().setAdmin(true);
-                } else if (messageSplitted[1].equals("REMOVE")) {
-                    GameMain.getInstance().getPlayer().setAdmin(false);
-                    Gdx.app.debug(TAG, "Admin rights have been removed.");
-                }
-                return true;
+    private boolean handleNetworkMessageLatency(final String message, final NetworkConnection client) {
+        if (client.getSocketType() == SocketType.PLAYER_SOCKET) {
+            String messageSplitted[] = splitNetworkMessage(message);
+            ServerThread serverThread = NetworkManager.getInstance().getServerThread();
+            if (serverThread != null) {
+                serverThread.setPlayerLatency(
+                        client.getPlayerInfo().getNumber(),
+                        Long.valueOf(messageSplitted[1]),
+                        Long.valueOf(messageSplitted[2]));
             }
+
+            return true;
         }
 
         return false;
     }
 
-    private boolean handleNetworkMessageStartGame(final String message, final SocketType source) {
-        if (message.equals("<COMMAND_AND_CONQUER>")) {
-            Gdx.app.debug(TAG, "Starting game...");
-            GameMain.getInstance().setNextScreen(ScreenName.LOAD_GAMEPLAY);
+    private boolean handleNetworkMessageChat(final String message, final SocketType source) {
+        if (source == SocketType.SERVER_SOCKET) {
+            String[] messageSplitted = splitNetworkMessage(message);
+            ChatContainer.getInstance().addChatMessage(new ChatMessage(messageSplitted[1],
+                    messageSplitted[2],
+                    System.currentTimeMillis()));
+            Gdx.app.debug(TAG, messageSplitted[1] + ": " + messageSplitted[2]);
+        } else if (source == SocketType.PLAYER_SOCKET) {
+            ServerThread serverThread = NetworkManager.getInstance().getServerThread();
+            if (serverThread != null) {
+                serverThread.sendMessageToAllClients(message);
+            }
+        }
+
+        return true;
+    }
+
+    /** Returns the timestamp to the sender, which calculates the round trip time from it. */
+    private boolean handleNetworkMessagePing(final String message, final NetworkConnection client) {
+        String messageSplitted[] = splitNetworkMessage(message);
+        client.sendMessage(createNetworkMessagePong(Long.valueOf(messageSplitted[1])));
+        return true;
+    }
+
+    private boolean handleNetworkMessagePong(final String message, final NetworkConnection client) {
+        String messageSplitted[] = splitNetworkMessage(message);
+        client.getConnectionStatistics().handlePongReceived(Long.valueOf(messageSplitted[1]));
+        return true;
+    }
+
+    private boolean handleNetworkMessageSlot(final String message, final SocketType source) {
+        if (source == SocketType.SERVER_SOCKET) {
+            String messageSplitted[] = splitNetworkMessage(message);
+             if (messageSplitted[2].equals("PLAYER")) {
+                 // Update local player info first
+                 if (GameMain.getInstance().getPlayer().getNetworkId() == (Integer.valueOf(messageSplitted[4]))) {
+                     GameMain.getInstance().getPlayer().setNumber(Integer.valueOf(messageSplitted[1]));
+                 }
+                 LocalMultiplayerInfo.getInstance().updateSlot(
+                         Integer.valueOf(messageSplitted[1]),
+                         messageSplitted[2] + "|" + messageSplitted[3] + "|" + messageSplitted[4]);
+             } else {
+                 LocalMultiplayerInfo.getInstance().updateSlot(
+                         Integer.valueOf(messageSplitted[1]),
+                         messageSplitted[2]);
+             }
+            Gdx.app.debug(TAG, "Slot" + " " + messageSplitted[1] + " " + "content changed to" + " " + messageSplitted[2]);
+            return true;
+        }
+
+        return false;
+    }
+
+    private boolean handleNetworkMessageAdminRights(final String message, final SocketType source) {
+        if (source == SocketType.SERVER_SOCKET) {
+            String messageSplitted[] = splitNetworkMessage(message);
+            if (messageSplitted[1].equals("GIVE")) {
+                Gdx.app.debug(TAG, "Admin rights have been given.");
+                GameMain.getInstance().getPlayer().setAdmin(true);
+            } else if (messageSplitted[1].equals("REMOVE")) {
+                GameMain.getInstance().getPlayer().setAdmin(false);
+                Gdx.app.debug(TAG, "Admin rights have been removed.");
+            }
             return true;
         }
 
         return false;
     }
 
-    private boolean handleNetworkMessageAdminStart(final String message, final ListenSocketThread client) {
+    private boolean handleNetworkMessageStartGame(final String message, final SocketType source) {
+        Gdx.app.debug(TAG, "Starting game...");
+        GameMain.getInstance().setNextScreen(ScreenName.LOAD_GAMEPLAY);
+        return true;
+    }
+
+    private boolean handleNetworkMessageAdminStart(final String message, final NetworkConnection client) {
         if (message.equals("<ADMIN|START>")) {
             if (client.getSocketType() == SocketType.PLAYER_SOCKET) {
                 if (client.getPlayerInfo().isAdmin()) {
@@ -231,94 +555,225 @@ public class RTSProtocolManager {
         return false;
     }
 
-    private boolean handleNetworkMessageGameStateHash(final String message, final ListenSocketThread client) {
-        if (message.startsWith("<HASH|")) {
-            if (client.getSocketType() == SocketType.PLAYER_SOCKET) {
-                String messageSplitted[] = splitNetworkMessage(message);
-                ServerThread serverThread = NetworkManager.getInstance().getServerThread();
-                if (serverThread != null) {
-                    serverThread.addAndCheckGameStateHashes(
-                            client.getPlayerInfo().getNumber(),
-                            Long.valueOf(messageSplitted[1]),
-                            messageSplitted[2]);
-                }
+    private boolean handleNetworkMessageGameStateHash(final String message, final NetworkConnection client) {
+        if (client.getSocketType() == SocketType.PLAYER_SOCKET) {
+            String messageSplitted[] = splitNetworkMessage(message);
+            ServerThread serverThread = NetworkManager.getInstance().getServerThread();
+            if (serverThread != null) {
+                serverThread.addAndCheckGameStateHashes(
+                        client.getPlayerInfo().getNumber(),
+                        Long.valueOf(messageSplitted[1]),
+                        messageSplitted[2]);
             }
+        }
 
-            return true;
+        return true;
+    }
+
+    private boolean handleNetworkMessageGameStateHashTreeRequest(final String message, final NetworkConnection client) {
+        if (client.getSocketType() == SocketType.SERVER_SOCKET) {
+            String messageSplitted[] = splitNetworkMessage(message);
+            long simTick = Long.valueOf(messageSplitted[1]);
+            String entries = MultiplayerSynchronizationManager.getInstance().getGameStateHashTreeEntries(
+                    simTick,
+                    messageSplitted[2]);
+            client.sendMessage(createNetworkMessageGameStateHashTree(simTick, messageSplitted[2], entries));
         }
 
-        return false;
+        return true;
     }
 
-    private boolean handleNetworkMessageNewConnectionInfo(final String message, final ListenSocketThread listenSocketThread) {
-        if (message.startsWith("<NEW_CONNECTION_INFO|")) {
-            if (listenSocketThread.getSocketType() == SocketType.PLAYER_SOCKET) {
-                // Update client info on the server
-                String messageSplitted[] = splitNetworkMessage(message);
-                listenSocketThread.getPlayerInfo().setName(messageSplitted[1]);
-                listenSocketThread.getPlayerInfo().setNetworkId(Integer.valueOf(messageSplitted[2]));
-
-                ServerThread serverThread = NetworkManager.getInstance().getServerThread();
-                if (serverThread != null) {
-                    // Update slot info
-                    serverThread.changeSlotContent(listenSocketThread.getPlayerInfo().getNumber(), "PLAYER" + "|" + listenSocketThread.getPlayerInfo().getName() + "|" + listenSocketThread.getPlayerInfo().getNetworkId());
-
-                    // Send slots states to the connected player
-                    for (int i = 1; i <= NetworkManager.getInstance().SLOTS_MAX; i++) {
-                        listenSocketThread.sendMessage(createNetworkMessageSlotContent(
-                                i,
-                                serverThread.getSlots().get(i)));
-                    }
+    private boolean handleNetworkMessageGameStateHashTree(final String message, final NetworkConnection client) {
+        if (client.getSocketType() == SocketType.PLAYER_SOCKET) {
+            String messageSplitted[] = splitNetworkMessage(message);
+            // Empty entries are dropped by split
+            String entries = messageSplitted.length > 3 ? messageSplitted[3] : "";
+            ServerThread serverThread = NetworkManager.getInstance().getServerThread();
+            if (serverThread != null) {
+                serverThread.handleGameStateHashTreeResponse(
+                        client.getPlayerInfo().getNumber(),
+                        Long.valueOf(messageSplitted[1]),
+                        messageSplitted[2],
+                        entries.equals(HASH_TREE_NODE_NOT_AVAILABLE) ? null : entries);
+            }
+        }
 
-                    // Inform other players
-                    serverThread.sendMessageToAllClients(createNetworkMessageChatMessage(
-                            serverThread.getServerChatName(),
-                            messageSplitted[1] + " " + "connected."));
-                }
+        return true;
+    }
+
+    private boolean handleNetworkMessageProtocol(final String message, final NetworkConnection client) {
+        if (client.getSocketType() == SocketType.SERVER_SOCKET) {
+            String messageSplitted[] = splitNetworkMessage(message);
+            if (messageSplitted[1].equals(BINARY_PROTOCOL_NAME)) {
+                Gdx.app.debug(TAG, "Server supports binary protocol " + BINARY_PROTOCOL_NAME + ".");
+                client.setBinaryProtocolEnabled(true);
             }
+        }
 
-            return true;
+        return true;
+    }
+
+    private boolean handleNetworkMessageNewConnectionInfo(final String message, final NetworkConnection listenSocketThread) {
+        if (listenSocketThread.getSocketType() == SocketType.PLAYER_SOCKET) {
+            // Update client info on the server
+            String messageSplitted[] = splitNetworkMessage(message);
+            listenSocketThread.getPlayerInfo().setName(messageSplitted[1]);
+            listenSocketThread.getPlayerInfo().setNetworkId(Integer.valueOf(messageSplitted[2]));
+
+            if (messageSplitted.length > 3 && messageSplitted[3].equals(BINARY_PROTOCOL_NAME)
+                    && NetworkManager.getInstance().BINARY_PROTOCOL_ENABLED) {
+                listenSocketThread.setBinaryProtocolEnabled(true);
+                listenSocketThread.sendMessage(createNetworkMessageProtocol(BINARY_PROTOCOL_NAME));
+            }
+
+            ServerThread serverThread = NetworkManager.getInstance().getServerThread();
+            if (serverThread != null) {
+                // Update slot info
+                serverThread.changeSlotContent(listenSocketThread.getPlayerInfo().getNumber(), "PLAYER" + "|" + listenSocketThread.getPlayerInfo().getName() + "|" + listenSocketThread.getPlayerInfo().getNetworkId());
+
+                // Send slots states to the connected player
+                for (int i = 1; i <= NetworkManager.getInstance().SLOTS_MAX; i++) {
+                    listenSocketThread.sendMessage(createNetworkMessageSlotContent(
+                            i,
+                            serverThread.getSlots().get(i)));
+                }
+
+                // Inform other players
+                serverThread.sendMessageToAllClients(createNetworkMessageChatMessage(
+                        serverThread.getServerChatName(),
+                        messageSplitted[1] + " " + "connected."));
+            }
         }
 
-        return false;
+        return true;
     }
 
 
     /** Creates a network message from PlayerInput objects, for example:
      * <INPUT|4|[UNIT_MOVE|5|300|200][IUNIT_ATTACK|6|80]> */
     public String createNetworkMessageFromPlayerInputs(List<PlayerInput> playerInputs, long simTick) {
-        String inputMessage = "<INPUT|" + simTick + "|";
+        StringBuilder inputMessage = new StringBuilder();
+        inputMessage.append("<INPUT|").append(simTick).append("|");
+
+        for (PlayerInput playerInput : playerInputs) {
+            appendNetworkMessageInput(inputMessage, playerInput.getCommand());
+        }
+
+        inputMessage.append(">");
+
+        return inputMessage.toString();
+    }
+
+    private void appendNetworkMessageInput(final StringBuilder inputs, final AbstractRTSCommand command) {
+        if (command.getCommandName() == RTSCommandType.EMPTY) {
+            inputs.append(createNetworkMessageInputNoInput());
+        } else if (command.getCommandName() == RTSCommandType.MOVE_UNIT) {
+            RTSCommandMoveUnit moveUnitCommand = (RTSCommandMoveUnit) command;
+            inputs.append(createNetworkMessageInputMoveUnit(
+                    moveUnitCommand.getObjectId(),
+                    moveUnitCommand.getTargetPosition()));
+        }
+    }
+
+    /** Creates a binary network message from PlayerInput objects. The same as INPUT text message. */
+    public byte[] createBinaryNetworkMessageFromPlayerInputs(final List<PlayerInput> playerInputs, final long simTick) {
+        BinaryMessageWriter message = new BinaryMessageWriter(BINARY_OPCODE_INPUT);
+        message.writeVarLong(simTick);
+        message.writeVarLong(playerInputs.size());
 
         for (PlayerInput playerInput : playerInputs) {
-            if (playerInput.getCommand().getCommandName() == RTSCommandType.EMPTY) {
-                inputMessage += RTSProtocolManager.getInstance().createNetworkMessageInputNoInput();
-            } else if (playerInput.getCommand().getCommandName() == RTSCommandType.MOVE_UNIT) {
-                RTSCommandMoveUnit moveUnitCommand = (RTSCommandMoveUnit) playerInput.getCommand();
-                inputMessage += RTSProtocolManager.getInstance().createNetworkMessageInputMoveUnit(
-                        moveUnitCommand.getObjectId(),
-                        moveUnitCommand.getTargetPosition());
+            writeBinaryRTSCommand(message, playerInput.getCommand());
+        }
+
+        return message.toFrame();
+    }
+
+    /** Creates a binary TURN message. The same as TURN text message, see createNetworkMessageTurn. */
+    public byte[] createBinaryNetworkMessageTurn(final TurnAggregator.Turn turn) {
+        BinaryMessageWriter message = new BinaryMessageWriter(BINARY_OPCODE_TURN);
+        message.writeVarLong(turn.getSimTick());
+        message.writeVarLong(turn.getCommands().size());
+
+        for (Map.Entry<Integer, List<AbstractRTSCommand>> playerCommands : turn.getCommands().entrySet()) {
+            message.writeVarLong(playerCommands.getKey());
+            message.writeVarLong(playerCommands.getValue().size());
+            for (AbstractRTSCommand command : playerCommands.getValue()) {
+                writeBinaryRTSCommand(message, command);
+            }
+        }
+
+        return message.toFrame();
+    }
+
+    private void writeBinaryRTSCommand(final BinaryMessageWriter message, final AbstractRTSCommand command) {
+        if (command.getCommandName() == RTSCommandType.MOVE_UNIT) {
+            RTSCommandMoveUnit moveUnitCommand = (RTSCommandMoveUnit) command;
+            message.writeByte(BINARY_COMMAND_UNIT_MOVE);
+            message.writeVarLong(moveUnitCommand.getObjectId());
+            message.writeCoordinate(moveUnitCommand.getTargetPosition().x);
+            message.writeCoordinate(moveUnitCommand.getTargetPosition().y);
+        } else {
+            message.writeByte(BINARY_COMMAND_NO_INPUT);
+        }
+    }
+
+    private List<AbstractRTSCommand> readBinaryRTSCommands(final BinaryMessageReader message, final int playerNumber) {
+        long commandCount = message.readVarLong();
+        ArrayList<AbstractRTSCommand> commands = new ArrayList<AbstractRTSCommand>();
+
+        for (long i = 0; i < commandCount; i++) {
+            int commandType = message.readByte();
+            if (commandType == BINARY_COMMAND_UNIT_MOVE) {
+                long unitId = message.readVarLong();
+                float x = message.readCoordinate();
+                float y = message.readCoordinate();
+                commands.add(new RTSCommandMoveUnit(playerNumber, unitId, new Vector2(x, y)));
+            } else if (commandType == BINARY_COMMAND_NO_INPUT) {
+                commands.add(new RTSCommandEmpty(playerNumber));
+            } else {
+                throw new UnableToHandleNetworkMessage("Player input type was unknown: " + commandType);
+            }
+        }
+
+        return commands;
+    }
+
+    /** Creates a network message which contains the inputs of all players for one SimTick, for example:
+     * <TURN|4|1|[UNIT_MOVE?5?300.0?200.0][UNIT_MOVE?6?80.0?90.0]|2|[NO_INPUT]> */
+    public String createNetworkMessageTurn(final TurnAggregator.Turn turn) {
+        StringBuilder turnMessage = new StringBuilder();
+        turnMessage.append("<TURN|").append(turn.getSimTick());
+
+        for (Map.Entry<Integer, List<AbstractRTSCommand>> playerCommands : turn.getCommands().entrySet()) {
+            turnMessage.append("|").append(playerCommands.getKey()).append("|");
+            for (AbstractRTSCommand command : playerCommands.getValue()) {
+                appendNetworkMessageInput(turnMessage, command);
             }
         }
 
+        turnMessage.append(">");
 
-        inputMessage += ">";
+        return turnMessage.toString();
+    }
 
-        return inputMessage;
+    /** The config takes effect when the turn sent after this message is executed. */
+    public String createNetworkMessageTurnConfig(final TurnConfig turnConfig) {
+        return "<TURN_CONFIG|" + turnConfig.getEffectiveSimTick() + "|" + turnConfig.getTurnLengthWorldUpdates() + "|"
+                + turnConfig.getInputDelaySimTicks() + ">";
     }
 
-    /**
-     * @param playerInputs Player inputs, for example: [UNIT_MOVE?5?300?200][UNIT_ATTACK?6?80]
-     * @return
-     */
-    public String createNetworkMessagePlayerInputsToBeSentForOtherPlayers(final long simTick,
-                                                                          final int playerNumber,
-                                                                          final String playerInputs) {
-        return "<INPUT|" + simTick + "|" + playerNumber + "|" + playerInputs + ">";
+    /** @param roundTripMs Average time from sending inputs to receiving the turn which contains them. */
+    public String createNetworkMessageLatency(final long roundTripMs, final long jitterMs) {
+        return "<LATENCY|" + roundTripMs + "|" + jitterMs + ">";
     }
 
+    /** The coordinates are rounded the same way as in binary messages, so text and binary messages
+     * carry the same values. */
     public String createNetworkMessageInputMoveUnit(final long unitId,
                                                     final Vector2 targetPosition) {
-        return "[UNIT_MOVE?" + unitId + "?" + targetPosition.x + "?" + targetPosition.y + "]";
+        return "[UNIT_MOVE?" + unitId
+                + "?" + BinaryMessageWriter.roundCoordinate(targetPosition.x)
+                + "?" + BinaryMessageWriter.roundCoordinate(targetPosition.y) + "]";
     }
 
     public String createNetworkMessageInputNoInput() {
@@ -329,12 +784,14 @@ public class RTSProtocolManager {
         return "<CHAT|" + nick + "|" + message + ">";
     }
 
-    public String createNetworkMessagePing() {
-        return "<PING>";
+    /** @param timestampMs See ConnectionStatistics.getTimestampMs */
+    public String createNetworkMessagePing(final long timestampMs) {
+        return "<PING|" + timestampMs + ">";
     }
 
-    public String createNetworkMessagePong() {
-        return "<PONG>";
+    /** @param timestampMs The timestamp of the PING message. */
+    public String createNetworkMessagePong(final long timestampMs) {
+        return "<PONG|" + timestampMs + ">";
     }
 
     public String createNetworkMessageOfTheDay(final String motd) {
@@ -361,6 +818,17 @@ public class RTSProtocolManager {
         return "<HASH|" + simTick + "|" + hash + ">";
     }
 
+    public String createNetworkMessageGameStateHashTreeRequest(final long simTick, final String path) {
+        return "<HASH_TREE_REQUEST|" + simTick + "|" + path + ">";
+    }
+
+    /** @param entries Child entries of the node, see GameStateHashTree.getChildEntries.
+     *                 Null if the node is not available. */
+    public String createNetworkMessageGameStateHashTree(final long simTick, final String path, final String entries) {
+        return "<HASH_TREE|" + simTick + "|" + path + "|"
+                + (entries == null ? HASH_TREE_NODE_NOT_AVAILABLE : entries) + ">";
+    }
+
     public String createNetworkMessageSlotContent(final int slotNumber, final String content) {
         return createNetworkMessageSlotContent(slotNumber, content, "", 0);
     }
@@ -374,10 +842,19 @@ public class RTSProtocolManager {
         return "<SLOT|" + String.valueOf(slotNumber) + "|" + content + ">";
     }
 
+    /** If binary protocol is enabled, the name of the supported binary protocol is sent as the last part. */
     public String createNetworkMessageNewConnectionInfo(final String nick, final int networkId) {
+        if (NetworkManager.getInstance().BINARY_PROTOCOL_ENABLED) {
+            return "<NEW_CONNECTION_INFO|" + nick + "|" + String.valueOf(networkId) + "|" + BINARY_PROTOCOL_NAME + ">";
+        }
+
         return "<NEW_CONNECTION_INFO|" + nick + "|" + String.valueOf(networkId) + ">";
     }
 
+    public String createNetworkMessageProtocol(final String protocolName) {
+        return "<PROTOCOL|" + protocolName + ">";
+    }
+
     /**
      * @param networkMessageInputs Inputs that the player sent, for example: [UNIT_MOVE-5-300-200][UNIT_ATTACK-6-80]
      */
@@ -459,9 +936,10 @@ public class RTSProtocolManager {
     private RTSCommandMoveUnit createRTSCommandMoveUnitFromNetworkInputMessage(final int playerNumber, final String individualNetworkInput) {
         String[] networkMessageInputsSplitted = splitNetworkMessageInput(individualNetworkInput);
 
+        // Rounded in case the sender did not round the coordinates, see createNetworkMessageInputMoveUnit
         return new RTSCommandMoveUnit(playerNumber, Long.valueOf(networkMessageInputsSplitted[1]),
-                new Vector2(Float.valueOf(networkMessageInputsSplitted[2]),
-                        Float.valueOf(networkMessageInputsSplitted[3])));
+                new Vector2(BinaryMessageWriter.roundCoordinate(Float.valueOf(networkMessageInputsSplitted[2])),
+                        BinaryMessageWriter.roundCoordinate(Float.valueOf(networkMessageInputsSplitted[3]))));
 
     }
 
@@ -0,0 +1,153 @@
+package org.voimala.myrts.networking;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import org.voimala.myrts.screens.gameplay.world.Player;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Connection from SelectorServer to a player. Messages can be sent from any thread: they are queued and
+ * the server thread writes them. */
+public class SelectorClientConnection implements NetworkConnection, NetworkMessageReader.BinaryMessageListener {
+
+    private static final String TAG = SelectorClientConnection.class.getName();
+
+    private final SelectorServer server;
+    private final SocketChannel channel;
+    private SelectionKey selectionKey;
+    private final NetworkMessageReader messageReader;
+    private final Player player = new Player();
+    private volatile boolean isBinaryProtocolEnabled = false;
+    private final ConnectionStatistics connectionStatistics = new ConnectionStatistics();
+
+    private final ConcurrentLinkedQueue<ByteBuffer> outboundMessages = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicBoolean isUpdateRequested = new AtomicBoolean(false);
+    private volatile boolean isCloseRequested = false;
+    private volatile boolean isClosed = false;
+
+    SelectorClientConnection(final SelectorServer server,
+                             final SocketChannel channel,
+                             final long maxMessageLengthCharacters) {
+        this.server = server;
+        this.channel = channel;
+        this.messageReader = new NetworkMessageReader(maxMessageLengthCharacters, this);
+    }
+
+    @Override
+    public void sendMessage(final String message) {
+        if (Gdx.app.getLogLevel() >= Application.LOG_DEBUG) {
+            Gdx.app.debug(TAG, "Server: Sending message to the player " + player.getNumber() + ": " + message);
+        }
+
+        queueMessage(message.getBytes(NetworkMessageReader.CHARSET));
+    }
+
+    @Override
+    public void sendMessage(final byte[] binaryMessage) {
+        queueMessage(binaryMessage);
+    }
+
+    private void queueMessage(final byte[] message) {
+        if (isClosed) {
+            return;
+        }
+
+        outboundMessages.offer(ByteBuffer.wrap(message));
+        queuedBytes.addAndGet(message.length);
+        requestUpdate();
+    }
+
+    private void requestUpdate() {
+        if (isUpdateRequested.compareAndSet(false, true)) {
+            server.requestUpdate(this);
+        }
+    }
+
+    void clearUpdateRequest() {
+        isUpdateRequested.set(false);
+    }
+
+    @Override
+    public void onBinaryMessage(final byte[] buffer, final int offset, final int length) {
+        server.notifyBinaryMessage(this, buffer, offset, length);
+    }
+
+    @Override
+    public SocketType getSocketType() {
+        return SocketType.PLAYER_SOCKET;
+    }
+
+    @Override
+    public Player getPlayerInfo() {
+        return player;
+    }
+
+    @Override
+    public boolean isBinaryProtocolEnabled() {
+        return isBinaryProtocolEnabled;
+    }
+
+    @Override
+    public void setBinaryProtocolEnabled(final boolean isBinaryProtocolEnabled) {
+        this.isBinaryProtocolEnabled = isBinaryProtocolEnabled;
+    }
+
+    @Override
+    public ConnectionStatistics getConnectionStatistics() {
+        return connectionStatistics;
+    }
+
+    /** Closes the connection after the server thread has handled it. Can be called from any thread. */
+    @Override
+    public void die() {
+        isCloseRequested = true;
+        requestUpdate();
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    SelectionKey getSelectionKey() {
+        return selectionKey;
+    }
+
+    void setSelectionKey(final SelectionKey selectionKey) {
+        this.selectionKey = selectionKey;
+    }
+
+    NetworkMessageReader getMessageReader() {
+        return messageReader;
+    }
+
+    ConcurrentLinkedQueue<ByteBuffer> getOutboundMessages() {
+        return outboundMessages;
+    }
+
+    long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    void removeQueuedBytes(final long bytes) {
+        queuedBytes.addAndGet(-bytes);
+    }
+
+    boolean isCloseRequested() {
+        return isCloseRequested;
+    }
+
+    boolean isClosed() {
+        return isClosed;
+    }
+
+    void setClosed() {
+        isClosed = true;
+    }
+
+}
@@ -0,0 +1,267 @@
+package org.voimala.myrts.networking;
+
+import com.badlogic.gdx.Gdx;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/** Non-blocking server which handles all player connections in one thread.
+ *
+ * Messages sent to a player are put to the player's own queue and written when the player's socket can take
+ * them, so a player with a slow connection does not delay sending messages to the other players.
+ * Received messages are given to the listener in the server thread. */
+public class SelectorServer {
+
+    private static final String TAG = SelectorServer.class.getName();
+    private static final int MAX_MESSAGES_PER_WRITE = 64;
+
+    public interface Listener {
+        void onConnected(final SelectorClientConnection connection);
+
+        void onMessage(final SelectorClientConnection connection, final String message);
+
+        /** @param length Payload length including the opcode. The buffer is reused after the method returns. */
+        void onBinaryMessage(final SelectorClientConnection connection,
+                             final byte[] buffer,
+                             final int offset,
+                             final int length);
+
+        void onDisconnected(final SelectorClientConnection connection);
+    }
+
+    private final Listener listener;
+    private final long maxMessageLengthCharacters;
+    private final long maxQueuedBytesPerConnection;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running = true;
+    private final ArrayList<SelectorClientConnection> connections = new ArrayList<SelectorClientConnection>();
+    /** Connections which have new messages to write or which should be closed. */
+    private final ConcurrentLinkedQueue<SelectorClientConnection> connectionsToBeUpdated =
+            new ConcurrentLinkedQueue<SelectorClientConnection>();
+    /** Reused for gathering writes. */
+    private final ByteBuffer[] writeBuffers = new ByteBuffer[MAX_MESSAGES_PER_WRITE];
+
+    /** @param maxQueuedBytesPerConnection If a player does not read messages and more than this many bytes are
+     *                                    waiting to be sent to the player, the player is disconnected. */
+    public SelectorServer(final Listener listener,
+                          final long maxMessageLengthCharacters,
+                          final long maxQueuedBytesPerConnection) {
+        this.listener = listener;
+        this.maxMessageLengthCharacters = maxMessageLengthCharacters;
+        this.maxQueuedBytesPerConnection = maxQueuedBytesPerConnection;
+    }
+
+    /** @param port 0 means any free port. */
+    public void bind(final int port) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.socket().bind(new InetSocketAddress(port));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /** Handles connections until stop is called. bind should be called first. */
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                updateConnections();
+
+                Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    if (key.isAcceptable()) {
+                        acceptConnection();
+                    } else {
+                        SelectorClientConnection connection = (SelectorClientConnection) key.attachment();
+                        if (key.isReadable()) {
+                            readMessages(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            writeMessages(connection);
+                        }
+                    }
+                }
+
+                // Send the messages created while handling the received messages without waiting for the next select
+                updateConnections();
+            } catch (IOException e) {
+                Gdx.app.debug(TAG, "ERROR: " + e.getMessage());
+            }
+        }
+
+        closeServer();
+    }
+
+    /** Stops the server. Can be called from any thread. */
+    public void stop() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    private void acceptConnection() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectorClientConnection connection = new SelectorClientConnection(this, channel, maxMessageLengthCharacters);
+        connection.setSelectionKey(channel.register(selector, SelectionKey.OP_READ, connection));
+        connections.add(connection);
+        Gdx.app.debug(TAG, "Client connected from " + channel.socket().getRemoteSocketAddress());
+        listener.onConnected(connection);
+    }
+
+    private void readMessages(final SelectorClientConnection connection) {
+        try {
+            while (!connection.isClosed()) {
+                String message = connection.getMessageReader().pollMessage();
+                if (message != null) {
+                    listener.onMessage(connection, message);
+                    continue;
+                }
+
+                int readBytes = connection.getMessageReader().readFrom(connection.getChannel());
+                if (readBytes == -1) {
+                    closeConnection(connection);
+                } else if (readBytes == 0) {
+                    return; // Wait until there is more to read
+                }
+            }
+        } catch (IOException e) {
+            Gdx.app.debug(TAG, "ERROR: while reading from client: " + e.getMessage());
+            closeConnection(connection);
+        }
+    }
+
+    void notifyBinaryMessage(final SelectorClientConnection connection,
+                             final byte[] buffer,
+                             final int offset,
+                             final int length) {
+        listener.onBinaryMessage(connection, buffer, offset, length);
+    }
+
+    /** Writes as much of the queued messages as the socket takes without blocking. Messages queued
+     * for the connection are written together with one gathering write. */
+    private void writeMessages(final SelectorClientConnection connection) {
+        try {
+            while (true) {
+                int messageCount = 0;
+                for (ByteBuffer message : connection.getOutboundMessages()) {
+                    writeBuffers[messageCount++] = message;
+                    if (messageCount == writeBuffers.length) {
+                        break;
+                    }
+                }
+
+                if (messageCount == 0) {
+                    connection.getSelectionKey().interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+
+                connection.getChannel().write(writeBuffers, 0, messageCount);
+
+                int writtenMessageCount = 0;
+                while (writtenMessageCount < messageCount && !writeBuffers[writtenMessageCount].hasRemaining()) {
+                    connection.getOutboundMessages().poll();
+                    connection.removeQueuedBytes(writeBuffers[writtenMessageCount].limit());
+                    writtenMessageCount++;
+                }
+                Arrays.fill(writeBuffers, 0, messageCount, null);
+
+                if (writtenMessageCount < messageCount) {
+                    // The socket buffer is full, continue when the socket is writable again
+                    connection.getSelectionKey().interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            Gdx.app.debug(TAG, "ERROR: while writing to client: " + e.getMessage());
+            closeConnection(connection);
+        }
+    }
+
+    /** Called by a connection when it has something new to write or it should be closed.
+     * Can be called from any thread. */
+    void requestUpdate(final SelectorClientConnection connection) {
+        connectionsToBeUpdated.offer(connection);
+        selector.wakeup();
+    }
+
+    private void updateConnections() {
+        SelectorClientConnection connection;
+        while ((connection = connectionsToBeUpdated.poll()) != null) {
+            connection.clearUpdateRequest();
+
+            if (connection.isClosed()) {
+                continue;
+            }
+
+            if (connection.isCloseRequested()) {
+                closeConnection(connection);
+            } else if (connection.getQueuedBytes() > maxQueuedBytesPerConnection) {
+                Gdx.app.debug(TAG, "WARNING: Client " + connection.getPlayerInfo().getName()
+                        + " does not read messages. Disconnecting.");
+                closeConnection(connection);
+            } else {
+                writeMessages(connection);
+            }
+        }
+    }
+
+    private void closeConnection(final SelectorClientConnection connection) {
+        if (connection.isClosed()) {
+            return;
+        }
+
+        connection.setClosed();
+        connections.remove(connection);
+        connection.getSelectionKey().cancel();
+        try {
+            connection.getChannel().close();
+        } catch (IOException e) {
+            Gdx.app.debug(TAG, "ERROR: while closing client connection: " + e.getMessage());
+        }
+
+        listener.onDisconnected(connection);
+    }
+
+    private void closeServer() {
+        for (SelectorClientConnection connection : new ArrayList<SelectorClientConnection>(connections)) {
+            closeConnection(connection);
+        }
+
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            Gdx.app.debug(TAG, "ERROR: while closing server: " + e.getMessage());
+        }
+    }
+
+}
@@ -1,23 +1,38 @@
 package org.voimala.myrts.networking;
 
+import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Net;
 import com.badlogic.gdx.net.ServerSocket;
 import com.badlogic.gdx.net.ServerSocketHints;
 import com.badlogic.gdx.net.Socket;
 import com.badlogic.gdx.net.SocketHints;
+import org.voimala.myrts.screens.gameplay.GameplayScreen;
+import org.voimala.myrts.screens.gameplay.input.commands.AbstractRTSCommand;
+import org.voimala.myrts.screens.gameplay.multiplayer.TurnConfig;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-
-public class ServerThread extends Thread {
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class ServerThread extends Thread implements SelectorServer.Listener {
     private static final String TAG = ServerThread.class.getName();
+    private static final long TURN_DEADLINE_CHECK_INTERVAL_MS = 50;
     private ServerSocketHints serverSocketHints;
     private ServerSocket serverSocket;
-    private boolean serverRunning = true;
-    private boolean gameRunning = false;
+    private volatile boolean serverRunning = true;
+    private volatile boolean gameRunning = false;
     private int port = 0;
-    private ArrayList<ListenSocketThread> connectedClients = new ArrayList<ListenSocketThread>();
+    /** Used instead of serverSocket if NetworkManager.SELECTOR_SERVER_ENABLED is true. */
+    private volatile SelectorServer selectorServer;
+    /** Connected clients are added and removed by the connection threads, and iterated when sending messages. */
+    private CopyOnWriteArrayList<NetworkConnection> connectedClients = new CopyOnWriteArrayList<NetworkConnection>();
     /** Integer = slot number.
      * String = Slot state, which should be one of the following:
      * OPEN
@@ -26,17 +41,24 @@ public class ServerThread extends Thread {
      * PLAYER|playerName|networkId
      * Slots 1-8 are meant for players, other slots are reserved for observers.
      * */
-    private HashMap<Integer, String> slots = new HashMap<Integer, String>();
+    private ConcurrentHashMap<Integer, String> slots = new ConcurrentHashMap<Integer, String>();
     private String motd = "Welcome to the server!";
     private String serverChatName = "Server";
     /** The first string is in the following format: SimTick_PlayerNumber, the second string contains the Hash */
     private HashMap<String, String> playerGameStateHashes = new HashMap<String, String>();
+    /** Finds out which object differs when the game goes out of sync. Only the first desync is located. */
+    private DesyncLocator desyncLocator = null;
+    private final TurnAggregator turnAggregator = new TurnAggregator(NetworkManager.getInstance().TURN_DEADLINE_MS);
+    private final TurnScheduler turnScheduler = new TurnScheduler(GameplayScreen.FIXED_PHYSICS_FPS);
+    /** Sends the turns whose deadline has passed and pings the players. */
+    private final Timer turnDeadlineTimer = new Timer(ServerThread.class.getName() + "-TurnDeadline", true);
 
     public ServerThread(final int port) {
         super(ServerThread.class.getName());
 
         initializeGameSlots();
         initializeSocketSettings(port);
+        initializeTurnDeadlineTimer();
     }
 
     private void initializeGameSlots() {
@@ -45,6 +67,24 @@ public class ServerThread extends Thread {
         }
     }
 
+    private void initializeTurnDeadlineTimer() {
+        turnDeadlineTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                if (gameRunning) {
+                    sendCompletedTurns();
+                }
+            }
+        }, TURN_DEADLINE_CHECK_INTERVAL_MS, TURN_DEADLINE_CHECK_INTERVAL_MS);
+        turnDeadlineTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                sendMessageToAllClients(RTSProtocolManager.getInstance().createNetworkMessagePing(
+                        ConnectionStatistics.getTimestampMs()));
+            }
+        }, NetworkManager.getInstance().PING_INTERVAL_MS, NetworkManager.getInstance().PING_INTERVAL_MS);
+    }
+
     private void initializeSocketSettings(int port) {
         serverSocketHints = new ServerSocketHints();
         serverSocketHints.acceptTimeout = 100000;
@@ -55,8 +95,12 @@ public class ServerThread extends Thread {
     public void run() {
         NetworkManager.getInstance().setHost(true);
 
-        createServer();
-        acceptConnections();
+        if (NetworkManager.getInstance().SELECTOR_SERVER_ENABLED) {
+            runSelectorServer();
+        } else {
+            createServer();
+            acceptConnections();
+        }
 
         Gdx.app.debug(TAG, "Server stopped.");
         NetworkManager.getInstance().setHost(false);
@@ -73,6 +117,59 @@ public class ServerThread extends Thread {
         }
     }
 
+    /** Handles all clients in this thread. */
+    private void runSelectorServer() {
+        try {
+            Gdx.app.debug(TAG, "Creating a server...");
+            selectorServer = new SelectorServer(this,
+                    NetworkManager.getInstance().NETWORK_MESSAGE_MAX_LENGTH_CHARACTERS,
+                    NetworkManager.getInstance().CONNECTION_MAX_QUEUED_BYTES);
+            selectorServer.bind(port);
+            Gdx.app.debug(TAG, "Server created");
+        } catch (IOException e) {
+            Gdx.app.debug(TAG, "Error creating a server: " + e.getMessage());
+            return;
+        }
+
+        if (!serverRunning) {
+            selectorServer.stop(); // die was called while the server was being created
+        }
+        selectorServer.run();
+    }
+
+    @Override
+    public void onConnected(final SelectorClientConnection connection) {
+        addClient(connection);
+    }
+
+    @Override
+    public void onMessage(final SelectorClientConnection connection, final String message) {
+        if (Gdx.app.getLogLevel() >= Application.LOG_DEBUG) {
+            Gdx.app.debug(TAG, "Got message from the player " + connection.getPlayerInfo().getNumber() + ": " + message);
+        }
+
+        RTSProtocolManager.getInstance().handleNetworkMessage(message, connection);
+    }
+
+    @Override
+    public void onBinaryMessage(final SelectorClientConnection connection,
+                                final byte[] buffer,
+                                final int offset,
+                                final int length) {
+        try {
+            RTSProtocolManager.getInstance().handleBinaryNetworkMessage(
+                    new BinaryMessageReader(buffer, offset, length),
+                    connection);
+        } catch (Exception e) {
+            Gdx.app.debug(TAG, "ERROR: while handling binary message: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onDisconnected(final SelectorClientConnection connection) {
+        removeClient(connection);
+    }
+
     private void acceptConnections() {
         while (serverRunning) {
             try {
@@ -93,23 +190,25 @@ public class ServerThread extends Thread {
 
     private void handleNewClientConnection(final Socket clientSocket) {
         ListenSocketThread client = new ListenSocketThread(this, clientSocket);
+        addClient(client);
+        client.start();
+    }
 
+    private void addClient(final NetworkConnection client) {
         checkIfGameIsRunning(client);
         assignSlotToPlayer(client);
         connectedClients.add(client);
         client.sendMessage(RTSProtocolManager.getInstance().createNetworkMessageOfTheDay(motd));
         handleAdminRights(client);
-
-        client.start();
     }
 
-    private void checkIfGameIsRunning(final ListenSocketThread client) {
+    private void checkIfGameIsRunning(final NetworkConnection client) {
         if (gameRunning) {
             kickClient(client, "Not allowed to join while the game is running.");
         }
     }
 
-    private void assignSlotToPlayer(ListenSocketThread client) {
+    private void assignSlotToPlayer(NetworkConnection client) {
         // Find the next free slot
         for (int i = 1; i <= NetworkManager.getInstance().SLOTS_MAX; i++) {
             if (slots.get(i).equals("OPEN")) {
@@ -132,12 +231,12 @@ public class ServerThread extends Thread {
         kickClient(client, "Server is full");
     }
 
-    private void kickClient(final ListenSocketThread client, final String message) {
+    private void kickClient(final NetworkConnection client, final String message) {
         // TODO Implement "kick" in protocol
     }
 
     /** Gives admin rights to the client if he is the first player in the game */
-    private void handleAdminRights(ListenSocketThread client) {
+    private void handleAdminRights(NetworkConnection client) {
         if (connectedClients.size() == 1) {
             client.getPlayerInfo().setAdmin(true);
             client.sendMessage(RTSProtocolManager.getInstance().createNetworkMessageGiveAdminRights());
@@ -145,10 +244,41 @@ public class ServerThread extends Thread {
         }
     }
 
+    /** Encodes the message once and gives the same bytes to every client. */
     public void sendMessageToAllClients(final String message) {
-        for (ListenSocketThread client : connectedClients) {
+        if (Gdx.app.getLogLevel() >= Application.LOG_DEBUG) {
+            Gdx.app.debug(TAG, "Server: Sending message to all players: " + message);
+        }
+
+        sendEncodedMessageToClients(message.getBytes(NetworkMessageReader.CHARSET), null);
+    }
+
+    /** Sends the binary message to the clients which support binary messages and the text message
+     * to the other clients. Both messages should have the same content. */
+    public void sendMessageToAllClients(final String textMessage, final byte[] binaryMessage) {
+        byte[] encodedTextMessage = null;
+        for (NetworkConnection client : connectedClients) {
+            if (!client.isBinaryProtocolEnabled()) {
+                encodedTextMessage = textMessage.getBytes(NetworkMessageReader.CHARSET);
+                break;
+            }
+        }
+
+        sendEncodedMessageToClients(encodedTextMessage, binaryMessage);
+    }
+
+    /** @param encodedTextMessage Sent to the clients which do not support binary messages. Can be null if there
+     *                           are no such clients.
+     *  @param binaryMessage Sent to the clients which support binary messages. If null, encodedTextMessage
+     *                      is sent to them. */
+    private void sendEncodedMessageToClients(final byte[] encodedTextMessage, final byte[] binaryMessage) {
+        for (NetworkConnection client : connectedClients) {
             try {
-                client.sendMessage(message);
+                if (binaryMessage != null && client.isBinaryProtocolEnabled()) {
+                    client.sendMessage(binaryMessage);
+                } else {
+                    client.sendMessage(encodedTextMessage);
+                }
             } catch (Exception e) {
                 Gdx.app.debug(TAG, "WARNING: Unable to send message to client" + " "
                         + client.getPlayerInfo().getName() + ". " + e.getMessage());
@@ -157,23 +287,37 @@ public class ServerThread extends Thread {
     }
 
     public void die() {
-        for (ListenSocketThread client : connectedClients) {
+        for (NetworkConnection client : connectedClients) {
             client.die();
         }
 
         serverRunning = false;
         gameRunning = false;
+        turnDeadlineTimer.cancel();
         if (serverSocket != null) {
             serverSocket .dispose();
         }
+        if (selectorServer != null) {
+            selectorServer.stop();
+        }
     }
 
-    public void removeClient(final ListenSocketThread listenSocketThread) {
+    public void removeClient(final NetworkConnection listenSocketThread) {
+        if (!connectedClients.contains(listenSocketThread)) {
+            return;
+        }
+
         sendMessageToAllClients(RTSProtocolManager.getInstance().createNetworkMessageChatMessage(serverChatName,
                 listenSocketThread.getPlayerInfo().getName() + " " + "disconnected."));
 
         changeSlotContent(listenSocketThread.getPlayerInfo().getNumber(), "OPEN");
         connectedClients.remove(listenSocketThread);
+        turnScheduler.removePlayer(listenSocketThread.getPlayerInfo().getNumber());
+
+        // The turn may have been waiting only for this player
+        if (gameRunning) {
+            sendCompletedTurns();
+        }
     }
 
     /** Changed the slot content and sends the info to the players. */
@@ -187,8 +331,8 @@ public class ServerThread extends Thread {
     }
 
     /** Returns null if player is not found. */
-    private ListenSocketThread findPlayerWhoPlaysInSlot(final int slot) {
-        for (ListenSocketThread client : connectedClients) {
+    private NetworkConnection findPlayerWhoPlaysInSlot(final int slot) {
+        for (NetworkConnection client : connectedClients) {
             if (client.getPlayerInfo().getNumber() == slot) {
                 return client;
             }
@@ -197,8 +341,56 @@ public class ServerThread extends Thread {
         return null;
     }
 
+    /** Stores the player's inputs for the SimTick and sends the turn to the players if
+     * all players have sent their inputs. */
+    public void addPlayerInputs(final long simTick, final int playerNumber, final List<AbstractRTSCommand> commands) {
+        turnAggregator.addPlayerInputs(simTick, playerNumber, commands, System.currentTimeMillis());
+        sendCompletedTurns();
+    }
+
+    private void sendCompletedTurns() {
+        // Turns must be sent in order, so only one thread sends them at a time
+        synchronized (turnAggregator) {
+            List<TurnAggregator.Turn> completedTurns =
+                    turnAggregator.pollCompletedTurns(findPlayerSlotNumbers(), System.currentTimeMillis());
+            for (TurnAggregator.Turn turn : completedTurns) {
+                TurnConfig turnConfig = turnScheduler.createTurnConfig(turn.getSimTick());
+                if (turnConfig != null) {
+                    sendMessageToAllClients(RTSProtocolManager.getInstance().createNetworkMessageTurnConfig(turnConfig));
+                }
+
+                sendMessageToAllClients(
+                        RTSProtocolManager.getInstance().createNetworkMessageTurn(turn),
+                        RTSProtocolManager.getInstance().createBinaryNetworkMessageTurn(turn));
+            }
+        }
+    }
+
+    public void setPlayerLatency(final int playerNumber, final long roundTripMs, final long jitterMs) {
+        turnScheduler.setPlayerLatency(playerNumber, roundTripMs, jitterMs);
+    }
+
+    /** @return Returns the statistics of the connection to the player in the given slot, or null if
+     * no-one plays in the slot. */
+    public ConnectionStatistics getPlayerConnectionStatistics(final int slot) {
+        NetworkConnection client = findPlayerWhoPlaysInSlot(slot);
+        return client == null ? null : client.getConnectionStatistics();
+    }
+
+    /** @return Returns the numbers of the slots in which a player plays. */
+    private List<Integer> findPlayerSlotNumbers() {
+        List<Integer> playerSlotNumbers = new ArrayList<Integer>();
+        for (int i = 1; i <= 8; i++) {
+            if (slots.get(i).startsWith("PLAYER")) {
+                playerSlotNumbers.add(i);
+            }
+        }
+
+        return playerSlotNumbers;
+    }
+
     // Stores the given hash in memory and checks if hashes match for this simTick.
-    public void addAndCheckGameStateHashes(final int playerNumber, final long simTick, final String hash) {
+    public synchronized void addAndCheckGameStateHashes(final int playerNumber, final long simTick, final String hash) {
         playerGameStateHashes.put(simTick + "_" + playerNumber, hash);
         checkHashesMatchForSimTick(simTick);
     }
@@ -228,16 +420,59 @@ public class ServerThread extends Thread {
                             + " hash:\n" + otherHash);
                     sendMessageToAllClients(RTSProtocolManager.getInstance().createNetworkMessageChatMessage(serverChatName,
                             "WARNING! GAME IS OUT OF SYNC AT SIMTICK " + simTick + "!"));
+                    startLocatingDesync(simTick, i, j);
                 }
             }
         }
     }
 
+    private void startLocatingDesync(final long simTick, final int playerNumberA, final int playerNumberB) {
+        if (desyncLocator != null) {
+            return;
+        }
+
+        desyncLocator = new DesyncLocator(simTick, playerNumberA, playerNumberB);
+        requestGameStateHashTreeEntries();
+    }
+
+    private void requestGameStateHashTreeEntries() {
+        String request = RTSProtocolManager.getInstance().createNetworkMessageGameStateHashTreeRequest(
+                desyncLocator.getSimTick(),
+                desyncLocator.getPath());
+        int[] playerNumbers = {desyncLocator.getPlayerNumberA(), desyncLocator.getPlayerNumberB()};
+
+        for (int playerNumber : playerNumbers) {
+            NetworkConnection client = findPlayerWhoPlaysInSlot(playerNumber);
+            if (client != null) {
+                client.sendMessage(request);
+            }
+        }
+    }
+
+    /** Handles a player's response to a hash tree request that was sent while locating a desync. */
+    public synchronized void handleGameStateHashTreeResponse(final int playerNumber,
+                                                             final long simTick,
+                                                             final String path,
+                                                             final String entries) {
+        if (desyncLocator == null || !desyncLocator.addResponse(playerNumber, simTick, path, entries)) {
+            return;
+        }
+
+        if (desyncLocator.isFinished()) {
+            Gdx.app.debug(TAG, "Desync at simtick " + simTick + ": " + desyncLocator.getResult());
+            sendMessageToAllClients(RTSProtocolManager.getInstance().createNetworkMessageChatMessage(serverChatName,
+                    "Desync at SimTick " + simTick + ": " + desyncLocator.getResult()));
+        } else {
+            requestGameStateHashTreeEntries();
+        }
+    }
+
     public String getServerChatName() {
         return serverChatName;
     }
 
-    public HashMap<Integer, String> getSlots() {
+    /** The slots are read by the turn deadline timer as well, so the map is concurrent. */
+    public Map<Integer, String> getSlots() {
         return slots;
     }
 
@@ -0,0 +1,132 @@
+package org.voimala.myrts.networking;
+
+import com.badlogic.gdx.Gdx;
+import org.voimala.myrts.screens.gameplay.input.commands.AbstractRTSCommand;
+import org.voimala.myrts.screens.gameplay.input.commands.RTSCommandEmpty;
+import org.voimala.myrts.screens.gameplay.multiplayer.MultiplayerSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/** Used by the server to collect the inputs of each SimTick. When every player has sent the inputs of the next
+ * SimTick, or the deadline has passed, the inputs of all players are sent to the players as one turn.
+ *
+ * Turns are completed in SimTick order. If the deadline passes, the missing players get an empty command and
+ * their inputs for that SimTick are dropped when they arrive. All players get the same turn, so the game stays
+ * in sync. */
+public class TurnAggregator {
+
+    private static final String TAG = TurnAggregator.class.getName();
+
+    private final long deadlineMs;
+    /** Clients start sending inputs from MultiplayerSynchronizationManager.FIRST_SIM_TICK. Inputs for earlier
+     * SimTicks are dropped like late inputs. */
+    private long nextTurnSimTick = MultiplayerSynchronizationManager.FIRST_SIM_TICK;
+    /** When the server started waiting the inputs of nextTurnSimTick. 0 if no inputs have arrived yet. */
+    private long nextTurnStartedTimestamp = 0;
+    /** Key = SimTick, value = commands by player number. */
+    private final TreeMap<Long, TreeMap<Integer, List<AbstractRTSCommand>>> pendingInputs =
+            new TreeMap<Long, TreeMap<Integer, List<AbstractRTSCommand>>>();
+
+    /** Inputs of all players for one SimTick. */
+    public static class Turn {
+        private final long simTick;
+        private final SortedMap<Integer, List<AbstractRTSCommand>> commands;
+
+        public Turn(final long simTick, final SortedMap<Integer, List<AbstractRTSCommand>> commands) {
+            this.simTick = simTick;
+            this.commands = commands;
+        }
+
+        public long getSimTick() {
+            return simTick;
+        }
+
+        /** @return Returns the commands by player number. Every player has at least one command. */
+        public SortedMap<Integer, List<AbstractRTSCommand>> getCommands() {
+            return commands;
+        }
+    }
+
+    /** @param deadlineMs How long to wait for the missing inputs after the first inputs of a SimTick
+     *                   have arrived. */
+    public TurnAggregator(final long deadlineMs) {
+        this.deadlineMs = deadlineMs;
+    }
+
+    public synchronized void addPlayerInputs(final long simTick,
+                                             final int playerNumber,
+                                             final List<AbstractRTSCommand> commands,
+                                             final long currentTimeMs) {
+        if (simTick < nextTurnSimTick) {
+            Gdx.app.debug(TAG, "WARNING: Player " + playerNumber + " input for SimTick " + simTick
+                    + " arrived after the turn was sent and was dropped.");
+            return;
+        }
+
+        TreeMap<Integer, List<AbstractRTSCommand>> simTickInputs = pendingInputs.get(simTick);
+        if (simTickInputs == null) {
+            simTickInputs = new TreeMap<Integer, List<AbstractRTSCommand>>();
+            pendingInputs.put(simTick, simTickInputs);
+        }
+
+        List<AbstractRTSCommand> playerCommands = simTickInputs.get(playerNumber);
+        if (playerCommands == null) {
+            playerCommands = new ArrayList<AbstractRTSCommand>();
+            simTickInputs.put(playerNumber, playerCommands);
+        }
+        playerCommands.addAll(commands);
+
+        if (simTick == nextTurnSimTick && nextTurnStartedTimestamp == 0) {
+            nextTurnStartedTimestamp = currentTimeMs;
+        }
+    }
+
+    /** Completes the turns whose inputs have arrived from all the given players or whose deadline has passed.
+     * @param playerNumbers Players whose inputs are waited.
+     * @return Returns the completed turns in SimTick order. */
+    public synchronized List<Turn> pollCompletedTurns(final List<Integer> playerNumbers, final long currentTimeMs) {
+        List<Turn> completedTurns = new ArrayList<Turn>();
+
+        while (true) {
+            TreeMap<Integer, List<AbstractRTSCommand>> simTickInputs = pendingInputs.get(nextTurnSimTick);
+            if (simTickInputs == null) {
+                break; // Nothing to wait for before someone sends inputs
+            }
+
+            boolean isDeadlinePassed = currentTimeMs - nextTurnStartedTimestamp >= deadlineMs;
+            if (!isDeadlinePassed && !simTickInputs.keySet().containsAll(playerNumbers)) {
+                break;
+            }
+
+            for (Integer playerNumber : playerNumbers) {
+                if (!simTickInputs.containsKey(playerNumber)) {
+                    Gdx.app.debug(TAG, "WARNING: Player " + playerNumber + " input for SimTick " + nextTurnSimTick
+                            + " did not arrive before the deadline.");
+                    simTickInputs.put(playerNumber, new ArrayList<AbstractRTSCommand>());
+                }
+            }
+
+            for (Integer playerNumber : simTickInputs.keySet()) {
+                List<AbstractRTSCommand> playerCommands = simTickInputs.get(playerNumber);
+                if (playerCommands.isEmpty()) {
+                    playerCommands.add(new RTSCommandEmpty(playerNumber));
+                }
+            }
+
+            completedTurns.add(new Turn(nextTurnSimTick, simTickInputs));
+            pendingInputs.remove(nextTurnSimTick);
+            nextTurnSimTick++;
+            nextTurnStartedTimestamp = pendingInputs.containsKey(nextTurnSimTick) ? currentTimeMs : 0;
+        }
+
+        return completedTurns;
+    }
+
+    public synchronized long getNextTurnSimTick() {
+        return nextTurnSimTick;
+    }
+
+}
@@ -0,0 +1,104 @@
+package org.voimala.myrts.networking;
+
+import org.voimala.myrts.screens.gameplay.multiplayer.TurnConfig;
+
+import java.util.HashMap;
+
+/** Used by the server to adapt the SimTick length and the input delay to the players' latencies.
+ *
+ * Players report how long it takes from sending their inputs to receiving the turn which contains them.
+ * If the slowest player's round trip does not fit in the input delay, the players would have to wait for the
+ * turn on every SimTick. In that case the input delay is increased, and if that is not enough, SimTicks are made
+ * longer. When the latencies drop, the input latency is decreased again.
+ *
+ * Only one config change can be pending at a time: a new config is created only after the previous one has
+ * been taken into use. */
+public class TurnScheduler {
+
+    public static final int MAX_INPUT_DELAY_SIM_TICKS = 4;
+    public static final int MAX_TURN_LENGTH_WORLD_UPDATES = 15;
+    /** How many SimTicks a config is used before the input latency can be decreased. */
+    private static final int MIN_SIM_TICKS_BEFORE_DECREASE = 50;
+    /** The input latency is decreased only if the round trip fits in the smaller latency with this margin. */
+    private static final float DECREASE_MARGIN = 1.25f;
+
+    private final float worldUpdateMs;
+    private TurnConfig currentConfig = new TurnConfig(
+            0,
+            TurnConfig.DEFAULT_TURN_LENGTH_WORLD_UPDATES,
+            TurnConfig.DEFAULT_INPUT_DELAY_SIM_TICKS);
+    /** Key = player number, value = the latest reported round trip including jitter margin in ms. */
+    private final HashMap<Integer, Long> playerRoundTripsMs = new HashMap<Integer, Long>();
+
+    /** @param worldUpdatesPerSecond World update rate used in multiplayer games. */
+    public TurnScheduler(final int worldUpdatesPerSecond) {
+        this.worldUpdateMs = 1000f / worldUpdatesPerSecond;
+    }
+
+    /** @param roundTripMs Average time from sending inputs to receiving the turn.
+     *  @param jitterMs How much the round trip varies. */
+    public synchronized void setPlayerLatency(final int playerNumber, final long roundTripMs, final long jitterMs) {
+        playerRoundTripsMs.put(playerNumber, roundTripMs + 2 * jitterMs);
+    }
+
+    public synchronized void removePlayer(final int playerNumber) {
+        playerRoundTripsMs.remove(playerNumber);
+    }
+
+    /** Called before the turn of the given SimTick is sent to the players.
+     * @return Returns a new config which should be sent to the players before the turn, or null if the config
+     * does not change. The config takes effect at the SimTick in which the turn is executed, so every player
+     * has received the config before they need it. */
+    public synchronized TurnConfig createTurnConfig(final long turnSimTick) {
+        long effectiveSimTick = turnSimTick + currentConfig.getInputDelaySimTicks();
+        if (currentConfig.getEffectiveSimTick() > turnSimTick) {
+            return null; // The previous config is not in use yet
+        }
+
+        long requiredMs = 0;
+        for (Long roundTripMs : playerRoundTripsMs.values()) {
+            requiredMs = Math.max(requiredMs, roundTripMs);
+        }
+
+        TurnConfig requiredConfig = createConfigForLatency(effectiveSimTick, requiredMs);
+        int currentLatency = currentConfig.getInputLatencyWorldUpdates();
+        int requiredLatency = requiredConfig.getInputLatencyWorldUpdates();
+
+        if (requiredLatency > currentLatency) {
+            currentConfig = requiredConfig;
+            return currentConfig;
+        }
+
+        if (requiredLatency < currentLatency
+                && effectiveSimTick - currentConfig.getEffectiveSimTick() >= MIN_SIM_TICKS_BEFORE_DECREASE) {
+            TurnConfig decreasedConfig = createConfigForLatency(effectiveSimTick, (long) (requiredMs * DECREASE_MARGIN));
+            if (decreasedConfig.getInputLatencyWorldUpdates() < currentLatency) {
+                currentConfig = decreasedConfig;
+                return currentConfig;
+            }
+        }
+
+        return null;
+    }
+
+    /** @return Returns a config with the smallest input latency in which the given round trip fits.
+     * The default SimTick length is preferred, SimTicks are made longer only if the input delay is at maximum. */
+    private TurnConfig createConfigForLatency(final long effectiveSimTick, final long roundTripMs) {
+        int turnLength = TurnConfig.DEFAULT_TURN_LENGTH_WORLD_UPDATES;
+        int inputDelay = (int) Math.ceil(roundTripMs / (turnLength * worldUpdateMs));
+        inputDelay = Math.max(inputDelay, TurnConfig.DEFAULT_INPUT_DELAY_SIM_TICKS);
+
+        if (inputDelay > MAX_INPUT_DELAY_SIM_TICKS) {
+            inputDelay = MAX_INPUT_DELAY_SIM_TICKS;
+            turnLength = (int) Math.ceil(roundTripMs / (inputDelay * worldUpdateMs));
+            turnLength = Math.min(turnLength, MAX_TURN_LENGTH_WORLD_UPDATES);
+        }
+
+        return new TurnConfig(effectiveSimTick, turnLength, inputDelay);
+    }
+
+    public synchronized TurnConfig getCurrentConfig() {
+        return currentConfig;
+    }
+
+}
@@ -26,6 +26,8 @@ import org.voimala.myrts.screens.gameplay.world.WorldRenderer;
 public class GameplayScreen extends AbstractGameScreen {
 
     private static final String TAG = GameplayScreen.class.getName();
+    /** World update rate in multiplayer games. */
+    public static final int FIXED_PHYSICS_FPS = 30;
 
     private WorldController worldController;
     private WorldRenderer worldRenderer;
@@ -63,7 +65,7 @@ public class GameplayScreen extends AbstractGameScreen {
     private void initializeGameMode() {
         if (NetworkManager.getInstance().getClientConnectionState() == ConnectionState.CONNECTED) {
             setGameMode(GameMode.MULTIPLAYER);
-            MultiplayerSynchronizationManager.getInstance().setSimTick(1);
+            MultiplayerSynchronizationManager.getInstance().setSimTick(MultiplayerSynchronizationManager.FIRST_SIM_TICK);
         } else {
             GameMain.getInstance().getPlayer().setNumber(1);
             GameMain.getInstance().getPlayer().setTeam(1);
@@ -125,13 +127,9 @@ public class GameplayScreen extends AbstractGameScreen {
                 updateWorldUsingFixedPhysics();
             }
 
-            // Update SimTick between 5 world updates.
-            /* TODO Current value is hardcoded.
-             * Implement variable turn length. If players are lagging, either increase simtick rate globally so that simtick is
-             * increased for example every 10 world updates. Another solution is to decide that commands sent in turn x
-             * will be executed for example in turn x + 3 globally. You should find out which method is simpler and more
-             * reliable to implement. */
-            if (Float.valueOf(MultiplayerSynchronizationManager.getInstance().getSimTick()) == worldController.getWorldUpdateTick() / 5f) {
+            /* SimTick length and input delay are decided by the server based on the players' latencies,
+             * see TurnScheduler. */
+            if (MultiplayerSynchronizationManager.getInstance().isSimTickBoundary(worldController.getWorldUpdateTick())) {
                 MultiplayerSynchronizationManager.getInstance().handleNewSimTick();
             }
         }
@@ -144,9 +142,8 @@ public class GameplayScreen extends AbstractGameScreen {
 
     private void updateWorldUsingFixedPhysics() {
         // Update game world when 1 / fixedPhysicsFps seconds have passed. Use a constant delta time.
-        final long fixedPhysicsFps = 30;
-        if (System.currentTimeMillis() >= lastWorldUpdateTimestamp + (long) (((float) 1 / (float) fixedPhysicsFps) * 1000)) {
-            float deltaTime = (float) 1 / (float) fixedPhysicsFps;
+        if (System.currentTimeMillis() >= lastWorldUpdateTimestamp + (long) (((float) 1 / (float) FIXED_PHYSICS_FPS) * 1000)) {
+            float deltaTime = (float) 1 / (float) FIXED_PHYSICS_FPS;
             worldController.updateWorld(deltaTime);
             lastWorldUpdateTimestamp = System.currentTimeMillis();
         }
@@ -161,7 +158,7 @@ public class GameplayScreen extends AbstractGameScreen {
         if (gameMode == GameMode.SINGLEPLAYER) {
             worldRenderer.render(RenderMode.WORLD_STATE, deltaTime);
         } else if (gameMode == GameMode.MULTIPLAYER) {
-            worldRenderer.render(RenderMode.WORLD_STATE_WITH_PHYSICS_PREDICTION, deltaTime);
+            worldRenderer.render(RenderMode.WORLD_STATE_INTERPOLATED, deltaTime);
         }
     }
 
@@ -204,6 +201,14 @@ public class GameplayScreen extends AbstractGameScreen {
         return lastWorldUpdateTimestamp;
     }
 
+    /** @return Returns how much of the fixed world update interval has passed since the latest world update,
+     * 0...1. Stays at 1 if the next update is late, for example when waiting inputs from the network. */
+    public float getFixedWorldUpdateAlpha() {
+        float worldUpdateIntervalMs = 1000f / FIXED_PHYSICS_FPS;
+        float alpha = (System.currentTimeMillis() - lastWorldUpdateTimestamp) / worldUpdateIntervalMs;
+        return Math.max(0, Math.min(alpha, 1));
+    }
+
     public long getRenderTick() {
         return renderTick;
     }
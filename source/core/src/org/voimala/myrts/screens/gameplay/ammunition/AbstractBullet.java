@@ -30,6 +30,18 @@ public abstract class AbstractBullet extends AbstractAmmunition {
         return bulletClone;
     }
 
+    @Override
+    protected void reuse() {
+        super.reuse();
+        startPosition = null;
+    }
+
+    /** Copies the given options to this bullet's options. */
+    public void setWeaponOptions(final WeaponOptions weaponOptions) {
+        this.weaponOptions.set(weaponOptions);
+        this.movement.setVelocity(weaponOptions.getBulletVelocity());
+    }
+
     @Override
     protected void initializeDimensions() {
         width = 2;
@@ -37,7 +49,7 @@ public abstract class AbstractBullet extends AbstractAmmunition {
     }
 
     protected void initializeCollisionMask() {
-        collisionMask = new Circle(position.x, position.y, 2);
+        collisionMask = new Circle(getX(), getY(), 2);
     }
 
     @Override
@@ -49,7 +61,7 @@ public abstract class AbstractBullet extends AbstractAmmunition {
     protected void updateCollisionMask() {
         if (collisionMask instanceof Circle) {
             Circle collisionCircle = (Circle) collisionMask;
-            collisionCircle.setPosition(position.x, position.y);
+            collisionCircle.setPosition(getX(), getY());
         }
     }
 
@@ -60,19 +72,26 @@ public abstract class AbstractBullet extends AbstractAmmunition {
         checkDistanceLeft();
     }
 
+    /** Checks the path travelled in this world update, so fast bullets can not fly trough units.
+     * Only the first unit on the path is hit. */
     private void checkCollision() {
-        for (AbstractUnit unit : worldController.getUnitContainer().getAllUnits()) {
-            if (unit.onCollision(position)) {
-                unit.decreaseEnergy(weaponOptions.getHitPowerAgainstUnit(unit));
-                die();
-            }
+        AbstractUnit unit = worldController.getUnitContainer().findFirstUnitIntersectingSegment(
+                getPreviousX(),
+                getPreviousY(),
+                getX(),
+                getY(),
+                null);
+
+        if (unit != null) {
+            unit.decreaseEnergy(weaponOptions.getHitPowerAgainstUnit(unit));
+            die();
         }
 
         // TODO Check also other obstacles like buildings, rocks, trees etc.
     }
 
     private void checkDistanceLeft() {
-        if (MathHelper.getDistanceBetweenPoints(position.x, position.y, startPosition.x, startPosition.y)
+        if (MathHelper.getDistanceBetweenPoints(getX(), getY(), startPosition.x, startPosition.y)
                 >= weaponOptions.getMaxDistance()) {
             die();
         }
@@ -84,11 +103,11 @@ public abstract class AbstractBullet extends AbstractAmmunition {
     }
 
     @Override
-    public void setPosition(Vector2 position) {
-        this.position = position;
+    public void setPosition(final float x, final float y) {
+        super.setPosition(x, y);
 
         if (startPosition == null) {
-            startPosition = new Vector2(position.x, position.y);
+            startPosition = new Vector2(x, y);
         }
     }
 
@@ -15,8 +15,8 @@ public abstract class AbstractEffect extends AbstractGameObject {
     public AbstractEffect(final WorldController worldController, final Vector2 position, final float angleDeg) {
         super(worldController);
 
-        this.position = new Vector2(position);
-        this.angleDeg = angleDeg;
+        setPosition(position.x, position.y);
+        setAngle(angleDeg);
     }
 
     public AbstractEffect clone() throws CloneNotSupportedException {
@@ -24,6 +24,12 @@ public abstract class AbstractEffect extends AbstractGameObject {
         return effectClone;
     }
 
+    @Override
+    protected void reuse() {
+        super.reuse();
+        livedLife = 0;
+    }
+
     @Override
     public void initializeId() {
         super.initializeId();
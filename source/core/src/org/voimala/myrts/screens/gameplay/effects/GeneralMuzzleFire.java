@@ -16,6 +16,12 @@ public class GeneralMuzzleFire extends MuzzleFire {
         lifeTimeMs = 70;
     }
 
+    @Override
+    protected void reuse() {
+        super.reuse();
+        muddleFireSpriteId = RandomNumberGenerator.random(1, 3);
+    }
+
     @Override
     public void updateState(final float deltaTime) {
         super.updateState(deltaTime);
@@ -3,13 +3,15 @@ package org.voimala.myrts.screens.gameplay.input;
 import org.voimala.myrts.screens.gameplay.GameplayScreen;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 
 public abstract class AbstractInputQueue {
-    /** vector is a thread-safe implementation of ArrayList,
-     * but it can not be used here because loopin over the contents
-     * might throw ConcurrentModificationException. */
-    protected ArrayList<PlayerInput> playerInputs = new ArrayList<PlayerInput>(); // TODO HashMap would be faster?
+    /** Inputs by SimTick and player number. Only the inputs of a few SimTicks are stored at a time, because
+     * the inputs are removed after they have been sent or executed. Used only by the game thread. */
+    private final HashMap<Long, HashMap<Integer, List<PlayerInput>>> playerInputs =
+            new HashMap<Long, HashMap<Integer, List<PlayerInput>>>();
     protected GameplayScreen gameplayScreen;
 
 
@@ -18,22 +20,51 @@ public abstract class AbstractInputQueue {
         this.gameplayScreen = gameplayScreen;
     }
 
-    public synchronized List<PlayerInput> findInputsByPlayerNumberAndSimTick(final int playerNumber, final long simTick) {
-        List<PlayerInput> playerInputs = new ArrayList<PlayerInput>();
+    protected void storePlayerInput(final PlayerInput playerInput) {
+        HashMap<Integer, List<PlayerInput>> simTickInputs = playerInputs.get(playerInput.getSimTick());
+        if (simTickInputs == null) {
+            simTickInputs = new HashMap<Integer, List<PlayerInput>>();
+            playerInputs.put(playerInput.getSimTick(), simTickInputs);
+        }
 
-        // TODO Do not use linear search?
-        for (PlayerInput playerInput : this.playerInputs) {
-            if (playerInput.getPlayerNumber() == playerNumber && playerInput.getSimTick() == simTick) {
-                playerInputs.add(playerInput);
-            }
+        List<PlayerInput> playerSimTickInputs = simTickInputs.get(playerInput.getPlayerNumber());
+        if (playerSimTickInputs == null) {
+            playerSimTickInputs = new ArrayList<PlayerInput>();
+            simTickInputs.put(playerInput.getPlayerNumber(), playerSimTickInputs);
         }
 
-        return playerInputs;
+        playerSimTickInputs.add(playerInput);
+    }
+
+    public List<PlayerInput> findInputsByPlayerNumberAndSimTick(final int playerNumber, final long simTick) {
+        HashMap<Integer, List<PlayerInput>> simTickInputs = playerInputs.get(simTick);
+        if (simTickInputs == null || simTickInputs.get(playerNumber) == null) {
+            return new ArrayList<PlayerInput>();
+        }
+
+        return new ArrayList<PlayerInput>(simTickInputs.get(playerNumber));
     }
 
     public boolean doesPlayerInputExist(final int playerNumber, final long simTick) {
         if (checkFirstSimTickInput(simTick)) return true;
-        return findInputsByPlayerNumberAndSimTick(playerNumber, simTick).size() != 0;
+
+        HashMap<Integer, List<PlayerInput>> simTickInputs = playerInputs.get(simTick);
+        return simTickInputs != null && simTickInputs.get(playerNumber) != null;
+    }
+
+    /** Removes the inputs of the given SimTick and the SimTicks before it. */
+    public void removeInputsUntilSimTick(final long simTick) {
+        Iterator<Long> simTicks = playerInputs.keySet().iterator();
+        while (simTicks.hasNext()) {
+            if (simTicks.next() <= simTick) {
+                simTicks.remove();
+            }
+        }
+    }
+
+    /** @return Returns the number of SimTicks whose inputs are stored. */
+    public int getStoredSimTickCount() {
+        return playerInputs.size();
     }
 
     protected boolean checkFirstSimTickInput(long simTick) {
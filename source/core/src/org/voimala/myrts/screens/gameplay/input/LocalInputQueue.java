@@ -2,6 +2,7 @@ package org.voimala.myrts.screens.gameplay.input;
 
 import com.badlogic.gdx.Gdx;
 import org.voimala.myrts.app.GameMain;
+import org.voimala.myrts.networking.ListenSocketThread;
 import org.voimala.myrts.networking.NetworkManager;
 import org.voimala.myrts.networking.RTSProtocolManager;
 import org.voimala.myrts.screens.gameplay.input.commands.RTSCommandEmpty;
@@ -32,27 +33,30 @@ public class LocalInputQueue extends AbstractInputQueue {
     public void addInput(final PlayerInput playerInput) {
         Gdx.app.log(TAG, "Storing local player input. Player number: " + playerInput.getPlayerNumber() + ". " +
                 "SimTick: " + playerInput.getSimTick() + ". " + "Command: " + playerInput.getCommand().getCommandName().toString());
-        playerInputs.add(playerInput);
+        storePlayerInput(playerInput);
     }
 
     public void sendInputsToOtherPlayers(final long simTick) {
         Gdx.app.log(TAG, "Preparing to send local player inputs to the network.");
+        List<PlayerInput> inputsToBeSent;
         if (doesPlayerInputExist(GameMain.getInstance().getPlayer().getNumber(), simTick)) {
-            List<PlayerInput> inputsToBeSent = findInputsByPlayerNumberAndSimTick(GameMain.getInstance().getPlayer().getNumber(), simTick);
-            NetworkManager.getInstance().getClientThread().sendMessage(
-                    RTSProtocolManager.getInstance().createNetworkMessageFromPlayerInputs(inputsToBeSent, simTick));
+            inputsToBeSent = findInputsByPlayerNumberAndSimTick(GameMain.getInstance().getPlayer().getNumber(), simTick);
         } else {
-            ArrayList<PlayerInput> playerInputsEmpty = new ArrayList<PlayerInput>();
-            playerInputsEmpty.add(new PlayerInput(GameMain.getInstance().getPlayer().getNumber(), simTick,
+            inputsToBeSent = new ArrayList<PlayerInput>();
+            inputsToBeSent.add(new PlayerInput(GameMain.getInstance().getPlayer().getNumber(), simTick,
                     new RTSCommandEmpty(GameMain.getInstance().getPlayer().getNumber())));
-            NetworkManager.getInstance().getClientThread().sendMessage(
-                        RTSProtocolManager.getInstance().createNetworkMessageFromPlayerInputs(playerInputsEmpty, simTick));
         }
 
-        removeOldInputs();
-    }
+        ListenSocketThread clientThread = NetworkManager.getInstance().getClientThread();
+        if (clientThread.isBinaryProtocolEnabled()) {
+            clientThread.sendMessage(
+                    RTSProtocolManager.getInstance().createBinaryNetworkMessageFromPlayerInputs(inputsToBeSent, simTick));
+        } else {
+            clientThread.sendMessage(
+                    RTSProtocolManager.getInstance().createNetworkMessageFromPlayerInputs(inputsToBeSent, simTick));
+        }
 
-    private void removeOldInputs() {
-        // TODO Remove old inputs
+        // The inputs have been sent, so they are not needed anymore
+        removeInputsUntilSimTick(simTick);
     }
 }
@@ -1,18 +1,35 @@
 package org.voimala.myrts.screens.gameplay.input;
 
 import com.badlogic.gdx.Gdx;
-import org.voimala.myrts.networking.LocalMultiplayerInfo;
 import org.voimala.myrts.screens.gameplay.input.commands.ExecuteCommandMethod;
+import org.voimala.utility.SingleProducerSingleConsumerQueue;
 
 import java.util.List;
 
 /** This class is used to store player inputs from the network before they are executed at the beginning of
- * the correct SimTick. */
+ * the correct SimTick.
+ *
+ * The network thread adds received turns to a lock-free queue, and the game thread moves them to the input
+ * index when it checks the turns. So the game thread never waits for the network thread. */
 public class NetworkInputQueue extends AbstractInputQueue {
 
     private static final String TAG = NetworkInputQueue.class.getName();
 
     private static NetworkInputQueue instanceOfThis;
+    /** Turns received by the network thread, waiting to be taken by the game thread. */
+    private final SingleProducerSingleConsumerQueue<ReceivedTurn> receivedTurns =
+            new SingleProducerSingleConsumerQueue<ReceivedTurn>();
+    private long latestCompleteTurnSimTick = 0;
+
+    private static class ReceivedTurn {
+        private final long simTick;
+        private final List<PlayerInput> playerInputs;
+
+        private ReceivedTurn(final long simTick, final List<PlayerInput> playerInputs) {
+            this.simTick = simTick;
+            this.playerInputs = playerInputs;
+        }
+    }
 
     private NetworkInputQueue() {
 
@@ -26,36 +43,38 @@ public class NetworkInputQueue extends AbstractInputQueue {
         return instanceOfThis;
     }
 
-    /** @param simTick SimTick that was active when input was given. */
-    public synchronized boolean doesAllInputExistForSimTick(final long simTick) {
-        if (checkFirstSimTickInput(simTick)) return true;
-
-        for (int i = 1; i <= 8; i++) {
-            if (!LocalMultiplayerInfo.getInstance().getSlots().get(i).startsWith("PLAYER")) {
-                continue; // No-one plays in this slot so we do not wait input from this slot.
+    /** Called by the game thread. Takes the turns received so far into use.
+     * @return Returns the latest SimTick whose inputs the server has sent for all players.
+     * The turns of the earlier SimTicks have been received too. */
+    public long getLatestCompleteTurnSimTick() {
+        ReceivedTurn receivedTurn;
+        while ((receivedTurn = receivedTurns.poll()) != null) {
+            for (PlayerInput playerInput : receivedTurn.playerInputs) {
+                addPlayerInputToQueue(playerInput);
             }
 
-            if (!doesPlayerInputExist(i, simTick)) {
-                Gdx.app.debug(TAG, "Player " + i + " input for simtick " + simTick + " is missing (up to now).");
-                return false;
-            }
+            latestCompleteTurnSimTick = receivedTurn.simTick;
         }
 
-        return true;
+        return latestCompleteTurnSimTick;
+    }
+
+    /** Called by the network thread. Stores the inputs of all players for the SimTick.
+     * The server sends turns in SimTick order. */
+    public void addTurn(final long simTick, final List<PlayerInput> playerInputs) {
+        receivedTurns.offer(new ReceivedTurn(simTick, playerInputs));
     }
 
-    public synchronized void addPlayerInputToQueue(final PlayerInput playerInput) {
+    private void addPlayerInputToQueue(final PlayerInput playerInput) {
         Gdx.app.log(TAG, "Storing network player input. Player number: " + playerInput.getPlayerNumber() + ". " +
         "SimTick: " + playerInput.getSimTick() + ". " + "Command: " + playerInput.getCommand().getCommandName().toString());
-        playerInputs.add(playerInput);
+        storePlayerInput(playerInput);
     }
 
-    public synchronized void performInputsForSimTick(final long simTick) {
+    /** Executes the inputs in player number order. The turn sent by the server decides whose inputs are
+     * executed, so every player executes the same inputs even if their slot information differs. */
+    public void performInputsForSimTick(final long simTick) {
         for (int i = 1; i <= 8; i++) {
-            if (!LocalMultiplayerInfo.getInstance().getSlots().get(i).startsWith("PLAYER")) {
-                continue; // No-one plays in this slot so we do not wait input from this slot.
-            }
-
             List<PlayerInput> playerInputs = findInputsByPlayerNumberAndSimTick(i, simTick);
 
             for (PlayerInput playerInput : playerInputs) {
@@ -64,6 +83,18 @@ public class NetworkInputQueue extends AbstractInputQueue {
                         playerInput.getCommand());
             }
         }
+
+        removeInputsUntilSimTick(simTick);
+    }
+
+    /** Called by the game thread. */
+    @Override
+    public void reset() {
+        while (receivedTurns.poll() != null) {
+            // Discard the turns of the previous game
+        }
+        super.reset();
+        latestCompleteTurnSimTick = 0;
     }
 
 }
@@ -1,4 +1,100 @@
 package org.voimala.myrts.screens.gameplay.layers;
 
-public class Land {
+import com.badlogic.gdx.graphics.g2d.Sprite;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Disposable;
+
+/** The ground layer of the map. The ground does not change during the game, so the tiles are uploaded to the GPU
+ * only once, in square chunks of tiles. Only the chunks that overlap the visible area are drawn.
+ *
+ * NOTE: SpriteCache has its own begin and end, so the land has to be rendered outside SpriteBatch's
+ * begin and end. */
+public class Land implements Disposable {
+
+    /** Chunk width and height in tiles. */
+    public static final int CHUNK_SIZE_TILES = 8;
+    /** SpriteCache can not hold more images than this if indices are used. */
+    private static final int MAX_INDEXED_SPRITES = 8191;
+
+    private final int widthTiles;
+    private final int heightTiles;
+    private final float tileSizePixels;
+    private final int widthChunks;
+    private final int heightChunks;
+    private final SpriteCache spriteCache;
+    /** SpriteCache id of each chunk. Index = chunkY * widthChunks + chunkX. */
+    private final int[] chunkCacheIds;
+
+    /** @param tileSprite Every tile is drawn with this sprite. The sprite's position is changed. */
+    public Land(final int widthTiles, final int heightTiles, final float tileSizePixels, final Sprite tileSprite) {
+        this.widthTiles = widthTiles;
+        this.heightTiles = heightTiles;
+        this.tileSizePixels = tileSizePixels;
+        widthChunks = (widthTiles + CHUNK_SIZE_TILES - 1) / CHUNK_SIZE_TILES;
+        heightChunks = (heightTiles + CHUNK_SIZE_TILES - 1) / CHUNK_SIZE_TILES;
+
+        int tileCount = widthTiles * heightTiles;
+        spriteCache = new SpriteCache(tileCount, tileCount <= MAX_INDEXED_SPRITES);
+        chunkCacheIds = new int[widthChunks * heightChunks];
+        buildChunks(tileSprite);
+    }
+
+    private void buildChunks(final Sprite tileSprite) {
+        tileSprite.setSize(tileSizePixels, tileSizePixels);
+
+        for (int chunkY = 0; chunkY < heightChunks; chunkY++) {
+            for (int chunkX = 0; chunkX < widthChunks; chunkX++) {
+                spriteCache.beginCache();
+
+                int lastTileX = Math.min((chunkX + 1) * CHUNK_SIZE_TILES, widthTiles);
+                int lastTileY = Math.min((chunkY + 1) * CHUNK_SIZE_TILES, heightTiles);
+                for (int tileX = chunkX * CHUNK_SIZE_TILES; tileX < lastTileX; tileX++) {
+                    for (int tileY = chunkY * CHUNK_SIZE_TILES; tileY < lastTileY; tileY++) {
+                        tileSprite.setPosition(tileX * tileSizePixels, tileY * tileSizePixels);
+                        spriteCache.add(tileSprite);
+                    }
+                }
+
+                chunkCacheIds[chunkY * widthChunks + chunkX] = spriteCache.endCache();
+            }
+        }
+    }
+
+    /** Draws the chunks which overlap the visible area.
+     * @param visibleArea The area of the world which is visible on the screen.
+     * @return Returns the number of chunks that were drawn. */
+    public int render(final Matrix4 projectionMatrix, final Rectangle visibleArea) {
+        float chunkSizePixels = CHUNK_SIZE_TILES * tileSizePixels;
+        int minChunkX = Math.max((int) Math.floor(visibleArea.x / chunkSizePixels), 0);
+        int maxChunkX = Math.min((int) Math.floor((visibleArea.x + visibleArea.width) / chunkSizePixels), widthChunks - 1);
+        int minChunkY = Math.max((int) Math.floor(visibleArea.y / chunkSizePixels), 0);
+        int maxChunkY = Math.min((int) Math.floor((visibleArea.y + visibleArea.height) / chunkSizePixels), heightChunks - 1);
+
+        if (minChunkX > maxChunkX || minChunkY > maxChunkY) {
+            return 0; // The land is not visible
+        }
+
+        spriteCache.setProjectionMatrix(projectionMatrix);
+        spriteCache.begin();
+        for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                spriteCache.draw(chunkCacheIds[chunkY * widthChunks + chunkX]);
+            }
+        }
+        spriteCache.end();
+
+        return (maxChunkX - minChunkX + 1) * (maxChunkY - minChunkY + 1);
+    }
+
+    public int getChunkCount() {
+        return chunkCacheIds.length;
+    }
+
+    @Override
+    public void dispose() {
+        spriteCache.dispose();
+    }
+
 }
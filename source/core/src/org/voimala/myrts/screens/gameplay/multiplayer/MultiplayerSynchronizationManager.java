@@ -2,11 +2,17 @@ package org.voimala.myrts.screens.gameplay.multiplayer;
 
 import com.badlogic.gdx.Gdx;
 import org.voimala.myrts.app.GameMain;
+import org.voimala.myrts.networking.LatencyStatistics;
 import org.voimala.myrts.networking.NetworkManager;
 import org.voimala.myrts.networking.RTSProtocolManager;
 import org.voimala.myrts.screens.gameplay.GameplayScreen;
 import org.voimala.myrts.screens.gameplay.input.LocalInputQueue;
 import org.voimala.myrts.screens.gameplay.input.NetworkInputQueue;
+import org.voimala.myrts.screens.gameplay.world.GameStateHashTree;
+import org.voimala.myrts.screens.gameplay.world.GameStateHasher;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /** This class is used to store ja process player inputs during gameplay.
  * Implemented as a singleton since it is important to be able to store player inputs
@@ -17,19 +23,47 @@ public class MultiplayerSynchronizationManager {
 
     private static MultiplayerSynchronizationManager instanceOfThis;
 
+    /** The first SimTick of a multiplayer game. The inputs given during it are the first inputs sent to the
+     * server, and the server's TurnAggregator waits them as the first turn. */
+    public static final long FIRST_SIM_TICK = 1;
+
     private GameplayScreen gameplayScreen;
     /** SimTick is used for network communication.
      * 1 simTick = 5 world update ticks by default.
      * When a new SimTick is reached, the game executes other player's input information.
      * If such information is not available, wait for it.
      */
-    private long simTick = 0; /** "Communication turn" in multiplayer game. */
+    private long simTick = FIRST_SIM_TICK; /** "Communication turn" in multiplayer game. */
     private boolean isWaitingInputForNextSimTick = false;
     private long startedWaitingInputTimestamp = 0;
+    /** The next SimTick starts at this world update tick. */
+    private long nextSimTickWorldUpdateTick = 0;
+    private long latestPerformedTurnSimTick = 0;
+    private TurnConfig turnConfig = createDefaultTurnConfig();
+    /** Configs sent by the server, in the order in which they take effect. */
+    private final ConcurrentLinkedQueue<TurnConfig> pendingTurnConfigs = new ConcurrentLinkedQueue<TurnConfig>();
+
+    /** Time from sending the local inputs to receiving the turn which contains them. Reported to the server,
+     * which adapts the turn config to the slowest player. */
+    private final LatencyStatistics turnRoundTripStatistics = new LatencyStatistics(32);
+    /** When the local inputs of the latest SimTicks were sent. Index = SimTick % length.
+     * Written by the game thread and read by the network thread. */
+    private final AtomicLongArray inputSentTimestamps = new AtomicLongArray(64);
+    private int reportLatencyEveryNthSimTick = 10;
 
     private int sendHashEveryNthSimTick = 4; /** 1 = means send hash on every SimTick, 3 every third SimTick etc.*/
-
-    private MultiplayerSynchronizationManager() {}
+    /** If true, the whole game state is written to the debug log whenever the hash is sent.
+     * Slow, use only for finding out why the game goes out of sync. */
+    private boolean isGameStateDumpEnabled = false;
+    /** Hash trees of the latest sent hashes. The server may ask for parts of these trees if the game goes
+     * out of sync, see DesyncLocator. Accessed also by the network thread, so synchronize on the array. */
+    private final GameStateHashTree[] hashTreeHistory = new GameStateHashTree[8];
+
+    private MultiplayerSynchronizationManager() {
+        for (int i = 0; i < hashTreeHistory.length; i++) {
+            hashTreeHistory[i] = new GameStateHashTree();
+        }
+    }
 
     public static MultiplayerSynchronizationManager getInstance() {
         if (instanceOfThis == null) {
@@ -43,6 +77,11 @@ public class MultiplayerSynchronizationManager {
         this.gameplayScreen = gameplayScreen;
     }
 
+    /** @return True if the next SimTick starts at the given world update tick. */
+    public boolean isSimTickBoundary(final long worldUpdateTick) {
+        return worldUpdateTick == nextSimTickWorldUpdateTick;
+    }
+
     /** Gameplayscreen should not be null when this method is called.
      * @return True if input is ok for the next SimTick. */
     public boolean handleNewSimTick() {
@@ -54,16 +93,29 @@ public class MultiplayerSynchronizationManager {
         if (startedWaitingInputTimestamp == 0) {
             startedWaitingInputTimestamp = System.currentTimeMillis();
         }
-        /* Check that we have input information for the next SimTick so that we can
-        * continue executing the simulation. If the input is not available for all players,
+        /* The server sends a new config before the turn after which it takes effect, so read
+         * the latest complete turn before taking the configs into use. */
+        long latestCompleteTurnSimTick = NetworkInputQueue.getInstance().getLatestCompleteTurnSimTick();
+        applyPendingTurnConfigs();
+
+        /* Check that the server has sent the turn which should be executed now so that we can
+        * continue executing the simulation. If the turn has not arrived yet,
         * isWaitingInputForNextSimTick remains true.
-        * The input for the next turn was sent in the previous SimTick. */
-        if (NetworkInputQueue.getInstance().doesAllInputExistForSimTick(simTick - 1)) {
+        * Inputs given in SimTick x are executed when SimTick x + input delay starts. If the input delay has
+        * just decreased, many turns are executed at once. If it has increased, no turns are executed. */
+        long performedTurnSimTick = simTick - turnConfig.getInputDelaySimTicks();
+        if (performedTurnSimTick <= 0 || performedTurnSimTick <= latestCompleteTurnSimTick) {
             LocalInputQueue.getInstance().sendInputsToOtherPlayers(simTick);
-            NetworkInputQueue.getInstance().performInputsForSimTick(simTick - 1);
+            inputSentTimestamps.set((int) (simTick % inputSentTimestamps.length()), System.currentTimeMillis());
+            while (latestPerformedTurnSimTick < performedTurnSimTick) {
+                latestPerformedTurnSimTick++;
+                NetworkInputQueue.getInstance().performInputsForSimTick(latestPerformedTurnSimTick);
+            }
             sendGameStateHash();
+            reportLatency();
             isWaitingInputForNextSimTick = false;
             simTick++;
+            nextSimTickWorldUpdateTick += turnConfig.getTurnLengthWorldUpdates();
             startedWaitingInputTimestamp = 0;
             Gdx.app.debug(TAG, "Player " + GameMain.getInstance().getPlayer().getNumber() + " world tick is "
                             + gameplayScreen.getWorldController().getWorldUpdateTick() + " and simtick is " + simTick);
@@ -73,9 +125,51 @@ public class MultiplayerSynchronizationManager {
         return false;
     }
 
+    private void applyPendingTurnConfigs() {
+        while (pendingTurnConfigs.peek() != null && pendingTurnConfigs.peek().getEffectiveSimTick() <= simTick) {
+            turnConfig = pendingTurnConfigs.poll();
+            Gdx.app.debug(TAG, "SimTick " + simTick + ": SimTick length is now " + turnConfig.getTurnLengthWorldUpdates()
+                    + " world updates and input delay " + turnConfig.getInputDelaySimTicks() + " SimTicks.");
+        }
+    }
+
+    /** Called by the network thread when a new turn config has been received from the server. */
+    public void addTurnConfig(final TurnConfig turnConfig) {
+        pendingTurnConfigs.offer(turnConfig);
+    }
+
+    /** Called by the network thread when a turn has been received from the server. */
+    public void handleTurnReceived(final long turnSimTick) {
+        long sentTimestamp = inputSentTimestamps.get((int) (turnSimTick % inputSentTimestamps.length()));
+
+        if (sentTimestamp != 0) {
+            turnRoundTripStatistics.addSample(System.currentTimeMillis() - sentTimestamp);
+        }
+    }
+
+    private void reportLatency() {
+        if (simTick % reportLatencyEveryNthSimTick == 0 && turnRoundTripStatistics.getSampleCount() > 0) {
+            NetworkManager.getInstance().getClientThread().sendMessage(
+                    RTSProtocolManager.getInstance().createNetworkMessageLatency(
+                            turnRoundTripStatistics.getAverage(),
+                            turnRoundTripStatistics.getJitter()));
+        }
+    }
+
     private void sendGameStateHash() {
         if (simTick % sendHashEveryNthSimTick == 0) {
-            String hash = gameplayScreen.getWorldController().getGameStateHash();
+            String hash;
+            synchronized (hashTreeHistory) {
+                GameStateHashTree hashTree =
+                        hashTreeHistory[(int) ((simTick / sendHashEveryNthSimTick) % hashTreeHistory.length)];
+                hashTree.build(gameplayScreen.getWorldController(), simTick);
+                hash = GameStateHasher.toHexString(hashTree.getRootHash());
+            }
+
+            if (isGameStateDumpEnabled) {
+                Gdx.app.debug(TAG, "Game state at SimTick " + simTick + " (hash " + hash + "):\n"
+                        + gameplayScreen.getWorldController().getGameStateDump());
+            }
 
             NetworkManager.getInstance().getClientThread().sendMessage(
                     RTSProtocolManager.getInstance().createNetworkMessageGameStateHash(
@@ -84,13 +178,56 @@ public class MultiplayerSynchronizationManager {
         }
     }
 
+    /** @return Returns the children of the node of the given SimTick's hash tree (see
+     * GameStateHashTree.getChildEntries), or null if the tree or the node is not available anymore. */
+    public String getGameStateHashTreeEntries(final long simTick, final String path) {
+        synchronized (hashTreeHistory) {
+            for (GameStateHashTree hashTree : hashTreeHistory) {
+                if (hashTree.getSimTick() == simTick) {
+                    return hashTree.getChildEntries(path);
+                }
+            }
+        }
+
+        return null;
+    }
+
     public long getSimTick() {
         return simTick;
     }
 
-    /** Warning: SimTick should be set manually only when the game is not running! */
+    /** Warning: SimTick should be set manually only when the game is not running!
+     * Resets the turn config, so this should be called when a new game starts. */
     public void setSimTick(final long simTick) {
         this.simTick = simTick;
+        turnConfig = createDefaultTurnConfig();
+        pendingTurnConfigs.clear();
+        nextSimTickWorldUpdateTick = simTick * turnConfig.getTurnLengthWorldUpdates();
+        latestPerformedTurnSimTick = simTick - 1 - turnConfig.getInputDelaySimTicks();
+        turnRoundTripStatistics.reset();
+        for (int i = 0; i < inputSentTimestamps.length(); i++) {
+            inputSentTimestamps.set(i, 0);
+        }
+    }
+
+    private TurnConfig createDefaultTurnConfig() {
+        return new TurnConfig(0, TurnConfig.DEFAULT_TURN_LENGTH_WORLD_UPDATES, TurnConfig.DEFAULT_INPUT_DELAY_SIM_TICKS);
+    }
+
+    public TurnConfig getTurnConfig() {
+        return turnConfig;
+    }
+
+    public LatencyStatistics getTurnRoundTripStatistics() {
+        return turnRoundTripStatistics;
+    }
+
+    public boolean isGameStateDumpEnabled() {
+        return isGameStateDumpEnabled;
+    }
+
+    public void setGameStateDumpEnabled(final boolean isGameStateDumpEnabled) {
+        this.isGameStateDumpEnabled = isGameStateDumpEnabled;
     }
 
     public boolean isWaitingInputForNextSimTick() {
@@ -0,0 +1,41 @@
+package org.voimala.myrts.screens.gameplay.multiplayer;
+
+/** Decides how SimTicks are scheduled in a multiplayer game. The server sends a new TurnConfig when the
+ * players' latencies change, and every player starts using it at the same SimTick. */
+public class TurnConfig {
+
+    public static final int DEFAULT_TURN_LENGTH_WORLD_UPDATES = 5;
+    public static final int DEFAULT_INPUT_DELAY_SIM_TICKS = 1;
+
+    private final long effectiveSimTick;
+    private final int turnLengthWorldUpdates;
+    private final int inputDelaySimTicks;
+
+    /** @param effectiveSimTick The first SimTick which uses this config.
+     *  @param turnLengthWorldUpdates How many world updates there are in one SimTick.
+     *  @param inputDelaySimTicks Inputs given in SimTick x are executed when SimTick x + inputDelaySimTicks
+     *                           starts. */
+    public TurnConfig(final long effectiveSimTick, final int turnLengthWorldUpdates, final int inputDelaySimTicks) {
+        this.effectiveSimTick = effectiveSimTick;
+        this.turnLengthWorldUpdates = turnLengthWorldUpdates;
+        this.inputDelaySimTicks = inputDelaySimTicks;
+    }
+
+    public long getEffectiveSimTick() {
+        return effectiveSimTick;
+    }
+
+    public int getTurnLengthWorldUpdates() {
+        return turnLengthWorldUpdates;
+    }
+
+    public int getInputDelaySimTicks() {
+        return inputDelaySimTicks;
+    }
+
+    /** @return Returns the time between giving an input and executing it, in world updates. */
+    public int getInputLatencyWorldUpdates() {
+        return turnLengthWorldUpdates * inputDelaySimTicks;
+    }
+
+}
@@ -21,6 +21,12 @@ public abstract class AbstractUnit extends AbstractGameObject {
     protected UnitType type;
     protected boolean isSelected = false;
     protected ArrayList<AbstractTurret> turrets = new ArrayList<AbstractTurret>();
+    /** The container this unit has been added to. Null if the unit is not in a container. */
+    UnitContainer unitContainer;
+    /** Used by UnitContainer. */
+    long containerOrder;
+    /** Used by UnitGrid. */
+    long spatialCellKey;
 
     public AbstractUnit(final WorldController worldController) {
         super(worldController);
@@ -32,6 +38,7 @@ public abstract class AbstractUnit extends AbstractGameObject {
     @Override
     public AbstractUnit clone() throws CloneNotSupportedException {
         AbstractUnit unitClone = (AbstractUnit) super.clone();
+        unitClone.unitContainer = null; // The clone has to be added to a container separately
 
         // Clone turrets
         ArrayList<AbstractTurret> turretsClone = new ArrayList<AbstractTurret>();
@@ -117,13 +124,18 @@ public abstract class AbstractUnit extends AbstractGameObject {
     }
 
     @Override
-    public void setPosition(Vector2 position) {
-        super.setPosition(position);
+    public void setPosition(final float x, final float y) {
+        super.setPosition(x, y);
 
         for (AbstractTurret turret : turrets) {
-            turret.setPosition(new Vector2(
-                    position.x + turret.getRelativePosition().x,
-                    position.y + turret.getRelativePosition().y));
+            turret.setPosition(x + turret.getRelativePosition().x, y + turret.getRelativePosition().y);
+        }
+    }
+
+    @Override
+    protected void onPositionChanged() {
+        if (unitContainer != null) {
+            unitContainer.updateUnitPosition(this);
         }
     }
 
@@ -138,13 +150,22 @@ public abstract class AbstractUnit extends AbstractGameObject {
 
     @Override
     public void setWorldController(final WorldController worldController) {
-        this.worldController = worldController;
+        super.setWorldController(worldController);
 
         for (AbstractTurret turret : turrets) {
             turret.setWorldController(worldController);
         }
     }
 
+    @Override
+    public void detachTransform() {
+        super.detachTransform();
+
+        for (AbstractTurret turret : turrets) {
+            turret.detachTransform();
+        }
+    }
+
     public List<AbstractTurret> getTurrets() {
         return turrets;
     }
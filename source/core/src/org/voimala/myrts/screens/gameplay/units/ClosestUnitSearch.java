@@ -0,0 +1,94 @@
+package org.voimala.myrts.screens.gameplay.units;
+
+import org.voimala.utility.MathHelper;
+
+/** Keeps track of the closest unit found so far. The same object is reused between searches so that
+ * searching does not allocate anything.
+ *
+ * Distances are compared squared. The result has to be exactly the same as when comparing the distances given by
+ * MathHelper.getDistanceBetweenPoints (otherwise the game would go out of sync with older game versions), so when
+ * two squared distances are almost equal, the square roots are compared instead. If the distances are equal,
+ * the unit with the lowest team number wins, and if they are in the same team, the unit which was added to the
+ * UnitContainer first. */
+class ClosestUnitSearch {
+
+    /** Relative difference under which squared distances are considered to be possibly equal after
+     * taking the square root. */
+    private static final double ROUNDING_EPSILON = 1e-9;
+
+    private float x;
+    private float y;
+    private float radius;
+    private double radiusSquared;
+    private int excludedTeam;
+    private AbstractUnit closestUnit;
+    private double closestDistanceSquared;
+
+    void reset(final float x, final float y, final float radius, final int excludedTeam) {
+        this.x = x;
+        this.y = y;
+        this.radius = radius;
+        this.radiusSquared = (double) radius * radius;
+        this.excludedTeam = excludedTeam;
+        this.closestUnit = null;
+        this.closestDistanceSquared = 0;
+    }
+
+    void offer(final AbstractUnit unit) {
+        if (unit.getTeam() == excludedTeam) {
+            return;
+        }
+
+        double distanceSquared = MathHelper.getDistanceBetweenPointsSquared(x, y, unit.getX(), unit.getY());
+        if (!isInRadius(distanceSquared)) {
+            return;
+        }
+
+        if (closestUnit == null || isCloserThanClosestUnit(unit, distanceSquared)) {
+            closestUnit = unit;
+            closestDistanceSquared = distanceSquared;
+        }
+    }
+
+    private boolean isInRadius(final double distanceSquared) {
+        if (distanceSquared < radiusSquared * (1 - ROUNDING_EPSILON)) {
+            return true;
+        }
+
+        if (distanceSquared > radiusSquared * (1 + ROUNDING_EPSILON)) {
+            return false;
+        }
+
+        return Math.sqrt(distanceSquared) <= radius;
+    }
+
+    private boolean isCloserThanClosestUnit(final AbstractUnit unit, final double distanceSquared) {
+        if (Math.abs(distanceSquared - closestDistanceSquared) > closestDistanceSquared * ROUNDING_EPSILON) {
+            return distanceSquared < closestDistanceSquared;
+        }
+
+        double distance = Math.sqrt(distanceSquared);
+        double closestDistance = Math.sqrt(closestDistanceSquared);
+        if (distance != closestDistance) {
+            return distance < closestDistance;
+        }
+
+        if (unit.getTeam() != closestUnit.getTeam()) {
+            return unit.getTeam() < closestUnit.getTeam();
+        }
+
+        return unit.containerOrder < closestUnit.containerOrder;
+    }
+
+    /** Returns true if it is certain that no unit at the given distance (or further) can win the current
+     * closest unit. */
+    boolean isClosestUnitCloserThan(final double distance) {
+        return closestUnit != null && Math.sqrt(closestDistanceSquared) * (1 + ROUNDING_EPSILON) < distance;
+    }
+
+    /** Returns null if nothing has been found. */
+    AbstractUnit getClosestUnit() {
+        return closestUnit;
+    }
+
+}
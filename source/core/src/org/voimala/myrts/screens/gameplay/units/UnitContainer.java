@@ -1,11 +1,26 @@
 package org.voimala.myrts.screens.gameplay.units;
 
+import com.badlogic.gdx.math.Rectangle;
+import org.voimala.utility.MathHelper;
+
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 
 public class UnitContainer {
 
+    /** Can be given as a team filter to the find methods if units of all teams should be returned. */
+    public static final int ANY_TEAM = -1;
+    public static final float DEFAULT_GRID_CELL_SIZE = 256;
+    private static final Comparator<AbstractUnit> CONTAINER_ORDER_COMPARATOR = new Comparator<AbstractUnit>() {
+        @Override
+        public int compare(final AbstractUnit unit1, final AbstractUnit unit2) {
+            return unit1.containerOrder < unit2.containerOrder ? -1 : (unit1.containerOrder == unit2.containerOrder ? 0 : 1);
+        }
+    };
+
     /** All units are kept in this array */
     private ArrayList<AbstractUnit> allUnits = new ArrayList<AbstractUnit>();
 
@@ -20,8 +35,21 @@ public class UnitContainer {
     /** Team --> Units */
     private HashMap<Integer, ArrayList<AbstractUnit>> unitsByTeam = new HashMap<Integer, ArrayList<AbstractUnit>>();
     // TODO How to keep the containers in sync if a unit changes its' owner, team etc?
+    /** Units by their position. Units update the grid themselves when their position changes. */
+    private UnitGrid unitGrid;
+    /** Every added unit gets the next number. Used for keeping the grid cells in the same order as allUnits. */
+    private long nextContainerOrder = 0;
+    private ClosestUnitSearch closestUnitSearch = new ClosestUnitSearch();
+    /** The biggest collision radius of all units that have been added. */
+    private float maxCollisionRadius = 0;
 
     public UnitContainer() {
+        this(DEFAULT_GRID_CELL_SIZE);
+    }
+
+    /** @param gridCellSize Size of a spatial grid cell in pixels. */
+    public UnitContainer(final float gridCellSize) {
+        unitGrid = new UnitGrid(gridCellSize);
         initializeSpecificContainers();
     }
 
@@ -37,6 +65,11 @@ public class UnitContainer {
         unitsByPlayer.get(unit.getPlayerNumber()).add(unit);
         unitsByTeam.get(unit.getTeam()).add(unit);
         allUnits.add(unit);
+
+        maxCollisionRadius = Math.max(maxCollisionRadius, unit.getCollisionRadius());
+        unit.containerOrder = nextContainerOrder++;
+        unit.unitContainer = this;
+        unitGrid.addUnit(unit);
     }
 
     public void removeUnit(final AbstractUnit unit) {
@@ -44,6 +77,56 @@ public class UnitContainer {
         unitsByPlayer.get(unit.getPlayerNumber()).remove(unit);
         unitsByTeam.get(unit.getTeam()).remove(unit);
         allUnits.remove(unit);
+
+        unitGrid.removeUnit(unit);
+        unit.unitContainer = null;
+    }
+
+    /** Removes all given units at once. Faster than calling removeUnit for every unit since every list is gone
+     * trough only once. The order of the remaining units does not change. Units which are not in this container
+     * are ignored. */
+    public void removeUnits(final List<AbstractUnit> units) {
+        boolean isSomethingRemoved = false;
+        for (int i = 0; i < units.size(); i++) {
+            AbstractUnit unit = units.get(i);
+            if (unit.unitContainer != this) {
+                continue;
+            }
+
+            unitsById.remove(unit.getObjectId());
+            unitGrid.removeUnit(unit);
+            unit.unitContainer = null; // Marks the unit to be removed from the lists below
+            isSomethingRemoved = true;
+        }
+
+        if (!isSomethingRemoved) {
+            return;
+        }
+
+        removeUnitsNotInThisContainer(allUnits);
+        for (ArrayList<AbstractUnit> playerUnits : unitsByPlayer.values()) {
+            removeUnitsNotInThisContainer(playerUnits);
+        }
+        for (ArrayList<AbstractUnit> teamUnits : unitsByTeam.values()) {
+            removeUnitsNotInThisContainer(teamUnits);
+        }
+    }
+
+    private void removeUnitsNotInThisContainer(final ArrayList<AbstractUnit> units) {
+        int keptUnits = 0;
+        for (int i = 0; i < units.size(); i++) {
+            AbstractUnit unit = units.get(i);
+            if (unit.unitContainer == this) {
+                units.set(keptUnits++, unit);
+            }
+        }
+
+        units.subList(keptUnits, units.size()).clear();
+    }
+
+    /** Called by the unit when its position has changed. */
+    void updateUnitPosition(final AbstractUnit unit) {
+        unitGrid.updateUnit(unit);
     }
 
     /** NOTE: Do not modify the returned list! Modifications are made using addUnit
@@ -67,4 +150,282 @@ public class UnitContainer {
         return unitsByTeam.get(team);
     }
 
+    /** Returns units which are at most radius away from the given point. Returns an empty list if nothing is found.
+     * @param team Only units of this team are returned. Use ANY_TEAM to get units of all teams. */
+    public List<AbstractUnit> findUnitsInRadius(final float x, final float y, final float radius, final int team) {
+        ArrayList<AbstractUnit> unitsInRadius = new ArrayList<AbstractUnit>();
+        findUnitsInRadius(x, y, radius, team, unitsInRadius);
+        return unitsInRadius;
+    }
+
+    /** Same as findUnitsInRadius above, but found units are added to the given list so that
+     * the caller can reuse the same list. */
+    public void findUnitsInRadius(final float x,
+                                  final float y,
+                                  final float radius,
+                                  final int team,
+                                  final List<AbstractUnit> result) {
+        double radiusSquared = (double) radius * radius;
+        int minCellX = unitGrid.getCellX(x - radius);
+        int maxCellX = unitGrid.getCellX(x + radius);
+        int minCellY = unitGrid.getCellY(y - radius);
+        int maxCellY = unitGrid.getCellY(y + radius);
+
+        for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                List<AbstractUnit> cell = unitGrid.getUnitsInCell(cellX, cellY);
+                if (cell == null) {
+                    continue;
+                }
+
+                for (int i = 0; i < cell.size(); i++) {
+                    AbstractUnit unit = cell.get(i);
+                    if (team != ANY_TEAM && unit.getTeam() != team) {
+                        continue;
+                    }
+
+                    if (MathHelper.getDistanceBetweenPointsSquared(x, y, unit.getX(), unit.getY()) <= radiusSquared) {
+                        result.add(unit);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Returns units whose position is inside the given rectangle. Returns an empty list if nothing is found. */
+    public List<AbstractUnit> findUnitsInRectangle(final Rectangle rectangle) {
+        ArrayList<AbstractUnit> unitsInRectangle = new ArrayList<AbstractUnit>();
+        findUnitsInRectangle(rectangle, unitsInRectangle);
+        return unitsInRectangle;
+    }
+
+    /** Same as findUnitsInRectangle above, but found units are added to the given list so that
+     * the caller can reuse the same list. */
+    public void findUnitsInRectangle(final Rectangle rectangle, final List<AbstractUnit> result) {
+        int minCellX = unitGrid.getCellX(rectangle.x);
+        int maxCellX = unitGrid.getCellX(rectangle.x + rectangle.width);
+        int minCellY = unitGrid.getCellY(rectangle.y);
+        int maxCellY = unitGrid.getCellY(rectangle.y + rectangle.height);
+
+        for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                List<AbstractUnit> cell = unitGrid.getUnitsInCell(cellX, cellY);
+                if (cell == null) {
+                    continue;
+                }
+
+                for (int i = 0; i < cell.size(); i++) {
+                    AbstractUnit unit = cell.get(i);
+                    if (rectangle.contains(unit.getX(), unit.getY())) {
+                        result.add(unit);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Adds units whose position is inside the given rectangle or at most margin away from it. Units are added in
+     * the same order as they are in getAllUnits, so the result does not depend on where the units are.
+     * Used for finding the units whose sprites may be visible, margin being the maximum distance from
+     * a unit's position to the edge of its sprites. */
+    public void findUnitsNearRectangle(final Rectangle rectangle, final float margin, final List<AbstractUnit> result) {
+        float minX = rectangle.x - margin;
+        float maxX = rectangle.x + rectangle.width + margin;
+        float minY = rectangle.y - margin;
+        float maxY = rectangle.y + rectangle.height + margin;
+        int minCellX = unitGrid.getCellX(minX);
+        int maxCellX = unitGrid.getCellX(maxX);
+        int minCellY = unitGrid.getCellY(minY);
+        int maxCellY = unitGrid.getCellY(maxY);
+        int firstResultIndex = result.size();
+
+        for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                List<AbstractUnit> cell = unitGrid.getUnitsInCell(cellX, cellY);
+                if (cell == null) {
+                    continue;
+                }
+
+                for (int i = 0; i < cell.size(); i++) {
+                    AbstractUnit unit = cell.get(i);
+                    if (unit.getX() >= minX && unit.getX() <= maxX && unit.getY() >= minY && unit.getY() <= maxY) {
+                        result.add(unit);
+                    }
+                }
+            }
+        }
+
+        Collections.sort(result.subList(firstResultIndex, result.size()), CONTAINER_ORDER_COMPARATOR);
+    }
+
+    /** Returns the closest unit which is at most radius away from the given point and is not in the given team.
+     * If there are multiple units at the same distance, the unit with the lowest team number is returned,
+     * and if they are in the same team, the unit which was added to this container first.
+     * Returns null if nothing is found.
+     *
+     * Cells are visited in rings around the point, so the search ends as soon as the closest unit is known. */
+    public AbstractUnit findClosestEnemyUnitInRadius(final float x,
+                                                     final float y,
+                                                     final float radius,
+                                                     final int team) {
+        closestUnitSearch.reset(x, y, radius, team);
+        float cellSize = unitGrid.getCellSize();
+        int centerCellX = unitGrid.getCellX(x);
+        int centerCellY = unitGrid.getCellY(y);
+        int minCellX = unitGrid.getCellX(x - radius);
+        int maxCellX = unitGrid.getCellX(x + radius);
+        int minCellY = unitGrid.getCellY(y - radius);
+        int maxCellY = unitGrid.getCellY(y + radius);
+        int maxRing = Math.max(
+                Math.max(centerCellX - minCellX, maxCellX - centerCellX),
+                Math.max(centerCellY - minCellY, maxCellY - centerCellY));
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int cellY = Math.max(centerCellY - ring, minCellY);
+                 cellY <= Math.min(centerCellY + ring, maxCellY);
+                 cellY++) {
+                boolean isTopOrBottomRow = cellY == centerCellY - ring || cellY == centerCellY + ring;
+                // Only the first and the last cell of the row belong to the ring if this is not the top or bottom row
+                int step = isTopOrBottomRow ? 1 : ring * 2;
+                for (int cellX = centerCellX - ring; cellX <= centerCellX + ring; cellX += step) {
+                    if (cellX >= minCellX && cellX <= maxCellX) {
+                        offerUnitsInCell(cellX, cellY);
+                    }
+
+                    if (step == 0) {
+                        break; // Ring 0 has only one cell
+                    }
+                }
+            }
+
+            // Units outside the visited cells are at least this far away from the point.
+            double distanceToUnvisitedCells = Math.min(
+                    Math.min(x - (centerCellX - ring) * cellSize, (centerCellX + ring + 1) * cellSize - x),
+                    Math.min(y - (centerCellY - ring) * cellSize, (centerCellY + ring + 1) * cellSize - y));
+            if (closestUnitSearch.isClosestUnitCloserThan(distanceToUnvisitedCells)) {
+                break;
+            }
+        }
+
+        return closestUnitSearch.getClosestUnit();
+    }
+
+    /** Same as findClosestEnemyUnitInRadius above, but only the given candidates are checked. Can be used when
+     * multiple searches are made near each other, see findEnemyUnitCandidates. */
+    public AbstractUnit findClosestEnemyUnitInRadius(final float x,
+                                                     final float y,
+                                                     final float radius,
+                                                     final int team,
+                                                     final List<AbstractUnit> candidates) {
+        closestUnitSearch.reset(x, y, radius, team);
+        for (int i = 0; i < candidates.size(); i++) {
+            closestUnitSearch.offer(candidates.get(i));
+        }
+
+        return closestUnitSearch.getClosestUnit();
+    }
+
+    /** Adds all units which are not in the given team and are in the grid cells overlapping the given rectangle.
+     * NOTE: The result may contain units which are outside the rectangle. */
+    public void findEnemyUnitCandidates(final Rectangle rectangle, final int team, final List<AbstractUnit> result) {
+        int minCellX = unitGrid.getCellX(rectangle.x);
+        int maxCellX = unitGrid.getCellX(rectangle.x + rectangle.width);
+        int minCellY = unitGrid.getCellY(rectangle.y);
+        int maxCellY = unitGrid.getCellY(rectangle.y + rectangle.height);
+
+        for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                List<AbstractUnit> cell = unitGrid.getUnitsInCell(cellX, cellY);
+                if (cell == null) {
+                    continue;
+                }
+
+                for (int i = 0; i < cell.size(); i++) {
+                    AbstractUnit unit = cell.get(i);
+                    if (unit.getTeam() != team) {
+                        result.add(unit);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Returns the first unit whose collision mask the segment from start to end touches.
+     * Only cells near the segment are checked. If the segment enters multiple units at exactly the same point,
+     * the unit which was added to this container first is returned. Returns null if nothing is found.
+     *
+     * @param filter Only units accepted by the filter are checked. Can be null. */
+    public AbstractUnit findFirstUnitIntersectingSegment(final float startX,
+                                                         final float startY,
+                                                         final float endX,
+                                                         final float endY,
+                                                         final UnitFilter filter) {
+        float cellSize = unitGrid.getCellSize();
+        int minCellX = unitGrid.getCellX(Math.min(startX, endX) - maxCollisionRadius);
+        int maxCellX = unitGrid.getCellX(Math.max(startX, endX) + maxCollisionRadius);
+        int minCellY = unitGrid.getCellY(Math.min(startY, endY) - maxCollisionRadius);
+        int maxCellY = unitGrid.getCellY(Math.max(startY, endY) + maxCollisionRadius);
+        // A unit in a cell can touch the segment only if the cell's center is closer than this to the segment.
+        double maxDistanceFromCellCenter = maxCollisionRadius + cellSize * Math.sqrt(2) / 2;
+        double maxDistanceFromCellCenterSquared = maxDistanceFromCellCenter * maxDistanceFromCellCenter;
+
+        AbstractUnit firstUnit = null;
+        double firstUnitFraction = 0;
+
+        for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                List<AbstractUnit> cell = unitGrid.getUnitsInCell(cellX, cellY);
+                if (cell == null) {
+                    continue;
+                }
+
+                if (MathHelper.getDistanceBetweenPointAndSegmentSquared(
+                        (cellX + 0.5f) * cellSize,
+                        (cellY + 0.5f) * cellSize,
+                        startX,
+                        startY,
+                        endX,
+                        endY) > maxDistanceFromCellCenterSquared) {
+                    continue;
+                }
+
+                for (int i = 0; i < cell.size(); i++) {
+                    AbstractUnit unit = cell.get(i);
+                    if (filter != null && !filter.accept(unit)) {
+                        continue;
+                    }
+
+                    double fraction = unit.getSegmentCollisionFraction(startX, startY, endX, endY);
+                    if (fraction < 0) {
+                        continue;
+                    }
+
+                    if (firstUnit == null
+                            || fraction < firstUnitFraction
+                            || (fraction == firstUnitFraction && unit.containerOrder < firstUnit.containerOrder)) {
+                        firstUnit = unit;
+                        firstUnitFraction = fraction;
+                    }
+                }
+            }
+        }
+
+        return firstUnit;
+    }
+
+    public float getGridCellSize() {
+        return unitGrid.getCellSize();
+    }
+
+    private void offerUnitsInCell(final int cellX, final int cellY) {
+        List<AbstractUnit> cell = unitGrid.getUnitsInCell(cellX, cellY);
+        if (cell == null) {
+            return;
+        }
+
+        for (int i = 0; i < cell.size(); i++) {
+            closestUnitSearch.offer(cell.get(i));
+        }
+    }
+
 }
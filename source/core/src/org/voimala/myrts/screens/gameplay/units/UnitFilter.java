@@ -0,0 +1,9 @@
+package org.voimala.myrts.screens.gameplay.units;
+
+/** Decides which units are included in the results of UnitContainer's find methods. */
+public interface UnitFilter {
+
+    /** @return True if the unit should be included. */
+    boolean accept(final AbstractUnit unit);
+
+}
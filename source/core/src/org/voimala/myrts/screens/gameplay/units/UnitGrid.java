@@ -0,0 +1,93 @@
+package org.voimala.myrts.screens.gameplay.units;
+
+import com.badlogic.gdx.utils.LongMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Uniform grid (spatial hash) which divides the world into square cells. UnitContainer keeps every unit in
+ * the cell that contains the unit's position, so that units near a given point can be found without looping
+ * trough all units in the world.
+ *
+ * Units inside a cell are always kept in the same order as they were added to the UnitContainer. This way the
+ * content of the grid depends only on the current world state, not on the order in which units have moved. */
+class UnitGrid {
+
+    private final float cellSize;
+    /** Cell key --> Units in the cell. Cells are never removed, empty cells are simply left empty. */
+    private LongMap<ArrayList<AbstractUnit>> cells = new LongMap<ArrayList<AbstractUnit>>();
+
+    UnitGrid(final float cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be greater than 0.");
+        }
+
+        this.cellSize = cellSize;
+    }
+
+    void addUnit(final AbstractUnit unit) {
+        unit.spatialCellKey = getCellKey(getCellX(unit.getX()), getCellY(unit.getY()));
+        insertToCell(unit.spatialCellKey, unit);
+    }
+
+    void removeUnit(final AbstractUnit unit) {
+        ArrayList<AbstractUnit> cell = cells.get(unit.spatialCellKey);
+        if (cell != null) {
+            cell.remove(unit);
+        }
+    }
+
+    /** Moves the unit to another cell if its position is no longer inside the current cell. */
+    void updateUnit(final AbstractUnit unit) {
+        long newCellKey = getCellKey(getCellX(unit.getX()), getCellY(unit.getY()));
+
+        if (newCellKey != unit.spatialCellKey) {
+            removeUnit(unit);
+            unit.spatialCellKey = newCellKey;
+            insertToCell(newCellKey, unit);
+        }
+    }
+
+    private void insertToCell(final long cellKey, final AbstractUnit unit) {
+        ArrayList<AbstractUnit> cell = cells.get(cellKey);
+        if (cell == null) {
+            cell = new ArrayList<AbstractUnit>();
+            cells.put(cellKey, cell);
+        }
+
+        // Keep the cell sorted by container order. Cells are small so binary search is not needed.
+        int index = cell.size();
+        while (index > 0 && cell.get(index - 1).containerOrder > unit.containerOrder) {
+            index--;
+        }
+
+        cell.add(index, unit);
+    }
+
+    /** Returns null if the cell is empty. NOTE: Do not modify the returned list! */
+    List<AbstractUnit> getUnitsInCell(final int cellX, final int cellY) {
+        ArrayList<AbstractUnit> cell = cells.get(getCellKey(cellX, cellY));
+        if (cell == null || cell.isEmpty()) {
+            return null;
+        }
+
+        return cell;
+    }
+
+    int getCellX(final float x) {
+        return (int) Math.floor(x / cellSize);
+    }
+
+    int getCellY(final float y) {
+        return (int) Math.floor(y / cellSize);
+    }
+
+    float getCellSize() {
+        return cellSize;
+    }
+
+    private static long getCellKey(final int cellX, final int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
+
+}
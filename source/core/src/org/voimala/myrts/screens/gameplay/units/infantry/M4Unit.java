@@ -20,7 +20,7 @@ public class M4Unit extends AbstractInfantry {
     @Override
     protected void initializeTurrets() {
         AbstractTurret turret = new M4Turret(this);
-        turret.setAngle(angleDeg);
+        turret.setAngle(getAngle());
         turrets.add(turret);
     }
 
@@ -30,7 +30,7 @@ public class M4Unit extends AbstractInfantry {
     }
 
     protected void initializeCollisionMask() {
-        collisionMask = new Circle(position.x, position.y, 70);
+        collisionMask = new Circle(getX(), getY(), 70);
     }
 
     protected void initializeMovement() {
@@ -62,7 +62,7 @@ public class M4Unit extends AbstractInfantry {
     protected void updateCollisionMask() {
         if (collisionMask instanceof Circle) {
             Circle collisionCircle = (Circle) collisionMask;
-            collisionCircle.setPosition(position.x, position.y);
+            collisionCircle.setPosition(getX(), getY());
         }
 
     }
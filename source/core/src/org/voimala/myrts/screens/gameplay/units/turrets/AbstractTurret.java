@@ -4,11 +4,8 @@ import com.badlogic.gdx.math.Vector2;
 import org.voimala.myrts.screens.gameplay.units.AbstractUnit;
 import org.voimala.myrts.screens.gameplay.weapons.AbstractWeapon;
 import org.voimala.myrts.screens.gameplay.world.AbstractGameObject;
-import org.voimala.utility.MathHelper;
 import org.voimala.utility.RotationDirection;
 
-import java.util.ArrayList;
-
 public abstract class AbstractTurret extends AbstractGameObject implements Cloneable {
 
     protected AbstractUnit ownerUnit;
@@ -33,8 +30,8 @@ public abstract class AbstractTurret extends AbstractGameObject implements Clone
     public AbstractTurret(AbstractUnit ownerUnit, AbstractWeapon weapon) {
         super(ownerUnit.getWorldController());
         this.ownerUnit = ownerUnit;
-        this.position = new Vector2(ownerUnit.getX(), ownerUnit.getY());
-        this.angleDeg = ownerUnit.getAngle();
+        setPosition(ownerUnit.getX(), ownerUnit.getY());
+        setAngle(ownerUnit.getAngle());
         this.weapon = weapon;
     }
 
@@ -64,6 +61,10 @@ public abstract class AbstractTurret extends AbstractGameObject implements Clone
         this.turretState = turretState;
     }
 
+    public AbstractTurretState getState() {
+        return turretState;
+    }
+
     public void updateState(final float deltaTime) {
         super.updateState(deltaTime);
         updateTurretState(deltaTime);
@@ -78,8 +79,7 @@ public abstract class AbstractTurret extends AbstractGameObject implements Clone
     }
 
     protected void updatePosition() {
-        position.x = ownerUnit.getX() + relativePosition.x;
-        position.y = ownerUnit.getY() + relativePosition.y;
+        setPosition(ownerUnit.getX() + relativePosition.x, ownerUnit.getY() + relativePosition.y);
     }
 
     private void updateWeaponState(final float deltaTime) {
@@ -233,52 +233,19 @@ public abstract class AbstractTurret extends AbstractGameObject implements Clone
         setTarget(findClosestEnemyInRange());
     }
 
-    // TODO This is still one of the slowest methods to execute in this app.
-    protected AbstractUnit findClosestEnemyInRange() {
-        // Find all units in range that are not in the same team as this turret's owner unit.
-        ArrayList<AbstractUnit> targetsInRange = new ArrayList<AbstractUnit>();
-        for (int i = 0; i <= 8; i++) {
-            if (i == ownerUnit.getTeam()) {
-                continue;
-            }
-
-            for (AbstractUnit unit : getWorldController().getUnitContainer().findUnitsByTeam(i)) {
-                if (unit.getTeam() == getOwnerUnit().getTeam()) {
-                    continue;
-                }
-
-                if (MathHelper.getDistanceBetweenPoints(getPosition().x,
-                        getPosition().y,
-                        unit.getX(),
-                        unit.getY()) <= getRange()) {
-                    targetsInRange.add(unit);
-                }
-            }
-        }
-
-
-        // Find the closest one
-
-        AbstractUnit currentClosestTarget = null;
-        if (!targetsInRange.isEmpty()) {
-            currentClosestTarget = targetsInRange.get(0);
-        }
-
-        for (AbstractUnit unit : targetsInRange) {
-            if (MathHelper.getDistanceBetweenPoints(
-                    getPosition().x,
-                    getPosition().y,
-                    unit.getX(),
-                    unit.getY()) <
-                    MathHelper.getDistanceBetweenPoints(
-                            getPosition().x,
-                            getPosition().y,
-                            currentClosestTarget.getX(),
-                            currentClosestTarget.getY())) {
-                currentClosestTarget = unit;
-            }
-        }
+    /** Called by TargetAcquisition when the target requested by this turret has been searched.
+     * @param target Null if nothing was found. */
+    public void onTargetSearchCompleted(final AbstractUnit target) {
+        setTarget(target);
+        turretState.onTargetSearchCompleted();
+    }
 
-        return currentClosestTarget;
+    protected AbstractUnit findClosestEnemyInRange() {
+        // Find the closest unit in range that is not in the same team as this turret's owner unit.
+        return getWorldController().getUnitContainer().findClosestEnemyUnitInRadius(
+                getPosition().x,
+                getPosition().y,
+                getRange(),
+                ownerUnit.getTeam());
     }
 }
@@ -17,4 +17,9 @@ public abstract class AbstractTurretState implements Cloneable {
     }
 
     public abstract void updateState(final float deltaTime);
+
+    /** Called after the target requested from TargetAcquisition has been searched. */
+    public void onTargetSearchCompleted() {
+        // Can be left empty.
+    }
 }
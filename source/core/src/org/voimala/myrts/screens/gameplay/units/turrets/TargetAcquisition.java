@@ -0,0 +1,130 @@
+package org.voimala.myrts.screens.gameplay.units.turrets;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.IntSet;
+import com.badlogic.gdx.utils.LongMap;
+import org.voimala.myrts.screens.gameplay.units.AbstractUnit;
+import org.voimala.myrts.screens.gameplay.units.UnitContainer;
+import org.voimala.myrts.screens.gameplay.world.WorldController;
+
+import java.util.ArrayList;
+
+/** Finds new targets for all turrets that need one in a single pass after the units have been updated.
+ *
+ * Turrets are grouped by the grid cell they are in and by the team of their owner unit. Enemy units near the cell
+ * are collected only once per group and then shared by all turrets in the group. Every turret still gets exactly
+ * the same target as it would get from AbstractTurret.findNewClosestTarget. */
+public class TargetAcquisition {
+
+    private final WorldController worldController;
+    private ArrayList<AbstractTurret> turretsNeedingTarget = new ArrayList<AbstractTurret>();
+    /** Cell key --> Turrets in the cell. */
+    private LongMap<ArrayList<AbstractTurret>> turretsByCell = new LongMap<ArrayList<AbstractTurret>>();
+    private ArrayList<ArrayList<AbstractTurret>> freeTurretLists = new ArrayList<ArrayList<AbstractTurret>>();
+    private ArrayList<AbstractUnit> candidates = new ArrayList<AbstractUnit>();
+    private Rectangle candidateArea = new Rectangle();
+    /** Teams whose turrets in the current cell have already been handled. */
+    private IntSet handledTeams = new IntSet();
+
+    public TargetAcquisition(final WorldController worldController) {
+        this.worldController = worldController;
+    }
+
+    /** The turret will get a new target (or null if nothing is found) when acquireTargets is called. */
+    public void requestTarget(final AbstractTurret turret) {
+        turretsNeedingTarget.add(turret);
+    }
+
+    public void acquireTargets() {
+        if (turretsNeedingTarget.isEmpty()) {
+            return;
+        }
+
+        UnitContainer unitContainer = worldController.getUnitContainer();
+        float cellSize = unitContainer.getGridCellSize();
+
+        for (AbstractTurret turret : turretsNeedingTarget) {
+            long cellKey = getCellKey(getCell(turret.getX(), cellSize), getCell(turret.getY(), cellSize));
+            ArrayList<AbstractTurret> turretsInCell = turretsByCell.get(cellKey);
+            if (turretsInCell == null) {
+                turretsInCell = obtainTurretList();
+                turretsByCell.put(cellKey, turretsInCell);
+            }
+
+            turretsInCell.add(turret);
+        }
+
+        for (LongMap.Entry<ArrayList<AbstractTurret>> entry : turretsByCell.entries()) {
+            acquireTargetsInCell(unitContainer, entry.value, cellSize);
+            entry.value.clear();
+            freeTurretLists.add(entry.value);
+        }
+
+        turretsByCell.clear();
+        turretsNeedingTarget.clear();
+    }
+
+    private void acquireTargetsInCell(final UnitContainer unitContainer,
+                                      final ArrayList<AbstractTurret> turretsInCell,
+                                      final float cellSize) {
+        handledTeams.clear();
+        AbstractTurret firstTurret = turretsInCell.get(0);
+        int cellX = getCell(firstTurret.getX(), cellSize);
+        int cellY = getCell(firstTurret.getY(), cellSize);
+
+        for (int i = 0; i < turretsInCell.size(); i++) {
+            int team = turretsInCell.get(i).getOwnerUnit().getTeam();
+            if (!handledTeams.add(team)) {
+                continue; // Already handled
+            }
+
+            // Collect enemy units once for all turrets of this team in this cell
+            long maxRange = 0;
+            for (int j = i; j < turretsInCell.size(); j++) {
+                AbstractTurret turret = turretsInCell.get(j);
+                if (turret.getOwnerUnit().getTeam() == team) {
+                    maxRange = Math.max(maxRange, turret.getRange());
+                }
+            }
+
+            candidateArea.set(
+                    cellX * cellSize - maxRange,
+                    cellY * cellSize - maxRange,
+                    cellSize + maxRange * 2,
+                    cellSize + maxRange * 2);
+            candidates.clear();
+            unitContainer.findEnemyUnitCandidates(candidateArea, team, candidates);
+
+            for (int j = i; j < turretsInCell.size(); j++) {
+                AbstractTurret turret = turretsInCell.get(j);
+                if (turret.getOwnerUnit().getTeam() == team) {
+                    turret.onTargetSearchCompleted(unitContainer.findClosestEnemyUnitInRadius(
+                            turret.getPosition().x,
+                            turret.getPosition().y,
+                            turret.getRange(),
+                            team,
+                            candidates));
+                }
+            }
+        }
+
+        candidates.clear();
+    }
+
+    private ArrayList<AbstractTurret> obtainTurretList() {
+        if (freeTurretLists.isEmpty()) {
+            return new ArrayList<AbstractTurret>();
+        }
+
+        return freeTurretLists.remove(freeTurretLists.size() - 1);
+    }
+
+    private static int getCell(final float coordinate, final float cellSize) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static long getCellKey(final int cellX, final int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
+
+}
@@ -6,19 +6,28 @@ import org.voimala.myrts.audio.SoundContainer;
 import org.voimala.myrts.screens.gameplay.ammunition.AbstractAmmunition;
 import org.voimala.myrts.screens.gameplay.effects.GeneralMuzzleFire;
 import org.voimala.myrts.screens.gameplay.units.AbstractUnit;
+import org.voimala.myrts.screens.gameplay.units.UnitFilter;
 import org.voimala.utility.MathHelper;
 import org.voimala.utility.RotationDirection;
 
-public class TurretStateHasTarget extends AbstractTurretState {
+public class TurretStateHasTarget extends AbstractTurretState implements UnitFilter {
 
     private final long checkIfTargetIsInSightLagMs = 200;
     private long timeSpentSinceLastCheckIfTargetIsInSight = 0;
     private boolean isTargetInSight = false;
+    private Vector2 spawnPoint = new Vector2(); // Reused on every shot
 
     public TurretStateHasTarget(final AbstractTurret owner) {
         super(owner);
     }
 
+    @Override
+    public TurretStateHasTarget clone() throws CloneNotSupportedException {
+        TurretStateHasTarget stateClone = (TurretStateHasTarget) super.clone();
+        stateClone.spawnPoint = new Vector2();
+        return stateClone;
+    }
+
     @Override
     public void updateState(final float deltaTime) {
         checkTarget(deltaTime);
@@ -32,7 +41,7 @@ public class TurretStateHasTarget extends AbstractTurretState {
         timeSpentSinceLastCheckIfTargetIsInSight += deltaTime * 1000;
         if (timeSpentSinceLastCheckIfTargetIsInSight >= checkIfTargetIsInSightLagMs) {
             timeSpentSinceLastCheckIfTargetIsInSight = 0;
-            checkIfTargetIsInSight(25); // This is time consuming method so do not run it on every world update.
+            checkIfTargetIsInSight();
         }
 
         checkIfTargetCanBeShot();
@@ -79,7 +88,7 @@ public class TurretStateHasTarget extends AbstractTurretState {
                 ownerTurret.getPosition().x + ownerTurret.getRelativeShootPosition().x,
                 ownerTurret.getPosition().y + ownerTurret.getRelativeShootPosition().y);
 
-        Vector2 spawnPoint = new Vector2( // TODO Close, but not right
+        spawnPoint.set( // TODO Close, but not right
                 (float) (ownerTurret.getPosition().x + Math.cos(ownerTurret.getAngleInRadians()
                         + angleBetweenOriginAndShootPosition) * distanceBetweenOriginAndShootPosition),
                 (float) (ownerTurret.getPosition().y + Math.sin(ownerTurret.getAngleInRadians()
@@ -95,15 +104,18 @@ public class TurretStateHasTarget extends AbstractTurretState {
         if (ammunition != null) { // Weapon was fired
             ownerTurret.getWorldController().getAmmunitionContainer().add(ammunition);
 
-            GeneralMuzzleFire muzzleFire = new GeneralMuzzleFire(ownerTurret.getWorldController(), spawnPoint, ownerTurret.getAngle());
+            GeneralMuzzleFire muzzleFire = ownerTurret.getWorldController().getGeneralMuzzleFirePool().obtain();
+            muzzleFire.setPosition(spawnPoint);
+            muzzleFire.setAngle(ownerTurret.getAngle());
             ownerTurret.getWorldController().getEffectsContainer().add(muzzleFire);
 
-            ownerTurret.getWorldController().getAudioEffectContainer().add(
-                    new AudioEffect(
-                            ownerTurret.getWorldController(),
-                            SoundContainer.getInstance().getSound("m4"),
-                            0.08f,
-                            new Vector2(ownerTurret.getPosition().x, ownerTurret.getPosition().y)));
+            AudioEffect audioEffect = ownerTurret.getWorldController().getAudioEffectPool().obtain();
+            audioEffect.playLocal(
+                    SoundContainer.getInstance().getSound("m4"),
+                    0.08f,
+                    ownerTurret.getX(),
+                    ownerTurret.getY());
+            ownerTurret.getWorldController().getAudioEffectContainer().add(audioEffect);
         }
     }
 
@@ -134,68 +146,35 @@ public class TurretStateHasTarget extends AbstractTurretState {
         return MathHelper.round(ownerTurret.getAngle(), 0) == MathHelper.round(Math.toDegrees(angleBetweenTurretAndTargetInRadians), 0);
     }
 
-    /**
-     * Return true if there are now obstacles between the turret and the target.
-     *
-     * @param accuracy How many pixels the dot will be moved per loop.
-     *                 Zero means very accurate and consumes lots of time. Max value is 200.
-     */
-    // TODO There is a faster way to implement this:
-    // http://code.tutsplus.com/tutorials/quick-tip-collision-detection-between-a-circle-and-a-line-segment--active-10632
-    // https://www.google.fi/?gws_rd=ssl#q=%22line+rectangle+collision+detection
-    public void checkIfTargetIsInSight(int accuracy) {
+    /** Checks if there are no obstacles between the turret and the target. */
+    public void checkIfTargetIsInSight() {
         if (ownerTurret.hasTarget()) {
-            if (accuracy > 200) {
-                accuracy = 200;
-            }
-
             /* TODO This is used mainly for infantry. Tanks' turret is higher than humans so humans are not
              * in the line of sight. This method needs to improved when tanks and other units are added in to the game. */
 
-            // Create a dot
-            Vector2 checkSight = new Vector2(ownerTurret.getPosition());
-            double angleBetweenDotAndTargetRad = MathHelper.getAngleBetweenPointsInRadians(
-                    checkSight.x,
-                    checkSight.y,
+            AbstractUnit blockingUnit = ownerTurret.getWorldController().getUnitContainer().findFirstUnitIntersectingSegment(
+                    ownerTurret.getPosition().x,
+                    ownerTurret.getPosition().y,
                     ownerTurret.getTarget().getX(),
-                    ownerTurret.getTarget().getY());
-
-            boolean isCollisionDetected;
-            checkSightLoop:
-            while (true) {
-                // Move the dot towards the target.
-                checkSight.x = (float) (checkSight.x + Math.cos(angleBetweenDotAndTargetRad) * accuracy);
-                checkSight.y = (float) (checkSight.y + Math.sin(angleBetweenDotAndTargetRad) * accuracy);
-
-                // Check if there is a collision between the dot and some obstacle.
-                for (AbstractUnit unit : ownerTurret.getWorldController().getUnitContainer().getAllUnits()) {
-                    if (unit == ownerTurret.getOwnerUnit()
-                            || unit == ownerTurret.getTarget()
-                            || unit.getTeam() != ownerTurret.getOwnerUnit().getTeam()) {
-                        continue;
-                    }
-
-                    if (unit.onCollision(checkSight)) {
-                        isCollisionDetected = true;
-                        break checkSightLoop;
-                    }
-                }
-
-                // TODO Check also other obstacles like buildings, trees, rocks etc.
-
-                // Target position reached
-                if (MathHelper.getDistanceBetweenPoints(checkSight.x, checkSight.y, ownerTurret.getTarget().getX(), ownerTurret.getTarget().getY()) <= accuracy) {
-                    isCollisionDetected = false;
-                    break;
-                }
-            }
+                    ownerTurret.getTarget().getY(),
+                    this);
+
+            // TODO Check also other obstacles like buildings, trees, rocks etc.
 
-            isTargetInSight = !isCollisionDetected;
+            isTargetInSight = blockingUnit == null;
         } else {
             isTargetInSight = false;
         }
     }
 
+    /** Units which can block the line of sight. */
+    @Override
+    public boolean accept(final AbstractUnit unit) {
+        return unit != ownerTurret.getOwnerUnit()
+                && unit != ownerTurret.getTarget()
+                && unit.getTeam() == ownerTurret.getOwnerUnit().getTeam();
+    }
+
     private void handleLogicalRotation() {
         if (ownerTurret.hasTarget()) {
             rotateTowardsTarget();
@@ -25,11 +25,16 @@ public class TurretStateIdle extends AbstractTurretState {
         timeSpentSinceLastAttemptToTryToFindNewTargetMs += deltaTime * 1000;
         if (timeSpentSinceLastAttemptToTryToFindNewTargetMs >= findNewTargetIdleMs) {
             timeSpentSinceLastAttemptToTryToFindNewTargetMs = 0;
-            ownerTurret.findNewClosestTarget();
-            changeStateIfTargetFound(); // This is time consuming method so do not run it on every world update.
+            // Targets are searched for all turrets at once after all units have been updated.
+            ownerTurret.getWorldController().getTargetAcquisition().requestTarget(ownerTurret);
         }
     }
 
+    @Override
+    public void onTargetSearchCompleted() {
+        changeStateIfTargetFound();
+    }
+
     private void handleLogicalRotation() {
         rotateTowardsOwnerUnit();
     }
@@ -1,6 +1,5 @@
 package org.voimala.myrts.screens.gameplay.weapons;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.math.Vector2;
 import org.voimala.myrts.screens.gameplay.ammunition.AbstractAmmunition;
 import org.voimala.myrts.screens.gameplay.ammunition.M4Bullet;
@@ -32,14 +31,8 @@ public class M4 extends AbstractWeapon {
             weaponState = WeaponState.FIRING;
             shotsFired++;
 
-            M4Bullet m4Bullet = null;
-            try {
-                m4Bullet = new M4Bullet(
-                        worldController,
-                        weaponOptions.clone());
-            } catch (CloneNotSupportedException e) {
-                Gdx.app.debug(TAG, "WARNING: CloneNotSupportedException when cloning Weapon: " + e.getMessage());
-            }
+            M4Bullet m4Bullet = worldController.getM4BulletPool().obtain();
+            m4Bullet.setWeaponOptions(weaponOptions);
             m4Bullet.setPosition(position);
             m4Bullet.setAngle(angle);
             return m4Bullet;
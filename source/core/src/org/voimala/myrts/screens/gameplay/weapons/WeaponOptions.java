@@ -17,6 +17,16 @@ public class WeaponOptions implements Cloneable {
         return (WeaponOptions) super.clone();
     }
 
+    /** Copies all values from the given options. */
+    public void set(final WeaponOptions weaponOptions) {
+        hitPowerAgainstInfantry = weaponOptions.hitPowerAgainstInfantry;
+        hitPowerAgainstVehicles = weaponOptions.hitPowerAgainstVehicles;
+        hitPowerAgainstShips = weaponOptions.hitPowerAgainstShips;
+        hitPowerAgainstAircraft = weaponOptions.hitPowerAgainstAircraft;
+        bulletVelocity = weaponOptions.bulletVelocity;
+        maxDistance = weaponOptions.maxDistance;
+    }
+
     public int getHitPowerAgainstInfantry() {
         return hitPowerAgainstInfantry;
     }
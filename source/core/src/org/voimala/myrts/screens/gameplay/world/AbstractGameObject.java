@@ -2,8 +2,10 @@ package org.voimala.myrts.screens.gameplay.world;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.g2d.Sprite;
+import com.badlogic.gdx.math.Circle;
 import com.badlogic.gdx.math.Vector2;
 import org.voimala.myrts.movements.AbstractMovement;
+import org.voimala.utility.MathHelper;
 
 ;
 
@@ -14,15 +16,26 @@ public abstract class AbstractGameObject implements Cloneable {
     protected WorldController worldController;
     protected AbstractMovement movement = null;
     protected long ObjectId; // Every object should have an unique id
-    protected Vector2 position = new Vector2(0, 0); /* Object's position in 2D space. Origin at center. */
-    protected float angleDeg = 0; // 0 = right, 90 = top, 180 = left, 270 = down. Always between 0 and 360 (inclusive)
+    /* Position (origin at center) and angle are kept in the world's TransformStore.
+     * Angle: 0 = right, 90 = top, 180 = left, 270 = down. Always between 0 and 360 (inclusive) */
+    private TransformStore transformStore;
+    private int transformSlot;
+    private Vector2 position = new Vector2(0, 0); // Returned by getPosition, updated from the TransformStore.
     protected float width = 0;
     protected float height = 0;
     protected Object collisionMask;
     protected Sprite sprite;
+    private boolean isTaggedToBeRemoved = false;
 
     public AbstractGameObject(final WorldController worldController) {
         this.worldController = worldController;
+
+        if (worldController != null) {
+            attachTransform(worldController.getTransformStore());
+        } else {
+            attachTransform(new TransformStore(1));
+        }
+
         initialize();
     }
 
@@ -30,8 +43,10 @@ public abstract class AbstractGameObject implements Cloneable {
     public AbstractGameObject clone() throws CloneNotSupportedException {
         AbstractGameObject gameObjectClone = (AbstractGameObject) super.clone();
 
-        Vector2 positionClone = new Vector2(position.x, position.y);
-        gameObjectClone.setPosition(positionClone);
+        // The clone gets its own slot in the same TransformStore. setWorldController moves it to another world.
+        gameObjectClone.position = new Vector2(0, 0);
+        gameObjectClone.attachTransform(transformStore);
+        transformStore.copy(gameObjectClone.transformSlot, transformStore, transformSlot);
 
         if (movement != null) {
             AbstractMovement movementClone = movement.clone();
@@ -84,57 +99,162 @@ public abstract class AbstractGameObject implements Cloneable {
     /** Updates the current position / size of the collision mask. Called on every world update. */
     protected abstract void updateCollisionMask();
 
+    private void attachTransform(final TransformStore transformStore) {
+        this.transformStore = transformStore;
+        this.transformSlot = transformStore.add(this);
+    }
+
+    /** Moves position, angle etc. to another store. */
+    private void moveTransformTo(final TransformStore newTransformStore) {
+        if (newTransformStore == transformStore) {
+            return;
+        }
+
+        int newTransformSlot = newTransformStore.add(this);
+        newTransformStore.copy(newTransformSlot, transformStore, transformSlot);
+        transformStore.remove(transformSlot);
+        transformStore = newTransformStore;
+        transformSlot = newTransformSlot;
+    }
+
+    /** Should be called when the object is removed from the world, so that the world's TransformStore does not
+     * keep it. After this the object keeps its position etc. in a TransformStore of its own. */
+    public void detachTransform() {
+        moveTransformTo(new TransformStore(1));
+    }
+
+    /** Removes the object from its TransformStore without keeping the position etc. Used for objects which are
+     * put to a WorldObjectPool. The object can not be used before reuse is called. */
+    void releaseTransform() {
+        transformStore.remove(transformSlot);
+        transformStore = null;
+    }
+
+    /** Called by WorldObjectPool when an object that has been removed from the world is used again.
+     * Gives the object a new id and puts it back to the world, as if the object was just created.
+     * Subclasses should reset their own state. */
+    protected void reuse() {
+        attachTransform(worldController.getTransformStore());
+        initializeId();
+        updateCollisionMask();
+        isTaggedToBeRemoved = false;
+    }
+
+    /** Marks the object to be removed from the world in the end of the world update.
+     * @return Returns false if the object was already marked. */
+    public boolean tagToBeRemoved() {
+        if (isTaggedToBeRemoved) {
+            return false;
+        }
+
+        isTaggedToBeRemoved = true;
+        return true;
+    }
+
+    public boolean isTaggedToBeRemoved() {
+        return isTaggedToBeRemoved;
+    }
+
+    /** Called by TransformStore when the object is moved to another slot. */
+    void setTransformSlot(final int transformSlot) {
+        this.transformSlot = transformSlot;
+    }
+
     public float getX() {
-        return position.x;
+        return transformStore.getX(transformSlot);
     }
 
     public float getY() {
-        return position.y;
+        return transformStore.getY(transformSlot);
+    }
+
+    public void setPosition(final Vector2 position) {
+        setPosition(position.x, position.y);
     }
 
-    public void setPosition(Vector2 position) {
-        if (this.position.x != position.x || this.position.y != position.y) {
-            this.position = new Vector2(position.x, position.y);
-            //Gdx.app.debug(TAG, "Object id: " + getObjectId() + " new position. x: " + position.x + ". y: " + position.y);
+    public void setPosition(final float x, final float y) {
+        if (getX() != x || getY() != y) {
+            transformStore.setPosition(transformSlot, x, y);
+            //Gdx.app.debug(TAG, "Object id: " + getObjectId() + " new position. x: " + x + ". y: " + y);
+            updateCollisionMask(); // Keeps the collision mask in the same place as the object (see getCollisionRadius)
+            onPositionChanged();
         }
 
     }
 
+    /** @param alpha How far the rendered frame is from the previous world update to the latest one, 0...1.
+     * @return Returns the x position to be used for rendering. Not to be used by the simulation. */
+    public float getInterpolatedX(final float alpha) {
+        return transformStore.getInterpolatedX(transformSlot, alpha);
+    }
+
+    /** See getInterpolatedX. */
+    public float getInterpolatedY(final float alpha) {
+        return transformStore.getInterpolatedY(transformSlot, alpha);
+    }
+
+    /** See getInterpolatedX. */
+    public float getInterpolatedAngle(final float alpha) {
+        return transformStore.getInterpolatedAngle(transformSlot, alpha);
+    }
+
+    /** @return Returns the x position before the latest linear movement (see setLinearVelocity). */
+    public float getPreviousX() {
+        return transformStore.getPreviousX(transformSlot);
+    }
+
+    /** @return Returns the y position before the latest linear movement (see setLinearVelocity). */
+    public float getPreviousY() {
+        return transformStore.getPreviousY(transformSlot);
+    }
+
+    /** The object will move towards its angle with the given velocity (px/s) on every world update.
+     * All objects having linear movement are moved at once by TransformStore.integrateLinearMovement. */
+    public void setLinearVelocity(final double velocity) {
+        transformStore.setLinearVelocity(transformSlot, velocity);
+    }
+
+    /** Called after the position of the object has changed. */
+    protected void onPositionChanged() {
+    }
+
+    /** NOTE: The returned vector is reused, copy it if the current position needs to be stored. */
     public Vector2 getPosition() {
+        position.set(getX(), getY());
         return position;
     }
 
     /** Returns the angle in degrees. */
     public float getAngle() {
-        return angleDeg;
+        return transformStore.getAngle(transformSlot);
     }
 
     public void setAngle(final float angleDeg) {
-        this.angleDeg = angleDeg;
-        keepAngleValueInRange();
-        //Gdx.app.debug(TAG, "Object id: " + getObjectId() + " new angle: " + this.angleDeg);
+        transformStore.setAngle(transformSlot, keepAngleValueInRange(angleDeg));
+        //Gdx.app.debug(TAG, "Object id: " + getObjectId() + " new angle: " + getAngle());
     }
 
     public void rotate(final float angle) {
         if (angle != 0) {
-            this.angleDeg += angle;
-            keepAngleValueInRange();
-            //Gdx.app.debug(TAG, "Object id: " + getObjectId() + " new angle: " + this.angleDeg);
+            transformStore.setAngle(transformSlot, keepAngleValueInRange(getAngle() + angle));
+            //Gdx.app.debug(TAG, "Object id: " + getObjectId() + " new angle: " + getAngle());
         }
     }
 
     public double getAngleInRadians() {
-        return Math.toRadians(angleDeg);
+        return Math.toRadians(getAngle());
     }
 
-    private void keepAngleValueInRange() {
+    private static float keepAngleValueInRange(float angleDeg) {
         if (angleDeg < 0) {
-            this.angleDeg = 360 - Math.abs(angleDeg);
+            angleDeg = 360 - Math.abs(angleDeg);
         }
 
         if (angleDeg > 360) {
-            this.angleDeg = 0 + angleDeg - 360;
+            angleDeg = 0 + angleDeg - 360;
         }
+
+        return angleDeg;
     }
 
     public float getWidth() {
@@ -165,12 +285,43 @@ public abstract class AbstractGameObject implements Cloneable {
     /** @return Is the given point inside this object's collission mask */
     public abstract boolean onCollision(Vector2 point);
 
+    /** @return Returns the radius of a circle around the object's position which contains the whole collision mask.
+     * Returns 0 if the object does not have a collision mask. */
+    public float getCollisionRadius() {
+        if (collisionMask instanceof Circle) {
+            return ((Circle) collisionMask).radius;
+        }
+
+        return 0;
+    }
+
+    /** @return Returns the point on the segment (as a fraction 0 - 1 of the segment's length from the start point)
+     * where the segment enters this object's collision mask. Returns -1 if the segment does not touch the
+     * collision mask. */
+    public double getSegmentCollisionFraction(final float startX,
+                                              final float startY,
+                                              final float endX,
+                                              final float endY) {
+        if (collisionMask instanceof Circle) {
+            Circle collisionCircle = (Circle) collisionMask;
+            return MathHelper.getSegmentCircleIntersectionFraction(
+                    startX, startY, endX, endY, collisionCircle.x, collisionCircle.y, collisionCircle.radius);
+        }
+
+        return -1;
+    }
+
     public long getObjectId() {
         return ObjectId;
     }
 
+    /** Moves the object's position etc. to the TransformStore of the given world. */
     public void setWorldController(final WorldController worldController) {
         this.worldController = worldController;
+
+        if (worldController != null) {
+            moveTransformTo(worldController.getTransformStore());
+        }
     }
 
     public WorldController getWorldController() {
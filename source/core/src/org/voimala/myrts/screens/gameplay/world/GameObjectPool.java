@@ -0,0 +1,21 @@
+package org.voimala.myrts.screens.gameplay.world;
+
+/** Pool for game objects. Freed objects are removed from the TransformStore, and reused objects are put back to
+ * the world with a new id (see AbstractGameObject.reuse). */
+public abstract class GameObjectPool<T extends AbstractGameObject> extends WorldObjectPool<T> {
+
+    public GameObjectPool(final int maxFreeObjects) {
+        super(maxFreeObjects);
+    }
+
+    @Override
+    protected void reset(final T object) {
+        object.releaseTransform();
+    }
+
+    @Override
+    protected void reuse(final T object) {
+        object.reuse();
+    }
+
+}
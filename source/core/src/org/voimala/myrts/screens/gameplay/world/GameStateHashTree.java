@@ -0,0 +1,290 @@
+package org.voimala.myrts.screens.gameplay.world;
+
+import org.voimala.myrts.screens.gameplay.ammunition.AbstractAmmunition;
+import org.voimala.myrts.screens.gameplay.units.AbstractUnit;
+import org.voimala.myrts.screens.gameplay.units.turrets.AbstractTurret;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Hash tree (Merkle tree) of the game state. Used for finding out which object differs when the game goes
+ * out of sync.
+ *
+ * Every unit (including its turrets) and every ammunition is a leaf. Units are grouped by player and all
+ * ammunition is in its own group. Leaves of a group are put in a tree where every node has at most FANOUT
+ * children. The root hash covers all groups.
+ *
+ * Nodes are identified by paths. The root is "R", a group is "R.P1" (units of player 1) or "R.A" (ammunition)
+ * and nodes below a group are identified by the child index, for example "R.P1.3.0". Leaves are identified by
+ * the object id, for example "#125".
+ *
+ * Building the tree again reuses the arrays of the previous build. */
+public class GameStateHashTree {
+
+    public static final String ROOT_PATH = "R";
+    public static final int FANOUT = 16;
+    public static final String AMMUNITION_GROUP_KEY = "A";
+    public static final String PLAYER_GROUP_KEY_PREFIX = "P";
+    public static final String LEAF_KEY_PREFIX = "#";
+
+    private static final int AMMUNITION_GROUP_ID = Integer.MAX_VALUE;
+
+    private final ArrayList<Group> groups = new ArrayList<Group>();
+    private int groupCount = 0;
+    private long simTick = -1;
+    private long rootHash;
+    private final GameStateHasher hasher = new GameStateHasher();
+
+    /** Builds the tree from the current state of the world. */
+    public void build(final WorldController worldController) {
+        build(worldController, -1);
+    }
+
+    /** Builds the tree from the current state of the world.
+     * @param simTick SimTick the state belongs to. Stored only for finding the right tree later. */
+    public void build(final WorldController worldController, final long simTick) {
+        this.simTick = simTick;
+        groupCount = 0;
+
+        List<AbstractUnit> units = worldController.getUnitContainer().getAllUnits();
+        for (int i = 0; i < units.size(); i++) {
+            AbstractUnit unit = units.get(i);
+            findOrAddGroup(unit.getPlayerNumber()).add(unit.getObjectId(), calculateLeafHash(unit));
+        }
+
+        sortPlayerGroups();
+
+        Group ammunitionGroup = findOrAddGroup(AMMUNITION_GROUP_ID);
+        List<AbstractAmmunition> ammunitionContainer = worldController.getAmmunitionContainer();
+        for (int i = 0; i < ammunitionContainer.size(); i++) {
+            AbstractAmmunition ammunition = ammunitionContainer.get(i);
+            ammunitionGroup.add(ammunition.getObjectId(), calculateLeafHash(ammunition));
+        }
+
+        long hash = GameStateHasher.SEED;
+        for (int i = 0; i < groupCount; i++) {
+            Group group = groups.get(i);
+            hash = GameStateHasher.mix(hash, group.id);
+            hash = GameStateHasher.mix(hash, group.calculateHash());
+        }
+        rootHash = GameStateHasher.finish(hash);
+    }
+
+    private long calculateLeafHash(final AbstractUnit unit) {
+        hasher.reset()
+                .add(unit.getObjectId())
+                .add(unit.getX())
+                .add(unit.getY())
+                .add(unit.getAngle())
+                .add(unit.getPlayerNumber())
+                .add(unit.getTeam());
+
+        List<AbstractTurret> turrets = unit.getTurrets();
+        for (int i = 0; i < turrets.size(); i++) {
+            AbstractTurret turret = turrets.get(i);
+            hasher.add(turret.getObjectId())
+                    .add(turret.getX())
+                    .add(turret.getY())
+                    .add(turret.getAngle())
+                    .add(turret.hasTarget() ? turret.getTarget().getObjectId() : -1);
+        }
+
+        return hasher.getHash();
+    }
+
+    private long calculateLeafHash(final AbstractAmmunition ammunition) {
+        return hasher.reset()
+                .add(ammunition.getObjectId())
+                .add(ammunition.getX())
+                .add(ammunition.getY())
+                .add(ammunition.getAngle())
+                .getHash();
+    }
+
+    private Group findOrAddGroup(final int id) {
+        for (int i = 0; i < groupCount; i++) {
+            if (groups.get(i).id == id) {
+                return groups.get(i);
+            }
+        }
+
+        if (groupCount == groups.size()) {
+            groups.add(new Group());
+        }
+
+        Group group = groups.get(groupCount++);
+        group.id = id;
+        group.size = 0;
+        return group;
+    }
+
+    /** Player groups are sorted by player number so that the tree does not depend on which player's unit
+     * happens to be the first one in the unit container. */
+    private void sortPlayerGroups() {
+        for (int i = 1; i < groupCount; i++) {
+            Group group = groups.get(i);
+            int j = i - 1;
+            while (j >= 0 && groups.get(j).id > group.id) {
+                groups.set(j + 1, groups.get(j));
+                j--;
+            }
+            groups.set(j + 1, group);
+        }
+    }
+
+    public long getSimTick() {
+        return simTick;
+    }
+
+    public long getRootHash() {
+        return rootHash;
+    }
+
+    /** Returns the children of the given node in the following format:
+     * key:hash,key:hash,...
+     * Key is the last part of the child's path. Hashes are hexadecimal strings.
+     * @return Returns null if the node does not exist or it is a leaf. */
+    public String getChildEntries(final String path) {
+        String[] pathParts = path.split("\\.");
+        if (!pathParts[0].equals(ROOT_PATH)) {
+            return null;
+        }
+
+        StringBuilder entries = new StringBuilder();
+
+        if (pathParts.length == 1) {
+            for (int i = 0; i < groupCount; i++) {
+                Group group = groups.get(i);
+                appendEntry(entries, group.getKey(), group.calculateHash());
+            }
+
+            return entries.toString();
+        }
+
+        Group group = findGroup(pathParts[1]);
+        if (group == null) {
+            return null;
+        }
+
+        int start = 0;
+        int span = group.getTopSpan();
+        try {
+            for (int i = 2; i < pathParts.length; i++) {
+                int childIndex = Integer.valueOf(pathParts[i]);
+                span /= FANOUT;
+                start += childIndex * span;
+                if (childIndex < 0 || childIndex >= FANOUT || start >= group.size || span < 1) {
+                    return null;
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        if (span == 1) {
+            return null; // Leaf
+        }
+
+        int childSpan = span / FANOUT;
+        for (int i = 0; i < FANOUT; i++) {
+            int childStart = start + i * childSpan;
+            if (childStart >= group.size) {
+                break;
+            }
+
+            if (childSpan == 1) {
+                appendEntry(entries, LEAF_KEY_PREFIX + group.objectIds[childStart], group.leafHashes[childStart]);
+            } else {
+                appendEntry(entries, String.valueOf(i), group.calculateNodeHash(childStart, childSpan));
+            }
+        }
+
+        return entries.toString();
+    }
+
+    private void appendEntry(final StringBuilder entries, final String key, final long hash) {
+        if (entries.length() > 0) {
+            entries.append(",");
+        }
+
+        entries.append(key).append(":").append(GameStateHasher.toHexString(hash));
+    }
+
+    private Group findGroup(final String key) {
+        for (int i = 0; i < groupCount; i++) {
+            if (groups.get(i).getKey().equals(key)) {
+                return groups.get(i);
+            }
+        }
+
+        return null;
+    }
+
+    private static class Group {
+
+        private int id;
+        private long[] objectIds = new long[FANOUT];
+        private long[] leafHashes = new long[FANOUT];
+        private int size = 0;
+
+        private void add(final long objectId, final long leafHash) {
+            if (size == objectIds.length) {
+                long[] objectIdsCopy = new long[size * 2];
+                System.arraycopy(objectIds, 0, objectIdsCopy, 0, size);
+                objectIds = objectIdsCopy;
+                long[] leafHashesCopy = new long[size * 2];
+                System.arraycopy(leafHashes, 0, leafHashesCopy, 0, size);
+                leafHashes = leafHashesCopy;
+            }
+
+            objectIds[size] = objectId;
+            leafHashes[size] = leafHash;
+            size++;
+        }
+
+        private String getKey() {
+            if (id == AMMUNITION_GROUP_ID) {
+                return AMMUNITION_GROUP_KEY;
+            }
+
+            return PLAYER_GROUP_KEY_PREFIX + id;
+        }
+
+        /** @return Returns the number of leaves the top node of the group covers. Always at least FANOUT. */
+        private int getTopSpan() {
+            int span = FANOUT;
+            while (span < size) {
+                span *= FANOUT;
+            }
+
+            return span;
+        }
+
+        private long calculateHash() {
+            return GameStateHasher.finish(GameStateHasher.mix(
+                    GameStateHasher.mix(GameStateHasher.SEED, size),
+                    calculateNodeHash(0, getTopSpan())));
+        }
+
+        /** @param span Number of leaves the node covers. 1 means that the node is a leaf. */
+        private long calculateNodeHash(final int start, final int span) {
+            if (span == 1) {
+                return leafHashes[start];
+            }
+
+            long hash = GameStateHasher.SEED;
+            int childSpan = span / FANOUT;
+            for (int i = 0; i < FANOUT; i++) {
+                int childStart = start + i * childSpan;
+                if (childStart >= size) {
+                    break;
+                }
+
+                hash = GameStateHasher.mix(hash, calculateNodeHash(childStart, childSpan));
+            }
+
+            return GameStateHasher.finish(hash);
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.voimala.myrts.screens.gameplay.world;
+
+/** Calculates a 64-bit hash from raw values without allocating anything.
+ * Floats and doubles are hashed by their bit patterns, so two game states produce the same hash only if
+ * the values are exactly the same, which is what lockstep synchronization requires.
+ *
+ * This is not a cryptographic hash. It is used only to notice that the game states of players differ. */
+public class GameStateHasher {
+
+    public static final long SEED = 0xCBF29CE484222325L;
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private long hash = SEED;
+
+    public GameStateHasher reset() {
+        hash = SEED;
+        return this;
+    }
+
+    public GameStateHasher add(final long value) {
+        hash = mix(hash, value);
+        return this;
+    }
+
+    public GameStateHasher add(final int value) {
+        return add((long) value);
+    }
+
+    public GameStateHasher add(final float value) {
+        return add(Float.floatToIntBits(value));
+    }
+
+    public GameStateHasher add(final double value) {
+        return add(Double.doubleToLongBits(value));
+    }
+
+    public GameStateHasher add(final boolean value) {
+        return add(value ? 1L : 0L);
+    }
+
+    public long getHash() {
+        return finish(hash);
+    }
+
+    /** Adds a value to a running hash. The same as add, but can be used without a hasher object, for example
+     * in recursive calculations. Start from SEED and call finish after the last value. */
+    public static long mix(final long hash, final long value) {
+        long result = (hash ^ value) * MULTIPLIER;
+        return result ^ (result >>> 32);
+    }
+
+    /** Final mixing so that also the last added values affect all bits. */
+    public static long finish(final long hash) {
+        long result = hash;
+        result ^= result >>> 33;
+        result *= 0xFF51AFD7ED558CCDL;
+        result ^= result >>> 33;
+        result *= 0xC4CEB9FE1A85EC53L;
+        result ^= result >>> 33;
+        return result;
+    }
+
+    /** @return Returns the hash as a hexadecimal string of 16 characters. */
+    public static String toHexString(final long hash) {
+        String hex = Long.toHexString(hash);
+        StringBuilder builder = new StringBuilder(16);
+        for (int i = hex.length(); i < 16; i++) {
+            builder.append('0');
+        }
+
+        return builder.append(hex).toString();
+    }
+
+}
@@ -2,5 +2,7 @@ package org.voimala.myrts.screens.gameplay.world;
 
 public enum RenderMode {
     WORLD_STATE,
-    WORLD_STATE_WITH_PHYSICS_PREDICTION
+    /** Objects are drawn between their positions before and after the latest world update, based on how much
+     * time has passed since the update. Used when the world is updated less often than frames are rendered. */
+    WORLD_STATE_INTERPOLATED
 }
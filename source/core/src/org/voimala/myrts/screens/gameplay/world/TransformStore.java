@@ -0,0 +1,242 @@
+package org.voimala.myrts.screens.gameplay.world;
+
+/** Keeps the position, angle and linear velocity of game objects in primitive arrays. Every object in the world
+ * has a slot in the world's store. Slots are kept dense: when an object is removed, the last object is moved to
+ * the freed slot.
+ *
+ * Keeping the values in arrays means that moving an object does not allocate anything, and that all objects
+ * moving in a straight line (bullets) can be moved in one tight loop, see integrateLinearMovement.
+ *
+ * The transform of the previous world update is also kept for rendering, see storeRenderTransforms. It is never
+ * read by the simulation. */
+public class TransformStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private float[] x;
+    private float[] y;
+    private float[] angleDeg;
+    /** px/s towards the angle. Used only for objects which have linear movement. */
+    private double[] linearVelocity;
+    private boolean[] hasLinearMovement;
+    /** Position before the latest integrateLinearMovement call. */
+    private float[] previousX;
+    private float[] previousY;
+    /** Transform in the beginning of the latest world update. Used only for rendering. */
+    private float[] renderPreviousX;
+    private float[] renderPreviousY;
+    private float[] renderPreviousAngleDeg;
+    /** False for objects which have been added after the latest storeRenderTransforms call. */
+    private boolean[] hasRenderPreviousTransform;
+    private AbstractGameObject[] owners;
+    private int size = 0;
+
+    public TransformStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public TransformStore(final int initialCapacity) {
+        x = new float[initialCapacity];
+        y = new float[initialCapacity];
+        angleDeg = new float[initialCapacity];
+        linearVelocity = new double[initialCapacity];
+        hasLinearMovement = new boolean[initialCapacity];
+        previousX = new float[initialCapacity];
+        previousY = new float[initialCapacity];
+        renderPreviousX = new float[initialCapacity];
+        renderPreviousY = new float[initialCapacity];
+        renderPreviousAngleDeg = new float[initialCapacity];
+        hasRenderPreviousTransform = new boolean[initialCapacity];
+        owners = new AbstractGameObject[initialCapacity];
+    }
+
+    /** @return Returns the slot given to the object. */
+    int add(final AbstractGameObject owner) {
+        if (size == owners.length) {
+            grow();
+        }
+
+        int slot = size++;
+        owners[slot] = owner;
+        x[slot] = 0;
+        y[slot] = 0;
+        angleDeg[slot] = 0;
+        linearVelocity[slot] = 0;
+        hasLinearMovement[slot] = false;
+        previousX[slot] = 0;
+        previousY[slot] = 0;
+        hasRenderPreviousTransform[slot] = false;
+        return slot;
+    }
+
+    /** The last object is moved to the removed slot. */
+    void remove(final int slot) {
+        int lastSlot = size - 1;
+        if (slot != lastSlot) {
+            owners[slot] = owners[lastSlot];
+            x[slot] = x[lastSlot];
+            y[slot] = y[lastSlot];
+            angleDeg[slot] = angleDeg[lastSlot];
+            linearVelocity[slot] = linearVelocity[lastSlot];
+            hasLinearMovement[slot] = hasLinearMovement[lastSlot];
+            previousX[slot] = previousX[lastSlot];
+            previousY[slot] = previousY[lastSlot];
+            renderPreviousX[slot] = renderPreviousX[lastSlot];
+            renderPreviousY[slot] = renderPreviousY[lastSlot];
+            renderPreviousAngleDeg[slot] = renderPreviousAngleDeg[lastSlot];
+            hasRenderPreviousTransform[slot] = hasRenderPreviousTransform[lastSlot];
+            owners[slot].setTransformSlot(slot);
+        }
+
+        owners[lastSlot] = null;
+        size--;
+    }
+
+    /** Copies all values from the slot of another store. */
+    void copy(final int slot, final TransformStore source, final int sourceSlot) {
+        x[slot] = source.x[sourceSlot];
+        y[slot] = source.y[sourceSlot];
+        angleDeg[slot] = source.angleDeg[sourceSlot];
+        linearVelocity[slot] = source.linearVelocity[sourceSlot];
+        hasLinearMovement[slot] = source.hasLinearMovement[sourceSlot];
+        previousX[slot] = source.previousX[sourceSlot];
+        previousY[slot] = source.previousY[sourceSlot];
+        renderPreviousX[slot] = source.renderPreviousX[sourceSlot];
+        renderPreviousY[slot] = source.renderPreviousY[sourceSlot];
+        renderPreviousAngleDeg[slot] = source.renderPreviousAngleDeg[sourceSlot];
+        hasRenderPreviousTransform[slot] = source.hasRenderPreviousTransform[sourceSlot];
+    }
+
+    private void grow() {
+        int capacity = Math.max(owners.length * 2, 1);
+        x = copyOf(x, capacity);
+        y = copyOf(y, capacity);
+        angleDeg = copyOf(angleDeg, capacity);
+        previousX = copyOf(previousX, capacity);
+        previousY = copyOf(previousY, capacity);
+        renderPreviousX = copyOf(renderPreviousX, capacity);
+        renderPreviousY = copyOf(renderPreviousY, capacity);
+        renderPreviousAngleDeg = copyOf(renderPreviousAngleDeg, capacity);
+
+        double[] linearVelocityCopy = new double[capacity];
+        System.arraycopy(linearVelocity, 0, linearVelocityCopy, 0, size);
+        linearVelocity = linearVelocityCopy;
+
+        boolean[] hasLinearMovementCopy = new boolean[capacity];
+        System.arraycopy(hasLinearMovement, 0, hasLinearMovementCopy, 0, size);
+        hasLinearMovement = hasLinearMovementCopy;
+
+        boolean[] hasRenderPreviousTransformCopy = new boolean[capacity];
+        System.arraycopy(hasRenderPreviousTransform, 0, hasRenderPreviousTransformCopy, 0, size);
+        hasRenderPreviousTransform = hasRenderPreviousTransformCopy;
+
+        AbstractGameObject[] ownersCopy = new AbstractGameObject[capacity];
+        System.arraycopy(owners, 0, ownersCopy, 0, size);
+        owners = ownersCopy;
+    }
+
+    private float[] copyOf(final float[] array, final int capacity) {
+        float[] copy = new float[capacity];
+        System.arraycopy(array, 0, copy, 0, size);
+        return copy;
+    }
+
+    /** Moves every object which has linear movement towards its angle. The calculation is the same as
+     * BulletMovement used to do for a single bullet, so the result does not depend on whether the objects are
+     * moved here or one by one. */
+    public void integrateLinearMovement(final float deltaTime) {
+        for (int i = 0; i < size; i++) {
+            if (hasLinearMovement[i]) {
+                previousX[i] = x[i];
+                previousY[i] = y[i];
+                double angleRad = Math.toRadians(angleDeg[i]);
+                x[i] = (float) (x[i] + Math.cos(angleRad) * linearVelocity[i] * deltaTime);
+                y[i] = (float) (y[i] + Math.sin(angleRad) * linearVelocity[i] * deltaTime);
+            }
+        }
+    }
+
+    float getX(final int slot) {
+        return x[slot];
+    }
+
+    float getY(final int slot) {
+        return y[slot];
+    }
+
+    void setPosition(final int slot, final float x, final float y) {
+        this.x[slot] = x;
+        this.y[slot] = y;
+    }
+
+    float getAngle(final int slot) {
+        return angleDeg[slot];
+    }
+
+    void setAngle(final int slot, final float angleDeg) {
+        this.angleDeg[slot] = angleDeg;
+    }
+
+    double getLinearVelocity(final int slot) {
+        return linearVelocity[slot];
+    }
+
+    void setLinearVelocity(final int slot, final double velocity) {
+        linearVelocity[slot] = velocity;
+        hasLinearMovement[slot] = true;
+    }
+
+    float getPreviousX(final int slot) {
+        return previousX[slot];
+    }
+
+    float getPreviousY(final int slot) {
+        return previousY[slot];
+    }
+
+    /** Called in the beginning of every world update. Stores the current transforms so that the renderer can
+     * interpolate between them and the transforms after the update. */
+    public void storeRenderTransforms() {
+        System.arraycopy(x, 0, renderPreviousX, 0, size);
+        System.arraycopy(y, 0, renderPreviousY, 0, size);
+        System.arraycopy(angleDeg, 0, renderPreviousAngleDeg, 0, size);
+        for (int i = 0; i < size; i++) {
+            hasRenderPreviousTransform[i] = true;
+        }
+    }
+
+    /** @param alpha 0 = position before the latest world update, 1 = current position.
+     * Objects added during the latest world update are always at the current position. */
+    float getInterpolatedX(final int slot, final float alpha) {
+        if (!hasRenderPreviousTransform[slot]) {
+            return x[slot];
+        }
+
+        return renderPreviousX[slot] + (x[slot] - renderPreviousX[slot]) * alpha;
+    }
+
+    float getInterpolatedY(final int slot, final float alpha) {
+        if (!hasRenderPreviousTransform[slot]) {
+            return y[slot];
+        }
+
+        return renderPreviousY[slot] + (y[slot] - renderPreviousY[slot]) * alpha;
+    }
+
+    /** The angle is turned the shorter way around. */
+    float getInterpolatedAngle(final int slot, final float alpha) {
+        if (!hasRenderPreviousTransform[slot]) {
+            return angleDeg[slot];
+        }
+
+        float angleChange = angleDeg[slot] - renderPreviousAngleDeg[slot];
+        angleChange -= 360 * Math.round(angleChange / 360);
+        return renderPreviousAngleDeg[slot] + angleChange * alpha;
+    }
+
+    /** @return Returns the number of objects in the store. */
+    public int size() {
+        return size;
+    }
+
+}
@@ -4,16 +4,17 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.math.Vector2;
 import org.voimala.myrts.audio.AudioEffect;
 import org.voimala.myrts.screens.gameplay.effects.AbstractEffect;
+import org.voimala.myrts.screens.gameplay.effects.GeneralMuzzleFire;
 import org.voimala.myrts.screens.gameplay.GameplayScreen;
 import org.voimala.myrts.screens.gameplay.ammunition.AbstractAmmunition;
+import org.voimala.myrts.screens.gameplay.ammunition.M4Bullet;
 import org.voimala.myrts.screens.gameplay.units.AbstractUnit;
 import org.voimala.myrts.screens.gameplay.units.UnitContainer;
 import org.voimala.myrts.screens.gameplay.units.infantry.M4Unit;
 import org.voimala.myrts.screens.gameplay.units.turrets.AbstractTurret;
+import org.voimala.myrts.screens.gameplay.units.turrets.TargetAcquisition;
+import org.voimala.myrts.screens.gameplay.weapons.WeaponOptions;
 
-import java.io.UnsupportedEncodingException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -22,6 +23,7 @@ public class WorldController {
     private static final String TAG = WorldController.class.getName();
 
     /* Containers */
+    private TransformStore transformStore = new TransformStore();
     private UnitContainer unitContainer = new UnitContainer();
     private ArrayList<AbstractUnit> unitsToBeRemoved = new ArrayList<AbstractUnit>();
     private ArrayList<AbstractAmmunition> ammunitionContainer = new ArrayList<AbstractAmmunition>();
@@ -32,6 +34,43 @@ public class WorldController {
     private ArrayList<AudioEffect> audioEffectsToBeRemoved = new ArrayList<AudioEffect>();
     private long nextFreeId = 0;
 
+    /* Pools for short-living objects. Objects are put to the pools when they are removed from the world.
+     * A reused object gets a new id from getNextFreeId when it is taken from the pool, just like a new object,
+     * so ids are the same on every client no matter how many objects each client has in its pools. */
+    private static final int MAX_FREE_OBJECTS_IN_POOL = 2000;
+    private GameObjectPool<M4Bullet> m4BulletPool = new GameObjectPool<M4Bullet>(MAX_FREE_OBJECTS_IN_POOL) {
+        @Override
+        protected M4Bullet newObject() {
+            return new M4Bullet(WorldController.this, new WeaponOptions());
+        }
+    };
+    private GameObjectPool<GeneralMuzzleFire> generalMuzzleFirePool =
+            new GameObjectPool<GeneralMuzzleFire>(MAX_FREE_OBJECTS_IN_POOL) {
+        @Override
+        protected GeneralMuzzleFire newObject() {
+            return new GeneralMuzzleFire(WorldController.this, Vector2.Zero, 0);
+        }
+    };
+    private WorldObjectPool<AudioEffect> audioEffectPool = new WorldObjectPool<AudioEffect>(MAX_FREE_OBJECTS_IN_POOL) {
+        @Override
+        protected AudioEffect newObject() {
+            return new AudioEffect(WorldController.this);
+        }
+
+        @Override
+        protected void reset(final AudioEffect audioEffect) {
+            audioEffect.reset();
+        }
+
+        @Override
+        protected void reuse(final AudioEffect audioEffect) {
+            // playLocal is called by the user
+        }
+    };
+
+    private TargetAcquisition targetAcquisition = new TargetAcquisition(this);
+    private GameStateHashTree gameStateHashTree = new GameStateHashTree();
+
     private long worldUpdateTick = 0;
 
     private GameplayScreen gameplayScreen;
@@ -221,7 +260,9 @@ public class WorldController {
 
     public void updateWorld(final float deltaTime) {
         Gdx.app.debug(TAG, "About to update world at WorldTick " + worldUpdateTick);
+        transformStore.storeRenderTransforms();
         updateUnits(deltaTime);
+        acquireTargets();
         updateAmmunition(deltaTime);
         updateAudioEffects();
         updateEffects(deltaTime);
@@ -233,28 +274,66 @@ public class WorldController {
     }
 
     /** If objects were removed directly during world update, it would cause problems since the WorldController would be
-     * still looping trough all objects. That's why objects that need to me removed are be added to a special
-     * container and removed after world has been updated. */
+     * still looping trough all objects. That's why objects that need to me removed are tagged and removed after
+     * world has been updated. Every container is gone trough only once and the order of the remaining objects
+     * does not change.
+     *
+     * Removed objects are put to a pool or detached from the TransformStore. Detached objects still work normally
+     * in case something refers to them. */
     private void removeTaggedObjects() {
-        for (AudioEffect audioEffect : audioEffectsToBeRemoved) {
-            audioEffectContainer.remove(audioEffect);
+        if (!audioEffectsToBeRemoved.isEmpty()) {
+            int keptAudioEffects = 0;
+            for (int i = 0; i < audioEffectContainer.size(); i++) {
+                AudioEffect audioEffect = audioEffectContainer.get(i);
+                if (audioEffect.isTaggedToBeRemoved()) {
+                    audioEffectPool.free(audioEffect);
+                } else {
+                    audioEffectContainer.set(keptAudioEffects++, audioEffect);
+                }
+            }
+            audioEffectContainer.subList(keptAudioEffects, audioEffectContainer.size()).clear();
+            audioEffectsToBeRemoved.clear();
         }
-        audioEffectsToBeRemoved.clear();
 
-        for (AbstractAmmunition ammunition : ammunitionToBeRemoved) {
-            ammunitionContainer.remove(ammunition);
+        if (!ammunitionToBeRemoved.isEmpty()) {
+            int keptAmmunition = 0;
+            for (int i = 0; i < ammunitionContainer.size(); i++) {
+                AbstractAmmunition ammunition = ammunitionContainer.get(i);
+                if (!ammunition.isTaggedToBeRemoved()) {
+                    ammunitionContainer.set(keptAmmunition++, ammunition);
+                } else if (ammunition instanceof M4Bullet) {
+                    m4BulletPool.free((M4Bullet) ammunition);
+                } else {
+                    ammunition.detachTransform();
+                }
+            }
+            ammunitionContainer.subList(keptAmmunition, ammunitionContainer.size()).clear();
+            ammunitionToBeRemoved.clear();
         }
-        ammunitionToBeRemoved.clear();
 
-        for (AbstractEffect effect : effectsToBeRemoved) {
-            effectsContainer.remove(effect);
+        if (!effectsToBeRemoved.isEmpty()) {
+            int keptEffects = 0;
+            for (int i = 0; i < effectsContainer.size(); i++) {
+                AbstractEffect effect = effectsContainer.get(i);
+                if (!effect.isTaggedToBeRemoved()) {
+                    effectsContainer.set(keptEffects++, effect);
+                } else if (effect instanceof GeneralMuzzleFire) {
+                    generalMuzzleFirePool.free((GeneralMuzzleFire) effect);
+                } else {
+                    effect.detachTransform();
+                }
+            }
+            effectsContainer.subList(keptEffects, effectsContainer.size()).clear();
+            effectsToBeRemoved.clear();
         }
-        effectsToBeRemoved.clear();
 
-        for (AbstractUnit unit : unitsToBeRemoved) {
-            unitContainer.removeUnit(unit);
+        if (!unitsToBeRemoved.isEmpty()) {
+            unitContainer.removeUnits(unitsToBeRemoved);
+            for (AbstractUnit unit : unitsToBeRemoved) {
+                unit.detachTransform();
+            }
+            unitsToBeRemoved.clear();
         }
-        unitsToBeRemoved.clear();
     }
 
     private void updateUnits(final float deltaTime) {
@@ -263,7 +342,12 @@ public class WorldController {
         }
     }
 
+    private void acquireTargets() {
+        targetAcquisition.acquireTargets();
+    }
+
     private void updateAmmunition(final float deltaTime) {
+        transformStore.integrateLinearMovement(deltaTime); // Moves bullets
         for (AbstractAmmunition ammunition : ammunitionContainer) {
             ammunition.updateState(deltaTime);
         }
@@ -289,10 +373,30 @@ public class WorldController {
         this.gameplayScreen = gameplayScreen;
     }
 
+    public GameObjectPool<M4Bullet> getM4BulletPool() {
+        return m4BulletPool;
+    }
+
+    public GameObjectPool<GeneralMuzzleFire> getGeneralMuzzleFirePool() {
+        return generalMuzzleFirePool;
+    }
+
+    public WorldObjectPool<AudioEffect> getAudioEffectPool() {
+        return audioEffectPool;
+    }
+
+    public TransformStore getTransformStore() {
+        return transformStore;
+    }
+
     public UnitContainer getUnitContainer() {
         return unitContainer;
     }
 
+    public TargetAcquisition getTargetAcquisition() {
+        return targetAcquisition;
+    }
+
     public List<AbstractAmmunition> getAmmunitionContainer() {
         return ammunitionContainer;
     }
@@ -305,80 +409,82 @@ public class WorldController {
         return effectsContainer;
     }
 
+    /** Tagging the same object more than once does nothing. */
     public void tagAudioToBeRemovedInNextWorldUpdate(final AudioEffect audioEffectToBeRemoved) {
-        audioEffectsToBeRemoved.add(audioEffectToBeRemoved);
+        if (audioEffectToBeRemoved.tagToBeRemoved()) {
+            audioEffectsToBeRemoved.add(audioEffectToBeRemoved);
+        }
     }
 
+    /** Tagging the same object more than once does nothing. */
     public void tagAmmunitionToBeRemovedInNextWorldUpdate(AbstractAmmunition ammunitionToBeRemoved) {
-        this.ammunitionToBeRemoved.add(ammunitionToBeRemoved);
+        if (ammunitionToBeRemoved.tagToBeRemoved()) {
+            this.ammunitionToBeRemoved.add(ammunitionToBeRemoved);
+        }
     }
 
+    /** Tagging the same object more than once does nothing. */
     public void tagEffectToBeRemoved(final AbstractEffect effect) {
-        this.effectsToBeRemoved.add(effect);
+        if (effect.tagToBeRemoved()) {
+            this.effectsToBeRemoved.add(effect);
+        }
     }
 
+    /** Tagging the same object more than once does nothing. */
     public void tagUnitToBeRemoved(final AbstractUnit unit) {
-        this.unitsToBeRemoved.add(unit);
+        if (unit.tagToBeRemoved()) {
+            this.unitsToBeRemoved.add(unit);
+        }
     }
 
-    // TODO Time consuming process, do only once per second? Tai kokeile StringBuilderia?
+    /** @return Returns the hash of the game state as a hexadecimal string.
+     * Players' game states are in sync if their hashes are equal. */
     public String getGameStateHash() {
-        StringBuilder hashBuilder = new StringBuilder();
+        return GameStateHasher.toHexString(calculateGameStateHash());
+    }
+
+    /** Calculates a 64-bit hash of the game state. The hash is the root of the game state hash tree,
+     * see GameStateHashTree. Does not allocate anything once the tree has grown to the size of the world. */
+    public long calculateGameStateHash() {
+        gameStateHashTree.build(this);
+        return gameStateHashTree.getRootHash();
+    }
+
+    /** Returns the game state in a human readable form. This is slow and meant only for debugging
+     * desyncs: dumps of different players can be compared to see which objects differ. */
+    public String getGameStateDump() {
+        StringBuilder dumpBuilder = new StringBuilder();
 
         for (AbstractUnit unit : getUnitContainer().getAllUnits()) {
-            hashBuilder.append("unit id: " + unit.getObjectId() + " ");
-            hashBuilder.append("x: " + unit.getObjectId() + unit.getX() + " ");
-            hashBuilder.append("y: " + unit.getY() + " ");
-            hashBuilder.append("angle: " + unit.getAngleInRadians() + " ");
-            hashBuilder.append("player: " + unit.getPlayerNumber() + " ");
-            hashBuilder.append("team:" + unit.getTeam() + " ");
+            dumpBuilder.append("unit id: ").append(unit.getObjectId()).append(" ");
+            dumpBuilder.append("x: ").append(unit.getX()).append(" ");
+            dumpBuilder.append("y: ").append(unit.getY()).append(" ");
+            dumpBuilder.append("angle: ").append(unit.getAngle()).append(" ");
+            dumpBuilder.append("player: ").append(unit.getPlayerNumber()).append(" ");
+            dumpBuilder.append("team: ").append(unit.getTeam()).append(" ");
             for (AbstractTurret turret : unit.getTurrets()) {
-                hashBuilder.append("turret id: " + turret.getObjectId() + " ");
-                hashBuilder.append("x: " + turret.getX() + " ");
-                hashBuilder.append("y: " + turret.getY() + " ");
-                hashBuilder.append("angle: " + turret.getAngleInRadians() + " ");
+                dumpBuilder.append("turret id: ").append(turret.getObjectId()).append(" ");
+                dumpBuilder.append("x: ").append(turret.getX()).append(" ");
+                dumpBuilder.append("y: ").append(turret.getY()).append(" ");
+                dumpBuilder.append("angle: ").append(turret.getAngle()).append(" ");
                 if (turret.hasTarget()) {
-                    hashBuilder.append("target id: " + turret.getTarget().getObjectId());
+                    dumpBuilder.append("target id: ").append(turret.getTarget().getObjectId()).append(" ");
                 } else {
-                    hashBuilder.append("target id: null");
+                    dumpBuilder.append("target id: null ");
                 }
             }
-            hashBuilder.append("\n");
+            dumpBuilder.append("\n");
         }
 
         for (AbstractAmmunition ammunition : ammunitionContainer) {
-            hashBuilder.append("ammunition id: " + ammunition.getObjectId() + " ");
-            hashBuilder.append("x: " + ammunition.getX() + " ");
-            hashBuilder.append("y: " + ammunition.getY() + " ");
-            hashBuilder.append("angle: " + ammunition.getAngleInRadians() + " ");
-            hashBuilder.append("\n");
-        }
-
-        return hashBuilder.toString(); // Slow, used for testing purposes only
-        //return md5(hashBuilder.toString()); // Fast, production ready
-    }
-
-    public static String md5(String message){
-        String digest = null;
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] hash = md.digest(message.getBytes("UTF-8"));
-
-            //converting byte array to Hexadecimal String
-            StringBuilder sb = new StringBuilder(2*hash.length);
-            for(byte b : hash){
-                sb.append(String.format("%02x", b&0xff));
-            }
-
-            digest = sb.toString();
-
-        } catch (UnsupportedEncodingException e) {
-            Gdx.app.debug(TAG, e.getMessage());
-        } catch (NoSuchAlgorithmException e) {
-            Gdx.app.debug(TAG, e.getMessage());
+            dumpBuilder.append("ammunition id: ").append(ammunition.getObjectId()).append(" ");
+            dumpBuilder.append("x: ").append(ammunition.getX()).append(" ");
+            dumpBuilder.append("y: ").append(ammunition.getY()).append(" ");
+            dumpBuilder.append("angle: ").append(ammunition.getAngle()).append(" ");
+            dumpBuilder.append("\n");
         }
 
-        return digest;
+        return dumpBuilder.toString();
     }
 
     public long getNextFreeId() {
@@ -0,0 +1,51 @@
+package org.voimala.myrts.screens.gameplay.world;
+
+import java.util.ArrayList;
+
+/** Keeps objects that have been removed from the world so that they can be used again instead of creating
+ * new objects. Used for short-living objects like bullets and effects.
+ *
+ * NOTE: An object must not be used after it has been freed, except by getting it again from obtain. */
+public abstract class WorldObjectPool<T> {
+
+    private final ArrayList<T> freeObjects = new ArrayList<T>();
+    private final int maxFreeObjects;
+
+    /** @param maxFreeObjects Objects freed after the pool already has this many free objects are left for GC. */
+    public WorldObjectPool(final int maxFreeObjects) {
+        this.maxFreeObjects = maxFreeObjects;
+    }
+
+    /** Returns a free object if there is one, otherwise creates a new object. */
+    public T obtain() {
+        if (freeObjects.isEmpty()) {
+            return newObject();
+        }
+
+        T object = freeObjects.remove(freeObjects.size() - 1);
+        reuse(object);
+        return object;
+    }
+
+    /** The object is always reset, even if the pool is full and the object is left for GC. */
+    public void free(final T object) {
+        reset(object);
+        if (freeObjects.size() < maxFreeObjects) {
+            freeObjects.add(object);
+        }
+    }
+
+    public int getFreeObjectCount() {
+        return freeObjects.size();
+    }
+
+    protected abstract T newObject();
+
+    /** Called when the object is freed. Should release everything the object does not need anymore. */
+    protected abstract void reset(final T object);
+
+    /** Called when a free object is given out again. After this the object should be in the same state as
+     * a new object created by newObject. */
+    protected abstract void reuse(final T object);
+
+}
@@ -4,33 +4,61 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
 import com.badlogic.gdx.audio.Sound;
 import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.math.Rectangle;
-import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Disposable;
 import org.voimala.myrts.app.GameMain;
 import org.voimala.myrts.audio.SoundContainer;
 import org.voimala.myrts.graphics.SpriteContainer;
 import org.voimala.myrts.networking.ChatContainer;
+import org.voimala.myrts.networking.ConnectionStatistics;
+import org.voimala.myrts.networking.ListenSocketThread;
+import org.voimala.myrts.networking.NetworkManager;
+import org.voimala.myrts.networking.ServerThread;
 import org.voimala.myrts.screens.gameplay.effects.AbstractEffect;
+import org.voimala.myrts.screens.gameplay.layers.Land;
 import org.voimala.myrts.screens.gameplay.ammunition.AbstractAmmunition;
 import org.voimala.myrts.screens.gameplay.multiplayer.MultiplayerSynchronizationManager;
+import org.voimala.myrts.screens.gameplay.multiplayer.TurnConfig;
 import org.voimala.myrts.screens.gameplay.units.AbstractUnit;
 import org.voimala.myrts.screens.gameplay.units.turrets.AbstractTurret;
 import org.voimala.utility.ArrayHelper;
 
+import java.util.ArrayList;
+
 public class WorldRenderer implements Disposable {
 
     private static final String TAG = WorldRenderer.class.getName();
     private SpriteBatch batch;
     private SpriteBatch hudBatch;
     private WorldController worldController;
+    private Land land;
     private ShapeRenderer shapeRenderer = new ShapeRenderer();
+    /** Draws overlays in world coordinates using the world camera's projection, so that positions
+     * do not have to be projected to the screen one by one. */
+    private ShapeRenderer worldShapeRenderer = new ShapeRenderer();
+
+    /** Unit and turret sprites are drawn at most this far from the unit's position. Units further away from
+     * the camera bounds are not checked at all. */
+    private static final float MAX_UNIT_SPRITE_REACH_PIXELS = 512;
+    /** The area of the world which is visible on the screen. Updated once per frame. */
+    private final Rectangle cameraBounds = new Rectangle();
+    /** Reused when searching units near the camera bounds. */
+    private final ArrayList<AbstractUnit> unitsNearCamera = new ArrayList<AbstractUnit>();
+    /** How many objects were not drawn on the latest frame because they were outside the camera bounds. */
+    private int culledUnits = 0;
+    private int culledAmmunition = 0;
+    private int culledEffects = 0;
+    private int drawnLandChunks = 0;
+    /** How many times SpriteBatch flushed to the GPU while drawing the world on the latest frame. */
+    private int worldRenderCalls = 0;
+    /** Used for interpolating object positions on the current frame, see RenderMode. 1 = latest world state. */
+    private float interpolationAlpha = 1;
 
     private int chatMessagesXScreen = 80;
     private int chatMessagesYScreen = Gdx.graphics.getHeight() - 70;
@@ -51,6 +79,7 @@ public class WorldRenderer implements Disposable {
     }
 
     private void initializeSprites() {
+        SpriteContainer.getInstance().loadAtlas();
         initializeGroundSprites();
         initializeUnitSprites();
         initializeAmmunitionSprites();
@@ -58,39 +87,25 @@ public class WorldRenderer implements Disposable {
     }
 
     private void initializeGroundSprites() {
-        Texture texture = new Texture("graphics/textures/ground/grass1.jpg");
-        Sprite sprite = new Sprite(texture);
-        SpriteContainer.getInstance().addSprite("grass1", sprite);
+        SpriteContainer.getInstance().loadSprite("grass1", "graphics/textures/ground/grass1.jpg");
     }
 
     private void initializeUnitSprites() {
-        Texture texture = new Texture("graphics/units/m4/m4-stopped-0.png");
-        Sprite sprite = new Sprite(texture);
-        SpriteContainer.getInstance().addSprite("m4-stopped-0", sprite);
-
-        Texture texture2 = new Texture("graphics/units/m4/m4-stopped-0_enemytemp.png");
-        Sprite sprite2 = new Sprite(texture2);
-        SpriteContainer.getInstance().addSprite("m4-stopped-0_enemytemp", sprite2);
+        SpriteContainer.getInstance().loadSprite("m4-stopped-0", "graphics/units/m4/m4-stopped-0.png");
+        SpriteContainer.getInstance().loadSprite("m4-stopped-0_enemytemp", "graphics/units/m4/m4-stopped-0_enemytemp.png");
     }
 
     private void initializeAmmunitionSprites() {
-        Texture texture = new Texture("graphics/weapons/m4-bullet.png");
-        Sprite sprite = new Sprite(texture);
-        SpriteContainer.getInstance().addSprite("m4-bullet", sprite);
+        SpriteContainer.getInstance().loadSprite("m4-bullet", "graphics/weapons/m4-bullet.png");
     }
 
     private void initializeEffectSprites() {
-        Texture texture1 = new Texture("graphics/effects/muzzle-fires/general-muzzle-fire1.png");
-        Sprite sprite1 = new Sprite(texture1);
-        SpriteContainer.getInstance().addSprite("general-muzzle-fire1", sprite1);
-
-        Texture texture2 = new Texture("graphics/effects/muzzle-fires/general-muzzle-fire2.png");
-        Sprite sprite2 = new Sprite(texture2);
-        SpriteContainer.getInstance().addSprite("general-muzzle-fire2", sprite2);
-
-        Texture texture3 = new Texture("graphics/effects/muzzle-fires/general-muzzle-fire3.png");
-        Sprite sprite3 = new Sprite(texture3);
-        SpriteContainer.getInstance().addSprite("general-muzzle-fire3", sprite3);
+        SpriteContainer.getInstance().loadSprite("general-muzzle-fire1",
+                "graphics/effects/muzzle-fires/general-muzzle-fire1.png");
+        SpriteContainer.getInstance().loadSprite("general-muzzle-fire2",
+                "graphics/effects/muzzle-fires/general-muzzle-fire2.png");
+        SpriteContainer.getInstance().loadSprite("general-muzzle-fire3",
+                "graphics/effects/muzzle-fires/general-muzzle-fire3.png");
     }
 
     private void initializeAudioEffects() {
@@ -150,16 +165,21 @@ public class WorldRenderer implements Disposable {
          * automatically. */
 
         batch.setProjectionMatrix(worldController.getGameplayScreen().getWorldCamera().combined);
+        updateCameraBounds();
 
-        renderMode = RenderMode.WORLD_STATE; // For testing purposes only
-
+        if (renderMode == RenderMode.WORLD_STATE_INTERPOLATED) {
+            interpolationAlpha = worldController.getGameplayScreen().getFixedWorldUpdateAlpha();
+        } else {
+            interpolationAlpha = 1;
+        }
 
-        batch.begin();
         renderGround();
+        batch.begin();
         renderUnits(worldController);
         renderAmmunition(worldController);
         renderEffects(worldController);
         batch.end();
+        worldRenderCalls = batch.renderCalls;
         renderUnitEnergyBars(worldController);
         renderHud();
         renderUnitSelectionRectangle();
@@ -170,26 +190,49 @@ public class WorldRenderer implements Disposable {
     }
 
     private void renderGround() {
-        for (int i = 0; i < 60; i++) { // TODO Map size
-            for (int j = 0; j < 60; j++) {
+        drawnLandChunks = land.render(batch.getProjectionMatrix(), cameraBounds);
+    }
 
-                Sprite sprite = SpriteContainer.getInstance().getSprite("grass1");
-                sprite.setPosition(i * worldController.TILE_SIZE_PIXELS, j * worldController.TILE_SIZE_PIXELS);
-                sprite.draw(batch);
-            }
+    /** The world camera is never rotated, so the visible area is an axis-aligned rectangle around the camera. */
+    private void updateCameraBounds() {
+        OrthographicCamera camera = worldController.getGameplayScreen().getWorldCamera();
+        float width = camera.viewportWidth * camera.zoom;
+        float height = camera.viewportHeight * camera.zoom;
+        cameraBounds.set(camera.position.x - width / 2, camera.position.y - height / 2, width, height);
+    }
+
+    /** Sprites are drawn only if they overlap the camera bounds. The bounding rectangle is calculated from the
+     * same vertices that are used for drawing, so checking it before drawing is not extra work. */
+    private boolean drawIfVisible(final Sprite sprite) {
+        if (!cameraBounds.overlaps(sprite.getBoundingRectangle())) {
+            return false;
         }
+
+        sprite.draw(batch);
+        return true;
     }
 
     private void renderUnits(final WorldController worldController) {
-        for (AbstractUnit unit : worldController.getUnitContainer().getAllUnits()) {
+        unitsNearCamera.clear();
+        worldController.getUnitContainer().findUnitsNearRectangle(cameraBounds,
+                MAX_UNIT_SPRITE_REACH_PIXELS,
+                unitsNearCamera);
+        int drawnUnits = 0;
+
+        for (int i = 0; i < unitsNearCamera.size(); i++) {
+            AbstractUnit unit = unitsNearCamera.get(i);
+            boolean isDrawn = false;
+
             // Draw unit
             Sprite unitSprite = unit.getSprite();
             if (unitSprite != null) {
 
+                float unitX = unit.getInterpolatedX(interpolationAlpha);
+                float unitY = unit.getInterpolatedY(interpolationAlpha);
                 unitSprite.setOrigin(unitSprite.getWidth() / 2, unitSprite.getHeight() / 2 - 70);
-                unitSprite.setPosition(unit.getX() - unitSprite.getWidth() / 2, unit.getY() - unitSprite.getWidth() / 2 + 70);
-                unitSprite.setRotation(unit.getAngle() - 90);
-                unitSprite.draw(batch);
+                unitSprite.setPosition(unitX - unitSprite.getWidth() / 2, unitY - unitSprite.getWidth() / 2 + 70);
+                unitSprite.setRotation(unit.getInterpolatedAngle(interpolationAlpha) - 90);
+                isDrawn = drawIfVisible(unitSprite);
 
             }
 
@@ -197,68 +240,82 @@ public class WorldRenderer implements Disposable {
             for (AbstractTurret turret : unit.getTurrets()) {
                 Sprite turretSprite = turret.getSprite();
                 if (turretSprite != null) {
+                    float turretX = turret.getInterpolatedX(interpolationAlpha);
+                    float turretY = turret.getInterpolatedY(interpolationAlpha);
                     turretSprite.setOrigin(turretSprite.getWidth() / 2, turretSprite.getHeight() / 2 - 70);
-                    turretSprite.setPosition(turret.getX() - turretSprite.getWidth() / 2, turret.getY() - turretSprite.getWidth() / 2 + 70);
-                    turretSprite.setRotation(turret.getAngle() - 90);
-                    turretSprite.draw(batch);
+                    turretSprite.setPosition(turretX - turretSprite.getWidth() / 2, turretY - turretSprite.getWidth() / 2 + 70);
+                    turretSprite.setRotation(turret.getInterpolatedAngle(interpolationAlpha) - 90);
+                    isDrawn |= drawIfVisible(turretSprite);
                 }
             }
+
+            if (isDrawn) {
+                drawnUnits++;
+            }
         }
+
+        culledUnits = worldController.getUnitContainer().getAllUnits().size() - drawnUnits;
     }
 
     private void renderAmmunition(final WorldController worldController) {
+        culledAmmunition = 0;
+
         for (AbstractAmmunition ammunition : worldController.getAmmunitionContainer()) {
 
             Sprite sprite = ammunition.getSprite();
 
             // Draw unit
+            float ammunitionX = ammunition.getInterpolatedX(interpolationAlpha);
+            float ammunitionY = ammunition.getInterpolatedY(interpolationAlpha);
             sprite.setOrigin(sprite.getWidth() / 2, sprite.getHeight() / 2);
-            sprite.setPosition(ammunition.getX() - sprite.getWidth() / 2, ammunition.getY() - sprite.getWidth() / 2);
-            sprite.setRotation(ammunition.getAngle() - 90);
-            sprite.draw(batch);
+            sprite.setPosition(ammunitionX - sprite.getWidth() / 2, ammunitionY - sprite.getWidth() / 2);
+            sprite.setRotation(ammunition.getInterpolatedAngle(interpolationAlpha) - 90);
+            if (!drawIfVisible(sprite)) {
+                culledAmmunition++;
+            }
 
 
         }
     }
 
     private void renderEffects(final WorldController worldController) {
+        culledEffects = 0;
+
         for (AbstractEffect effect : worldController.getEffectsContainer()) {
 
             Sprite sprite = effect.getSprite();
 
             // Draw unit
+            float effectX = effect.getInterpolatedX(interpolationAlpha);
+            float effectY = effect.getInterpolatedY(interpolationAlpha);
             sprite.setOrigin(sprite.getWidth() / 2, sprite.getHeight() / 2 - 40);
-            sprite.setPosition(effect.getX() - sprite.getWidth() / 2, effect.getY() - sprite.getWidth() / 2 + 40);
-            sprite.setRotation(effect.getAngle() - 90);
+            sprite.setPosition(effectX - sprite.getWidth() / 2, effectY - sprite.getWidth() / 2 + 40);
+            sprite.setRotation(effect.getInterpolatedAngle(interpolationAlpha) - 90);
             sprite.setAlpha(1 - effect.getLivedLifeAsPercent());
-            sprite.draw(batch);
+            if (!drawIfVisible(sprite)) {
+                culledEffects++;
+            }
         }
     }
 
+    /** Energy bars are drawn for the selected units near the camera, all in one pass. */
     private void renderUnitEnergyBars(final WorldController worldController) {
-        for (AbstractUnit unit : worldController.getUnitContainer().getAllUnits()) {
+        OrthographicCamera camera = worldController.getGameplayScreen().getWorldCamera();
+        float barHeight = 10 * camera.zoom; // 10 pixels on the screen
+
+        worldShapeRenderer.setProjectionMatrix(camera.combined);
+        worldShapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+        worldShapeRenderer.setColor(Color.WHITE);
+        for (int i = 0; i < unitsNearCamera.size(); i++) {
+            AbstractUnit unit = unitsNearCamera.get(i);
             if (unit.isSelected()) {
-                shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
-                shapeRenderer.setColor(Color.WHITE);
-                Vector3 unitTopLeftWorldCoordinates = new Vector3(unit.getX() - unit.getWidth() / 2,
-                        unit.getY() + unit.getHeight() / 2, 0);
-                Vector3 unitTopRightWorldCoordinates = new Vector3(unit.getX() + unit.getWidth() / 2,
-                        unit.getY() + unit.getHeight() / 2, 0);
-
-                Vector3 unitTopLeftScreenCoordinates = worldController.getGameplayScreen().getWorldCamera().project(unitTopLeftWorldCoordinates);
-                Vector3 unitTopRightScreenCoordinates = worldController.getGameplayScreen().getWorldCamera().project(unitTopRightWorldCoordinates);
-
-                shapeRenderer.rect(unitTopLeftScreenCoordinates.x,
-                        unitTopLeftScreenCoordinates.y,
-                        ((float) unit.getEnergy() / (float) unit.getMaxEnergy()) * (unitTopRightScreenCoordinates.x - unitTopLeftScreenCoordinates.x),
-                        10);
-                shapeRenderer.end();
+                worldShapeRenderer.rect(unit.getInterpolatedX(interpolationAlpha) - unit.getWidth() / 2,
+                        unit.getInterpolatedY(interpolationAlpha) + unit.getHeight() / 2,
+                        ((float) unit.getEnergy() / (float) unit.getMaxEnergy()) * unit.getWidth(),
+                        barHeight);
             }
         }
-    }
-
-    private float calculateDeltaTimeBetweenLastWorldUpdateAndCurrentTime() {
-        return (System.currentTimeMillis() - worldController.getGameplayScreen().getLastWorldUpdateTimestamp()) / (float) 1000;
+        worldShapeRenderer.end();
     }
 
     private void renderHud() {
@@ -285,10 +342,11 @@ public class WorldRenderer implements Disposable {
                 "Project \"MyRTS\", early alpha version",
                 10,
                 Gdx.graphics.getHeight() - 10);
-        String renderModeText = renderMode == RenderMode.WORLD_STATE ? "World state" : "Physics prediction";
+        String renderModeText = renderMode == RenderMode.WORLD_STATE ? "World state" : "Interpolated";
         defaultFont.draw(hudBatch,
                 String.valueOf(Gdx.graphics.getFramesPerSecond()) + "fps (frame "
-                        + worldController.getGameplayScreen().getRenderTick() + ", mode: " + renderModeText + ")",
+                        + worldController.getGameplayScreen().getRenderTick() + ", mode: " + renderModeText
+                        + ", draw calls: " + worldRenderCalls + ")",
                 10,
                 Gdx.graphics.getHeight() - 10 - defaultFont.getLineHeight());
         defaultFont.draw(hudBatch, "Units: " + worldController.getUnitContainer().getAllUnits().size(),
@@ -302,25 +360,61 @@ public class WorldRenderer implements Disposable {
                 "SimTick: " + MultiplayerSynchronizationManager.getInstance().getSimTick(),
                 10,
                 Gdx.graphics.getHeight() - 10 - defaultFont.getLineHeight() * 4);
+        defaultFont.draw(hudBatch,
+                "Culled: " + culledUnits + " units, " + culledAmmunition + " ammunition, "
+                        + culledEffects + " effects, " + (land.getChunkCount() - drawnLandChunks) + " land chunks",
+                10,
+                Gdx.graphics.getHeight() - 10 - defaultFont.getLineHeight() * 5);
+        renderConnectionInfoText(6);
         hudBatch.end();
     }
 
+    /** Shows the latencies so that it is possible to see which connection makes the game wait.
+     * @param line The line on which the first text is drawn. */
+    private void renderConnectionInfoText(int line) {
+        ListenSocketThread clientThread = NetworkManager.getInstance().getClientThread();
+        if (clientThread != null) {
+            TurnConfig turnConfig = MultiplayerSynchronizationManager.getInstance().getTurnConfig();
+            defaultFont.draw(hudBatch,
+                    "Server: " + clientThread.getConnectionStatistics()
+                            + ", turn round trip "
+                            + MultiplayerSynchronizationManager.getInstance().getTurnRoundTripStatistics().getAverage()
+                            + " ms, input delay " + turnConfig.getInputDelaySimTicks() + " x "
+                            + turnConfig.getTurnLengthWorldUpdates() + " world updates",
+                    10,
+                    Gdx.graphics.getHeight() - 10 - defaultFont.getLineHeight() * line++);
+        }
+
+        ServerThread serverThread = NetworkManager.getInstance().getServerThread();
+        if (serverThread != null) {
+            for (int i = 1; i <= 8; i++) {
+                ConnectionStatistics connectionStatistics = serverThread.getPlayerConnectionStatistics(i);
+                if (connectionStatistics != null) {
+                    defaultFont.draw(hudBatch,
+                            "Player " + i + ": " + connectionStatistics,
+                            10,
+                            Gdx.graphics.getHeight() - 10 - defaultFont.getLineHeight() * line++);
+                }
+            }
+        }
+    }
+
     private void renderDebugHelpers(WorldController worldController) {
         if (Gdx.input.isKeyPressed(Input.Keys.D)) {
+            worldShapeRenderer.setProjectionMatrix(worldController.getGameplayScreen().getWorldCamera().combined);
+            worldShapeRenderer.begin(ShapeRenderer.ShapeType.Line);
+            worldShapeRenderer.setColor(0, 255, 0, (float) 0.5);
             for (AbstractUnit unit : worldController.getUnitContainer().getAllUnits()) {
                 for (AbstractTurret turret : unit.getTurrets()) {
                     if (turret.hasTarget()) {
-                        shapeRenderer.begin(ShapeRenderer.ShapeType.Line);
-                        shapeRenderer.setColor(0, 255, 0, (float) 0.5);
-                        shapeRenderer.line(worldController.getGameplayScreen().getWorldCamera().project(
-                                        new Vector3(turret.getX(), turret.getY(), 0)),
-                                worldController.getGameplayScreen().getWorldCamera().project(
-                                        new Vector3(turret.getTarget().getX(), turret.getTarget().getY(), 0))
-                        );
-                        shapeRenderer.end();
+                        worldShapeRenderer.line(turret.getInterpolatedX(interpolationAlpha),
+                                turret.getInterpolatedY(interpolationAlpha),
+                                turret.getTarget().getInterpolatedX(interpolationAlpha),
+                                turret.getTarget().getInterpolatedY(interpolationAlpha));
                     }
                 }
             }
+            worldShapeRenderer.end();
         }
 
     }
@@ -385,9 +479,20 @@ public class WorldRenderer implements Disposable {
     @Override
     public void dispose() {
         defaultFont.dispose();
+        shapeRenderer.dispose();
+        worldShapeRenderer.dispose();
+        if (land != null) {
+            land.dispose();
+        }
     }
 
     public void setWorldController(final WorldController worldController) {
         this.worldController = worldController;
+
+        if (land != null) {
+            land.dispose();
+        }
+        land = new Land(60, 60, worldController.TILE_SIZE_PIXELS, // TODO Map size
+                SpriteContainer.getInstance().getSprite("grass1"));
     }
 }
\ No newline at end of file
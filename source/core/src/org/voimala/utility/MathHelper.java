@@ -131,4 +131,74 @@ public class MathHelper {
     public static double getDistanceBetweenPoints(float x1, float y1, float x2, float y2) {
         return Math.sqrt((Math.pow(x2 - x1, 2)) + (Math.pow(y1 - y2, 2)));
     }
+
+    /** Faster than getDistanceBetweenPoints since there is no need to take the square root.
+     * The differences are calculated the same way as in getDistanceBetweenPoints, so comparing squared distances
+     * gives the same order as comparing distances. */
+    public static double getDistanceBetweenPointsSquared(float x1, float y1, float x2, float y2) {
+        double differenceX = x2 - x1;
+        double differenceY = y1 - y2;
+        return differenceX * differenceX + differenceY * differenceY;
+    }
+
+    /** @return Returns the point on the segment (as a fraction 0 - 1 of the segment's length from the start point)
+     * where the segment enters the circle. Returns 0 if the start point is inside the circle and -1 if the segment
+     * does not touch the circle at all. */
+    public static double getSegmentCircleIntersectionFraction(final float startX,
+                                                              final float startY,
+                                                              final float endX,
+                                                              final float endY,
+                                                              final float circleX,
+                                                              final float circleY,
+                                                              final float radius) {
+        double segmentX = endX - startX;
+        double segmentY = endY - startY;
+        double startToCircleX = startX - circleX;
+        double startToCircleY = startY - circleY;
+
+        double c = startToCircleX * startToCircleX + startToCircleY * startToCircleY - (double) radius * radius;
+        if (c <= 0) {
+            return 0; // Starts inside the circle
+        }
+
+        double a = segmentX * segmentX + segmentY * segmentY;
+        if (a == 0) {
+            return -1; // Segment is only a point, and it is outside the circle
+        }
+
+        double b = 2 * (startToCircleX * segmentX + startToCircleY * segmentY);
+        double discriminant = b * b - 4 * a * c;
+        if (discriminant < 0) {
+            return -1;
+        }
+
+        double fraction = (-b - Math.sqrt(discriminant)) / (2 * a);
+        if (fraction < 0 || fraction > 1) {
+            return -1;
+        }
+
+        return fraction;
+    }
+
+    /** @return Returns the squared distance between the point and the closest point of the segment. */
+    public static double getDistanceBetweenPointAndSegmentSquared(final float pointX,
+                                                                  final float pointY,
+                                                                  final float startX,
+                                                                  final float startY,
+                                                                  final float endX,
+                                                                  final float endY) {
+        double segmentX = endX - startX;
+        double segmentY = endY - startY;
+        double lengthSquared = segmentX * segmentX + segmentY * segmentY;
+
+        double fraction = 0;
+        if (lengthSquared > 0) {
+            fraction = ((pointX - startX) * segmentX + (pointY - startY) * segmentY) / lengthSquared;
+            fraction = Math.max(0, Math.min(1, fraction));
+        }
+
+        double differenceX = startX + segmentX * fraction - pointX;
+        double differenceY = startY + segmentY * fraction - pointY;
+        return differenceX * differenceX + differenceY * differenceY;
+    }
 }
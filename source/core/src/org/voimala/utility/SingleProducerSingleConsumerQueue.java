@@ -0,0 +1,54 @@
+package org.voimala.utility;
+
+/** Lock-free unbounded queue for passing objects from one thread to another. Only one thread may call offer
+ * and only one (other) thread may call poll and isEmpty.
+ *
+ * The producer links a new node to the tail. Writing the volatile next field publishes the node and its value
+ * to the consumer, so neither thread ever waits for the other. */
+public class SingleProducerSingleConsumerQueue<T> {
+
+    private static class Node<T> {
+        private T value;
+        private volatile Node<T> next;
+
+        private Node(final T value) {
+            this.value = value;
+        }
+    }
+
+    /** The node before the first value. Used only by the consumer. */
+    private Node<T> head = new Node<T>(null);
+    /** The last node. Used only by the producer. */
+    private Node<T> tail = head;
+
+    /** Called only by the producer thread. */
+    public void offer(final T value) {
+        if (value == null) {
+            throw new NullPointerException("Value can not be null.");
+        }
+
+        Node<T> node = new Node<T>(value);
+        tail.next = node;
+        tail = node;
+    }
+
+    /** Called only by the consumer thread.
+     * @return Returns the oldest value, or null if the queue is empty. */
+    public T poll() {
+        Node<T> next = head.next;
+        if (next == null) {
+            return null;
+        }
+
+        T value = next.value;
+        next.value = null; // The node becomes the new head, do not keep the value alive
+        head = next;
+        return value;
+    }
+
+    /** Called only by the consumer thread. */
+    public boolean isEmpty() {
+        return head.next == null;
+    }
+
+}
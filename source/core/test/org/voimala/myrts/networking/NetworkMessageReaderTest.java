@@ -0,0 +1,121 @@
+package org.voimala.myrts.networking;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class NetworkMessageReaderTest extends TestCase {
+
+    @Test
+    public void testReadMessagesFromOneChunk() throws IOException {
+        NetworkMessageReader reader = createReader("<PING><CHAT|Player|Hello!><HASH|4|abc>", 1000, 1000);
+
+        assertEquals("<PING>", reader.readMessage());
+        assertEquals("<CHAT|Player|Hello!>", reader.readMessage());
+        assertEquals("<HASH|4|abc>", reader.readMessage());
+        assertNull(reader.readMessage());
+    }
+
+    @Test
+    public void testReadMessagesSplitToManyChunks() throws IOException {
+        NetworkMessageReader reader = createReader("<CHAT|Pelaaja|Hyv\u00e4\u00e4 p\u00e4iv\u00e4\u00e4!><INPUT|4|[NO_INPUT]>", 1000, 3);
+
+        assertEquals("<CHAT|Pelaaja|Hyv\u00e4\u00e4 p\u00e4iv\u00e4\u00e4!>", reader.readMessage());
+        assertEquals("<INPUT|4|[NO_INPUT]>", reader.readMessage());
+        assertNull(reader.readMessage());
+    }
+
+    @Test
+    public void testTooLongMessageIsRejected() throws IOException {
+        NetworkMessageReader reader = createReader("<PING><CHAT|Player|Too long message><PONG>", 10, 4);
+
+        assertEquals("<PING>", reader.readMessage());
+        assertEquals("message>", reader.readMessage()); // The rest of the rejected message is read as usual
+        assertEquals("<PONG>", reader.readMessage());
+        assertNull(reader.readMessage());
+    }
+
+    @Test
+    public void testReadBinaryMessagesBetweenTextMessages() throws IOException {
+        byte[] binaryMessage = new BinaryMessageWriter(7)
+                .writeVarLong(300)
+                .writeVarLong(Long.MAX_VALUE)
+                .writeSignedVarLong(-5)
+                .writeCoordinate(123.4f)
+                .writeCoordinate(-0.5f)
+                .toFrame();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write("<PING>".getBytes(NetworkMessageReader.CHARSET));
+        content.write(binaryMessage);
+        content.write(binaryMessage);
+        content.write("<PONG>".getBytes(NetworkMessageReader.CHARSET));
+
+        final List<BinaryMessageReader> binaryMessages = new ArrayList<BinaryMessageReader>();
+        NetworkMessageReader.BinaryMessageListener listener = new NetworkMessageReader.BinaryMessageListener() {
+            @Override
+            public void onBinaryMessage(final byte[] buffer, final int offset, final int length) {
+                byte[] copy = new byte[length];
+                System.arraycopy(buffer, offset, copy, 0, length);
+                binaryMessages.add(new BinaryMessageReader(copy, 0, length));
+            }
+        };
+
+        for (int maxBytesPerRead : new int[] {1, 5, 1000}) {
+            binaryMessages.clear();
+            NetworkMessageReader reader = new NetworkMessageReader(
+                    new ChunkedInputStream(content.toByteArray(), maxBytesPerRead), 1000, listener);
+
+            assertEquals("<PING>", reader.readMessage());
+            assertEquals("<PONG>", reader.readMessage());
+            assertNull(reader.readMessage());
+            assertEquals(2, binaryMessages.size());
+
+            for (BinaryMessageReader message : binaryMessages) {
+                assertEquals(7, message.getOpcode());
+                assertEquals(300, message.readVarLong());
+                assertEquals(Long.MAX_VALUE, message.readVarLong());
+                assertEquals(-5, message.readSignedVarLong());
+                assertEquals(123.375f, message.readCoordinate()); // Rounded to 1/16 pixels
+                assertEquals(-0.5f, message.readCoordinate());
+                assertFalse(message.hasRemaining());
+            }
+        }
+    }
+
+    private NetworkMessageReader createReader(final String content,
+                                              final long maxMessageLengthCharacters,
+                                              final int maxBytesPerRead) {
+        return new NetworkMessageReader(
+                new ChunkedInputStream(content.getBytes(NetworkMessageReader.CHARSET), maxBytesPerRead),
+                maxMessageLengthCharacters);
+    }
+
+    /** Returns at most the given number of bytes per read, like a socket which receives data in parts. */
+    private static class ChunkedInputStream extends InputStream {
+
+        private final ByteArrayInputStream inputStream;
+        private final int maxBytesPerRead;
+
+        private ChunkedInputStream(final byte[] content, final int maxBytesPerRead) {
+            this.inputStream = new ByteArrayInputStream(content);
+            this.maxBytesPerRead = maxBytesPerRead;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return inputStream.read();
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            return inputStream.read(buffer, offset, Math.min(length, maxBytesPerRead));
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package org.voimala.myrts.networking;
+
+import com.badlogic.gdx.math.Vector2;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.voimala.myrts.screens.gameplay.input.PlayerInput;
+import org.voimala.myrts.screens.gameplay.input.commands.AbstractRTSCommand;
+import org.voimala.myrts.screens.gameplay.input.commands.RTSCommandEmpty;
+import org.voimala.myrts.screens.gameplay.input.commands.RTSCommandMoveUnit;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+public class RTSProtocolManagerTest extends TestCase {
+
+    @Test
+    public void testGetNetworkMessageOpcode() {
+        assertEquals("CHAT", RTSProtocolManager.getNetworkMessageOpcode("<CHAT|Player|Hello>"));
+        assertEquals("COMMAND_AND_CONQUER", RTSProtocolManager.getNetworkMessageOpcode("<COMMAND_AND_CONQUER>"));
+        assertEquals("HASH_TREE", RTSProtocolManager.getNetworkMessageOpcode("<HASH_TREE|4|R|>"));
+        assertNull(RTSProtocolManager.getNetworkMessageOpcode("CHAT|Player|Hello>"));
+        assertNull(RTSProtocolManager.getNetworkMessageOpcode(">"));
+    }
+
+    @Test
+    public void testRegisteredHandlerIsCalledAndCounted() {
+        RTSProtocolManager protocolManager = RTSProtocolManager.getInstance();
+        final StringBuilder handledMessages = new StringBuilder();
+        protocolManager.registerNetworkMessageHandler("TEST_OPCODE", new NetworkMessageHandler() {
+            @Override
+            public boolean handleNetworkMessage(final String message, final NetworkConnection client) {
+                if (message.equals("<TEST_OPCODE|FAIL>")) {
+                    throw new IllegalStateException("Test exception");
+                }
+
+                handledMessages.append(message);
+                return true;
+            }
+        });
+        ListenSocketThread client = new ListenSocketThread("localhost", 0);
+        long unknownMessageCount = protocolManager.getUnknownNetworkMessageCount();
+
+        assertTrue(protocolManager.handleNetworkMessage("<TEST_OPCODE|1>", client));
+        assertTrue(protocolManager.handleNetworkMessage("<TEST_OPCODE>", client));
+        assertFalse(protocolManager.handleNetworkMessage("<TEST_OPCODE|FAIL>", client));
+        assertFalse(protocolManager.handleNetworkMessage("<TEST_OPCODE_2|1>", client));
+
+        assertEquals("<TEST_OPCODE|1><TEST_OPCODE>", handledMessages.toString());
+        assertEquals(2, protocolManager.getHandledNetworkMessageCount("TEST_OPCODE"));
+        assertEquals(1, protocolManager.getRejectedNetworkMessageCount("TEST_OPCODE"));
+        assertEquals(unknownMessageCount + 1, protocolManager.getUnknownNetworkMessageCount());
+    }
+
+    @Test
+    public void testPingIsAnsweredAndRoundTripIsMeasured() {
+        RTSProtocolManager protocolManager = RTSProtocolManager.getInstance();
+        final StringBuilder sentMessages = new StringBuilder();
+        ListenSocketThread client = new ListenSocketThread("localhost", 0) {
+            @Override
+            public synchronized void sendMessage(final String message) {
+                sentMessages.append(message);
+            }
+        };
+
+        assertTrue(protocolManager.handleNetworkMessage("<PING|123456>", client));
+        assertEquals("<PONG|123456>", sentMessages.toString());
+
+        long timestamp = ConnectionStatistics.getTimestampMs();
+        assertTrue(protocolManager.handleNetworkMessage(protocolManager.createNetworkMessagePong(timestamp), client));
+        LatencyStatistics roundTripStatistics = client.getConnectionStatistics().getRoundTripStatistics();
+        assertEquals(1, roundTripStatistics.getSampleCount());
+        assertTrue(roundTripStatistics.getLatest() >= 0);
+        assertEquals(1, client.getConnectionStatistics().getMessageGapStatistics().getSampleCount());
+    }
+
+    @Test
+    public void testTextAndBinaryTurnsCarrySameCommands() throws IOException {
+        final RTSProtocolManager protocolManager = RTSProtocolManager.getInstance();
+        SortedMap<Integer, List<AbstractRTSCommand>> commands = new TreeMap<Integer, List<AbstractRTSCommand>>();
+        List<AbstractRTSCommand> player1Commands = new ArrayList<AbstractRTSCommand>();
+        // Not representable in the binary form, as if it came from a text INPUT message
+        player1Commands.add(new RTSCommandMoveUnit(1, 5, new Vector2(300.123f, -200.987f)));
+        player1Commands.add(new RTSCommandMoveUnit(1, 6, new Vector2(0.03f, 1234567.1f)));
+        commands.put(1, player1Commands);
+        List<AbstractRTSCommand> player2Commands = new ArrayList<AbstractRTSCommand>();
+        player2Commands.add(new RTSCommandEmpty(2));
+        commands.put(2, player2Commands);
+        TurnAggregator.Turn turn = new TurnAggregator.Turn(7, commands);
+
+        String textMessage = protocolManager.createNetworkMessageTurn(turn);
+        final List<PlayerInput> binaryInputs = new ArrayList<PlayerInput>();
+        NetworkMessageReader reader = new NetworkMessageReader(
+                new ByteArrayInputStream(protocolManager.createBinaryNetworkMessageTurn(turn)),
+                1000,
+                new NetworkMessageReader.BinaryMessageListener() {
+                    @Override
+                    public void onBinaryMessage(final byte[] buffer, final int offset, final int length) {
+                        BinaryMessageReader message = new BinaryMessageReader(buffer, offset, length);
+                        long simTick = message.readVarLong();
+                        binaryInputs.addAll(protocolManager.readBinaryTurnPlayerInputs(message, simTick));
+                    }
+                });
+        assertNull(reader.readMessage());
+
+        List<PlayerInput> textInputs = protocolManager.readTurnPlayerInputs(
+                protocolManager.splitNetworkMessage(textMessage), 7);
+        assertEquals(3, textInputs.size());
+        assertEquals(textInputs.size(), binaryInputs.size());
+        for (int i = 0; i < textInputs.size(); i++) {
+            PlayerInput textInput = textInputs.get(i);
+            PlayerInput binaryInput = binaryInputs.get(i);
+            assertEquals(textInput.getPlayerNumber(), binaryInput.getPlayerNumber());
+            assertEquals(textInput.getSimTick(), binaryInput.getSimTick());
+            assertEquals(textInput.getCommand().getCommandName(), binaryInput.getCommand().getCommandName());
+            if (textInput.getCommand() instanceof RTSCommandMoveUnit) {
+                RTSCommandMoveUnit textCommand = (RTSCommandMoveUnit) textInput.getCommand();
+                RTSCommandMoveUnit binaryCommand = (RTSCommandMoveUnit) binaryInput.getCommand();
+                assertEquals(textCommand.getObjectId(), binaryCommand.getObjectId());
+                assertEquals(textCommand.getTargetPosition(), binaryCommand.getTargetPosition());
+            }
+        }
+    }
+
+}
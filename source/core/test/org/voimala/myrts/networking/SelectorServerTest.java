@@ -0,0 +1,143 @@
+package org.voimala.myrts.networking;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class SelectorServerTest extends TestCase {
+
+    @Test
+    public void testServerRepliesToManyClients() throws Exception {
+        final int clientCount = 10;
+        final CountDownLatch disconnectedClients = new CountDownLatch(clientCount);
+        final SelectorServer server = new SelectorServer(new SelectorServer.Listener() {
+            @Override
+            public void onConnected(final SelectorClientConnection connection) {
+            }
+
+            @Override
+            public void onMessage(final SelectorClientConnection connection, final String message) {
+                connection.sendMessage("<ECHO|" + message.substring(1));
+            }
+
+            @Override
+            public void onBinaryMessage(final SelectorClientConnection connection,
+                                        final byte[] buffer,
+                                        final int offset,
+                                        final int length) {
+                BinaryMessageReader message = new BinaryMessageReader(buffer, offset, length);
+                connection.sendMessage(new BinaryMessageWriter(message.getOpcode())
+                        .writeVarLong(message.readVarLong() + 1)
+                        .toFrame());
+            }
+
+            @Override
+            public void onDisconnected(final SelectorClientConnection connection) {
+                disconnectedClients.countDown();
+            }
+        }, 1000, 1000000);
+        server.bind(0);
+        Thread serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                server.run();
+            }
+        });
+        serverThread.start();
+
+        try {
+            Socket[] clients = new Socket[clientCount];
+            for (int i = 0; i < clientCount; i++) {
+                clients[i] = new Socket("localhost", server.getLocalPort());
+                clients[i].setSoTimeout(5000);
+                OutputStream outputStream = clients[i].getOutputStream();
+                outputStream.write(new BinaryMessageWriter(5).writeVarLong(i).toFrame());
+                outputStream.write(("<CHAT|Player" + i + "|Hello!>").getBytes(NetworkMessageReader.CHARSET));
+                outputStream.flush();
+            }
+
+            for (int i = 0; i < clientCount; i++) {
+                final long[] binaryMessageValue = {-1};
+                NetworkMessageReader reader = new NetworkMessageReader(clients[i].getInputStream(), 1000,
+                        new NetworkMessageReader.BinaryMessageListener() {
+                            @Override
+                            public void onBinaryMessage(final byte[] buffer, final int offset, final int length) {
+                                binaryMessageValue[0] = new BinaryMessageReader(buffer, offset, length).readVarLong();
+                            }
+                        });
+
+                // The binary reply is read before the text reply
+                assertEquals("<ECHO|CHAT|Player" + i + "|Hello!>", reader.readMessage());
+                assertEquals(i + 1, binaryMessageValue[0]);
+            }
+
+            for (Socket client : clients) {
+                client.close();
+            }
+
+            assertTrue(disconnectedClients.await(5, TimeUnit.SECONDS));
+        } finally {
+            server.stop();
+            serverThread.join(5000);
+        }
+    }
+
+    @Test
+    public void testSharedMessagesAreWrittenInOrder() throws Exception {
+        final byte[] sharedMessage = "<CHAT|Server|Hello everyone!>".getBytes(NetworkMessageReader.CHARSET);
+        final int messageCount = 1000;
+        final SelectorServer server = new SelectorServer(new SelectorServer.Listener() {
+            @Override
+            public void onConnected(final SelectorClientConnection connection) {
+                for (int i = 0; i < messageCount; i++) {
+                    connection.sendMessage(sharedMessage);
+                    connection.sendMessage("<SIM_TICK|" + i + ">");
+                }
+            }
+
+            @Override
+            public void onMessage(final SelectorClientConnection connection, final String message) {
+            }
+
+            @Override
+            public void onBinaryMessage(final SelectorClientConnection connection,
+                                        final byte[] buffer,
+                                        final int offset,
+                                        final int length) {
+            }
+
+            @Override
+            public void onDisconnected(final SelectorClientConnection connection) {
+            }
+        }, 1000, 1000000);
+        server.bind(0);
+        Thread serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                server.run();
+            }
+        });
+        serverThread.start();
+
+        try {
+            Socket client = new Socket("localhost", server.getLocalPort());
+            client.setSoTimeout(5000);
+            NetworkMessageReader reader = new NetworkMessageReader(client.getInputStream(), 1000);
+
+            for (int i = 0; i < messageCount; i++) {
+                assertEquals("<CHAT|Server|Hello everyone!>", reader.readMessage());
+                assertEquals("<SIM_TICK|" + i + ">", reader.readMessage());
+            }
+
+            client.close();
+        } finally {
+            server.stop();
+            serverThread.join(5000);
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.voimala.myrts.networking;
+
+import com.badlogic.gdx.math.Vector2;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.voimala.myrts.screens.gameplay.input.commands.AbstractRTSCommand;
+import org.voimala.myrts.screens.gameplay.input.commands.RTSCommandEmpty;
+import org.voimala.myrts.screens.gameplay.input.commands.RTSCommandMoveUnit;
+import org.voimala.myrts.screens.gameplay.input.commands.RTSCommandType;
+import org.voimala.myrts.screens.gameplay.multiplayer.MultiplayerSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TurnAggregatorTest extends TestCase {
+
+    private final List<Integer> players = Arrays.asList(1, 2);
+
+    @Test
+    public void testTurnIsCompletedWhenAllPlayersHaveSentInputs() {
+        TurnAggregator turnAggregator = new TurnAggregator(1000);
+
+        turnAggregator.addPlayerInputs(1, 1, createMoveCommands(1, 5), 0);
+        assertTrue(turnAggregator.pollCompletedTurns(players, 10).isEmpty());
+
+        turnAggregator.addPlayerInputs(2, 2, createMoveCommands(2, 6), 20); // Player 2 is already one tick ahead
+        assertTrue(turnAggregator.pollCompletedTurns(players, 30).isEmpty());
+
+        turnAggregator.addPlayerInputs(1, 2, createMoveCommands(2, 7), 40);
+        List<TurnAggregator.Turn> turns = turnAggregator.pollCompletedTurns(players, 50);
+        assertEquals(1, turns.size());
+        assertEquals(1, turns.get(0).getSimTick());
+        assertEquals(7, ((RTSCommandMoveUnit) turns.get(0).getCommands().get(2).get(0)).getObjectId());
+
+        turnAggregator.addPlayerInputs(2, 1, createMoveCommands(1, 8), 60);
+        turns = turnAggregator.pollCompletedTurns(players, 70);
+        assertEquals(1, turns.size());
+        assertEquals(2, turns.get(0).getSimTick());
+        assertEquals(Arrays.asList(1, 2), new ArrayList<Integer>(turns.get(0).getCommands().keySet()));
+        assertEquals(3, turnAggregator.getNextTurnSimTick());
+    }
+
+    @Test
+    public void testFirstTurnIsFirstSimTickOfClients() {
+        TurnAggregator turnAggregator = new TurnAggregator(1000);
+        long firstSimTick = MultiplayerSynchronizationManager.FIRST_SIM_TICK;
+        assertEquals(firstSimTick, MultiplayerSynchronizationManager.getInstance().getSimTick());
+        assertEquals(firstSimTick, turnAggregator.getNextTurnSimTick());
+
+        // Inputs before the first SimTick are dropped and do not block the first turn
+        turnAggregator.addPlayerInputs(firstSimTick - 1, 1, createMoveCommands(1, 4), 0);
+        turnAggregator.addPlayerInputs(firstSimTick, 1, createMoveCommands(1, 5), 0);
+        turnAggregator.addPlayerInputs(firstSimTick, 2, createMoveCommands(2, 6), 10);
+
+        List<TurnAggregator.Turn> turns = turnAggregator.pollCompletedTurns(players, 20);
+        assertEquals(1, turns.size());
+        assertEquals(firstSimTick, turns.get(0).getSimTick());
+        assertEquals(5, ((RTSCommandMoveUnit) turns.get(0).getCommands().get(1).get(0)).getObjectId());
+        assertEquals(1, turns.get(0).getCommands().get(1).size());
+    }
+
+    @Test
+    public void testMissingInputsAreEmptyAfterDeadline() {
+        TurnAggregator turnAggregator = new TurnAggregator(1000);
+
+        turnAggregator.addPlayerInputs(1, 1, createMoveCommands(1, 5), 0);
+        assertTrue(turnAggregator.pollCompletedTurns(players, 999).isEmpty());
+
+        List<TurnAggregator.Turn> turns = turnAggregator.pollCompletedTurns(players, 1000);
+        assertEquals(1, turns.size());
+        List<AbstractRTSCommand> player2Commands = turns.get(0).getCommands().get(2);
+        assertEquals(1, player2Commands.size());
+        assertEquals(RTSCommandType.EMPTY, player2Commands.get(0).getCommandName());
+
+        // Late inputs are dropped
+        turnAggregator.addPlayerInputs(1, 2, createMoveCommands(2, 6), 1100);
+        assertTrue(turnAggregator.pollCompletedTurns(players, 5000).isEmpty());
+    }
+
+    @Test
+    public void testTurnMessage() {
+        TurnAggregator turnAggregator = new TurnAggregator(1000);
+        turnAggregator.addPlayerInputs(1, 2, new ArrayList<AbstractRTSCommand>(), 0);
+        List<AbstractRTSCommand> commands = createMoveCommands(1, 5);
+        commands.add(new RTSCommandEmpty(1));
+        turnAggregator.addPlayerInputs(1, 1, commands, 0);
+
+        TurnAggregator.Turn turn = turnAggregator.pollCompletedTurns(players, 0).get(0);
+        assertEquals("<TURN|1|1|[UNIT_MOVE?5?100.0?200.0][NO_INPUT]|2|[NO_INPUT]>",
+                RTSProtocolManager.getInstance().createNetworkMessageTurn(turn));
+    }
+
+    private List<AbstractRTSCommand> createMoveCommands(final int playerNumber, final long unitId) {
+        List<AbstractRTSCommand> commands = new ArrayList<AbstractRTSCommand>();
+        commands.add(new RTSCommandMoveUnit(playerNumber, unitId, new Vector2(100, 200)));
+        return commands;
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.voimala.myrts.networking;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.voimala.myrts.screens.gameplay.multiplayer.TurnConfig;
+
+public class TurnSchedulerTest extends TestCase {
+
+    @Test
+    public void testDefaultConfigIsKeptWithLowLatency() {
+        TurnScheduler turnScheduler = new TurnScheduler(30);
+        assertNull(turnScheduler.createTurnConfig(1));
+
+        turnScheduler.setPlayerLatency(1, 100, 20);
+        assertNull(turnScheduler.createTurnConfig(2));
+    }
+
+    @Test
+    public void testInputLatencyFollowsSlowestPlayer() {
+        TurnScheduler turnScheduler = new TurnScheduler(30);
+        turnScheduler.setPlayerLatency(1, 50, 10);
+        turnScheduler.setPlayerLatency(2, 300, 50);
+
+        // 400 ms needs 3 SimTicks of 5 world updates
+        assertConfig(11, 5, 3, turnScheduler.createTurnConfig(10));
+        assertNull(turnScheduler.createTurnConfig(10)); // The previous config is not in use yet
+        assertNull(turnScheduler.createTurnConfig(11));
+
+        // 1200 ms does not fit in the maximum input delay, so SimTicks are made longer
+        turnScheduler.setPlayerLatency(2, 1000, 100);
+        assertConfig(15, 9, TurnScheduler.MAX_INPUT_DELAY_SIM_TICKS, turnScheduler.createTurnConfig(12));
+
+        // Latency is decreased only after the config has been in use for a while
+        turnScheduler.removePlayer(2);
+        assertNull(turnScheduler.createTurnConfig(20));
+        assertConfig(74, TurnConfig.DEFAULT_TURN_LENGTH_WORLD_UPDATES, TurnConfig.DEFAULT_INPUT_DELAY_SIM_TICKS,
+                turnScheduler.createTurnConfig(70));
+    }
+
+    @Test
+    public void testLatencyStatistics() {
+        LatencyStatistics latencyStatistics = new LatencyStatistics(4);
+        assertEquals(0, latencyStatistics.getAverage());
+
+        latencyStatistics.addSample(1000); // Drops out of the window
+        latencyStatistics.addSample(100);
+        latencyStatistics.addSample(200);
+        latencyStatistics.addSample(100);
+        latencyStatistics.addSample(200);
+
+        assertEquals(4, latencyStatistics.getSampleCount());
+        assertEquals(150, latencyStatistics.getAverage());
+        assertEquals(50, latencyStatistics.getJitter());
+        assertEquals(200, latencyStatistics.getMax());
+        assertEquals(200, latencyStatistics.getLatest());
+        assertEquals(100, latencyStatistics.getMin());
+        assertEquals(100, latencyStatistics.getPercentile(50));
+        assertEquals(200, latencyStatistics.getPercentile(95));
+    }
+
+    private void assertConfig(final long effectiveSimTick,
+                              final int turnLengthWorldUpdates,
+                              final int inputDelaySimTicks,
+                              final TurnConfig turnConfig) {
+        assertNotNull(turnConfig);
+        assertEquals(effectiveSimTick, turnConfig.getEffectiveSimTick());
+        assertEquals(turnLengthWorldUpdates, turnConfig.getTurnLengthWorldUpdates());
+        assertEquals(inputDelaySimTicks, turnConfig.getInputDelaySimTicks());
+    }
+
+}
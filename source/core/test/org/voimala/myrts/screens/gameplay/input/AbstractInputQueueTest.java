@@ -0,0 +1,42 @@
+package org.voimala.myrts.screens.gameplay.input;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.voimala.myrts.screens.gameplay.input.commands.RTSCommandEmpty;
+
+public class AbstractInputQueueTest extends TestCase {
+
+    @Test
+    public void testFindInputsByPlayerNumberAndSimTick() {
+        AbstractInputQueue inputQueue = new AbstractInputQueue() {};
+        PlayerInput input1 = new PlayerInput(1, 5, new RTSCommandEmpty(1));
+        PlayerInput input2 = new PlayerInput(1, 5, new RTSCommandEmpty(1));
+        inputQueue.storePlayerInput(input1);
+        inputQueue.storePlayerInput(input2);
+        inputQueue.storePlayerInput(new PlayerInput(2, 5, new RTSCommandEmpty(2)));
+        inputQueue.storePlayerInput(new PlayerInput(1, 6, new RTSCommandEmpty(1)));
+
+        assertEquals(2, inputQueue.findInputsByPlayerNumberAndSimTick(1, 5).size());
+        assertSame(input1, inputQueue.findInputsByPlayerNumberAndSimTick(1, 5).get(0));
+        assertSame(input2, inputQueue.findInputsByPlayerNumberAndSimTick(1, 5).get(1));
+        assertEquals(1, inputQueue.findInputsByPlayerNumberAndSimTick(2, 5).size());
+        assertTrue(inputQueue.findInputsByPlayerNumberAndSimTick(2, 6).isEmpty());
+        assertTrue(inputQueue.doesPlayerInputExist(1, 6));
+        assertFalse(inputQueue.doesPlayerInputExist(2, 6));
+    }
+
+    @Test
+    public void testOldInputsAreRemoved() {
+        AbstractInputQueue inputQueue = new AbstractInputQueue() {};
+        for (long simTick = 1; simTick <= 1000; simTick++) {
+            inputQueue.storePlayerInput(new PlayerInput(1, simTick, new RTSCommandEmpty(1)));
+            inputQueue.storePlayerInput(new PlayerInput(1, simTick + 1, new RTSCommandEmpty(1)));
+            inputQueue.removeInputsUntilSimTick(simTick);
+            assertEquals(1, inputQueue.getStoredSimTickCount());
+        }
+
+        assertFalse(inputQueue.doesPlayerInputExist(1, 1000));
+        assertTrue(inputQueue.doesPlayerInputExist(1, 1001));
+    }
+
+}
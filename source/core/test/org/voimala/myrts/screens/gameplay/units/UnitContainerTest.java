@@ -0,0 +1,248 @@
+package org.voimala.myrts.screens.gameplay.units;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.voimala.myrts.screens.gameplay.units.infantry.M4Unit;
+import org.voimala.myrts.screens.gameplay.world.WorldController;
+import org.voimala.utility.MathHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class UnitContainerTest extends TestCase {
+
+    @Test
+    public void testFindUnitsInRadiusMatchesAllUnits() {
+        WorldController worldController = new WorldController();
+        UnitContainer unitContainer = createContainerWithRandomUnits(worldController);
+
+        Random random = new Random(2);
+        for (int i = 0; i < 100; i++) {
+            float x = random.nextFloat() * 6000 - 1000;
+            float y = random.nextFloat() * 6000 - 1000;
+            float radius = random.nextFloat() * 1500;
+            int team = random.nextInt(3) - 1;
+
+            List<AbstractUnit> expected = new ArrayList<AbstractUnit>();
+            for (AbstractUnit unit : unitContainer.getAllUnits()) {
+                if ((team == UnitContainer.ANY_TEAM || unit.getTeam() == team)
+                        && MathHelper.getDistanceBetweenPointsSquared(x, y, unit.getX(), unit.getY())
+                        <= (double) radius * radius) {
+                    expected.add(unit);
+                }
+            }
+
+            assertTrue(containSameUnits(expected, unitContainer.findUnitsInRadius(x, y, radius, team)));
+        }
+    }
+
+    @Test
+    public void testFindUnitsInRectangleMatchesAllUnits() {
+        WorldController worldController = new WorldController();
+        UnitContainer unitContainer = createContainerWithRandomUnits(worldController);
+
+        Random random = new Random(3);
+        for (int i = 0; i < 100; i++) {
+            Rectangle rectangle = new Rectangle(
+                    random.nextFloat() * 6000 - 1000,
+                    random.nextFloat() * 6000 - 1000,
+                    random.nextFloat() * 2000,
+                    random.nextFloat() * 2000);
+
+            List<AbstractUnit> expected = new ArrayList<AbstractUnit>();
+            for (AbstractUnit unit : unitContainer.getAllUnits()) {
+                if (rectangle.contains(unit.getX(), unit.getY())) {
+                    expected.add(unit);
+                }
+            }
+
+            assertTrue(containSameUnits(expected, unitContainer.findUnitsInRectangle(rectangle)));
+        }
+    }
+
+    @Test
+    public void testFindUnitsNearRectangleMatchesAllUnitsInOrder() {
+        WorldController worldController = new WorldController();
+        UnitContainer unitContainer = createContainerWithRandomUnits(worldController);
+        float margin = 300;
+
+        Random random = new Random(4);
+        for (int i = 0; i < 100; i++) {
+            Rectangle rectangle = new Rectangle(
+                    random.nextFloat() * 6000 - 1000,
+                    random.nextFloat() * 6000 - 1000,
+                    random.nextFloat() * 2000,
+                    random.nextFloat() * 2000);
+            Rectangle expandedRectangle = new Rectangle(rectangle.x - margin,
+                    rectangle.y - margin,
+                    rectangle.width + margin * 2,
+                    rectangle.height + margin * 2);
+
+            List<AbstractUnit> expected = new ArrayList<AbstractUnit>();
+            for (AbstractUnit unit : unitContainer.getAllUnits()) {
+                if (expandedRectangle.contains(unit.getX(), unit.getY())) {
+                    expected.add(unit);
+                }
+            }
+
+            List<AbstractUnit> actual = new ArrayList<AbstractUnit>();
+            unitContainer.findUnitsNearRectangle(rectangle, margin, actual);
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testFindClosestEnemyUnitInRadiusMatchesLinearSearch() {
+        WorldController worldController = new WorldController();
+        UnitContainer unitContainer = createContainerWithRandomUnits(worldController);
+
+        // Units at the same position should be chosen in the same order as before.
+        Random random = new Random(4);
+        for (int i = 0; i < 20; i++) {
+            M4Unit unit = new M4Unit(worldController);
+            unit.setPosition(new Vector2(1000, 1000));
+            unit.setTeam(random.nextInt(3));
+            unitContainer.addUnit(unit);
+        }
+
+        for (int i = 0; i < 300; i++) {
+            float x = random.nextFloat() * 5000 - 1000;
+            float y = random.nextFloat() * 5000 - 1000;
+            float radius = random.nextFloat() * 2000;
+            int team = random.nextInt(3);
+
+            assertEquals(findClosestEnemyUnitInRadiusLinearly(unitContainer, x, y, radius, team),
+                    unitContainer.findClosestEnemyUnitInRadius(x, y, radius, team));
+        }
+    }
+
+    @Test
+    public void testFindFirstUnitIntersectingSegmentMatchesAllUnits() {
+        WorldController worldController = new WorldController();
+        UnitContainer unitContainer = createContainerWithRandomUnits(worldController);
+
+        Random random = new Random(5);
+        for (int i = 0; i < 300; i++) {
+            float startX = random.nextFloat() * 5000 - 1000;
+            float startY = random.nextFloat() * 5000 - 1000;
+            float endX = startX + random.nextFloat() * 4000 - 2000;
+            float endY = startY + random.nextFloat() * 4000 - 2000;
+
+            AbstractUnit expected = null;
+            double expectedFraction = 0;
+            for (AbstractUnit unit : unitContainer.getAllUnits()) {
+                double fraction = unit.getSegmentCollisionFraction(startX, startY, endX, endY);
+                if (fraction >= 0 && (expected == null || fraction < expectedFraction)) {
+                    expected = unit;
+                    expectedFraction = fraction;
+                }
+            }
+
+            assertEquals(expected, unitContainer.findFirstUnitIntersectingSegment(startX, startY, endX, endY, null));
+        }
+    }
+
+    @Test
+    public void testUnitIsFoundAfterMoving() {
+        WorldController worldController = new WorldController();
+        UnitContainer unitContainer = new UnitContainer();
+        M4Unit unit = new M4Unit(worldController);
+        unit.setPosition(new Vector2(100, 100));
+        unitContainer.addUnit(unit);
+
+        unit.setPosition(new Vector2(3000, 3000));
+        assertTrue(unitContainer.findUnitsInRadius(100, 100, 50, UnitContainer.ANY_TEAM).isEmpty());
+        assertEquals(1, unitContainer.findUnitsInRadius(3000, 3000, 50, UnitContainer.ANY_TEAM).size());
+
+        unitContainer.removeUnit(unit);
+        assertTrue(unitContainer.findUnitsInRadius(3000, 3000, 50, UnitContainer.ANY_TEAM).isEmpty());
+    }
+
+    @Test
+    public void testRemoveUnitsKeepsOrder() {
+        WorldController worldController = new WorldController();
+        UnitContainer unitContainer = createContainerWithRandomUnits(worldController);
+
+        List<AbstractUnit> unitsToBeRemoved = new ArrayList<AbstractUnit>();
+        List<AbstractUnit> remainingUnits = new ArrayList<AbstractUnit>();
+        for (int i = 0; i < unitContainer.getAllUnits().size(); i++) {
+            AbstractUnit unit = unitContainer.getAllUnits().get(i);
+            if (i % 3 == 0) {
+                unitsToBeRemoved.add(unit);
+                unitsToBeRemoved.add(unit); // Same unit twice
+            } else {
+                remainingUnits.add(unit);
+            }
+        }
+
+        unitContainer.removeUnits(unitsToBeRemoved);
+
+        assertEquals(remainingUnits, unitContainer.getAllUnits());
+        for (AbstractUnit unit : unitsToBeRemoved) {
+            assertNull(unitContainer.findUnitById(unit.getObjectId()));
+            assertFalse(unitContainer.findUnitsByTeam(unit.getTeam()).contains(unit));
+        }
+        assertEquals(remainingUnits.size(),
+                unitContainer.findUnitsInRadius(0, 0, 100000, UnitContainer.ANY_TEAM).size());
+    }
+
+    private UnitContainer createContainerWithRandomUnits(final WorldController worldController) {
+        UnitContainer unitContainer = new UnitContainer();
+        Random random = new Random(1);
+
+        for (int i = 0; i < 200; i++) {
+            M4Unit unit = new M4Unit(worldController);
+            unit.setPosition(new Vector2(random.nextFloat() * 4000 - 500, random.nextFloat() * 4000 - 500));
+            unit.setTeam(random.nextInt(2));
+            unitContainer.addUnit(unit);
+        }
+
+        // Move some units after they have been added
+        for (AbstractUnit unit : unitContainer.getAllUnits()) {
+            if (random.nextBoolean()) {
+                unit.setPosition(new Vector2(random.nextFloat() * 4000 - 500, random.nextFloat() * 4000 - 500));
+            }
+        }
+
+        return unitContainer;
+    }
+
+    /** Works the same way as the original implementation of AbstractTurret.findClosestEnemyInRange */
+    private AbstractUnit findClosestEnemyUnitInRadiusLinearly(final UnitContainer unitContainer,
+                                                            final float x,
+                                                            final float y,
+                                                            final float radius,
+                                                            final int team) {
+        ArrayList<AbstractUnit> unitsInRange = new ArrayList<AbstractUnit>();
+        for (int i = 0; i <= 8; i++) {
+            if (i == team) {
+                continue;
+            }
+
+            for (AbstractUnit unit : unitContainer.findUnitsByTeam(i)) {
+                if (MathHelper.getDistanceBetweenPoints(x, y, unit.getX(), unit.getY()) <= radius) {
+                    unitsInRange.add(unit);
+                }
+            }
+        }
+
+        AbstractUnit closestUnit = null;
+        for (AbstractUnit unit : unitsInRange) {
+            if (closestUnit == null
+                    || MathHelper.getDistanceBetweenPoints(x, y, unit.getX(), unit.getY())
+                    < MathHelper.getDistanceBetweenPoints(x, y, closestUnit.getX(), closestUnit.getY())) {
+                closestUnit = unit;
+            }
+        }
+
+        return closestUnit;
+    }
+
+    private boolean containSameUnits(final List<AbstractUnit> expected, final List<AbstractUnit> actual) {
+        return expected.size() == actual.size() && expected.containsAll(actual);
+    }
+
+}
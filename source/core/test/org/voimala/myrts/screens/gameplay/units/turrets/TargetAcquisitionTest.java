@@ -0,0 +1,52 @@
+package org.voimala.myrts.screens.gameplay.units.turrets;
+
+import com.badlogic.gdx.math.Vector2;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.voimala.myrts.screens.gameplay.units.AbstractUnit;
+import org.voimala.myrts.screens.gameplay.units.infantry.M4Unit;
+import org.voimala.myrts.screens.gameplay.world.WorldController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TargetAcquisitionTest extends TestCase {
+
+    @Test
+    public void testAcquiredTargetsMatchSearchOfEachTurret() {
+        WorldController worldController = new WorldController();
+        Random random = new Random(2);
+
+        for (int i = 0; i < 300; i++) {
+            M4Unit unit = new M4Unit(worldController);
+            // Positions are on a coarse lattice, so many units are at exactly the same distance from a turret
+            unit.setPosition(new Vector2(random.nextInt(60) * 100, random.nextInt(60) * 100));
+            unit.setTeam(random.nextInt(9));
+            worldController.getUnitContainer().addUnit(unit);
+        }
+
+        List<AbstractTurret> turrets = new ArrayList<AbstractTurret>();
+        List<AbstractUnit> expectedTargets = new ArrayList<AbstractUnit>();
+        TargetAcquisition targetAcquisition = new TargetAcquisition(worldController);
+        for (AbstractUnit unit : worldController.getUnitContainer().getAllUnits()) {
+            for (AbstractTurret turret : unit.getTurrets()) {
+                turrets.add(turret);
+                expectedTargets.add(turret.findClosestEnemyInRange());
+                targetAcquisition.requestTarget(turret);
+            }
+        }
+
+        targetAcquisition.acquireTargets();
+
+        int turretsWithTarget = 0;
+        for (int i = 0; i < turrets.size(); i++) {
+            assertSame(expectedTargets.get(i), turrets.get(i).getTarget());
+            if (turrets.get(i).hasTarget()) {
+                turretsWithTarget++;
+            }
+        }
+        assertTrue(turretsWithTarget > 0);
+    }
+
+}
@@ -0,0 +1,35 @@
+package org.voimala.myrts.screens.gameplay.world;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.voimala.myrts.screens.gameplay.ammunition.M4Bullet;
+import org.voimala.myrts.screens.gameplay.weapons.WeaponOptions;
+
+public class GameObjectPoolTest extends TestCase {
+
+    @Test
+    public void testFreedObjectsAreRemovedFromTransformStoreWhenPoolIsFull() {
+        final WorldController worldController = new WorldController();
+        GameObjectPool<M4Bullet> pool = new GameObjectPool<M4Bullet>(1) {
+            @Override
+            protected M4Bullet newObject() {
+                return new M4Bullet(worldController, new WeaponOptions());
+            }
+        };
+
+        int transformCount = worldController.getTransformStore().size();
+        M4Bullet bullet1 = pool.obtain();
+        M4Bullet bullet2 = pool.obtain();
+        assertEquals(transformCount + 2, worldController.getTransformStore().size());
+
+        pool.free(bullet1);
+        pool.free(bullet2); // The pool is full
+        assertEquals(1, pool.getFreeObjectCount());
+        assertEquals(transformCount, worldController.getTransformStore().size());
+
+        pool.obtain();
+        assertEquals(0, pool.getFreeObjectCount());
+        assertEquals(transformCount + 1, worldController.getTransformStore().size());
+    }
+
+}
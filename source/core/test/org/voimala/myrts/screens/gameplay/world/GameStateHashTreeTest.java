@@ -0,0 +1,71 @@
+package org.voimala.myrts.screens.gameplay.world;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.voimala.myrts.networking.DesyncLocator;
+import org.voimala.myrts.screens.gameplay.units.AbstractUnit;
+
+public class GameStateHashTreeTest extends TestCase {
+
+    @Test
+    public void testSameWorldsHaveSameRootHash() {
+        GameStateHashTree hashTree1 = new GameStateHashTree();
+        hashTree1.build(new WorldController());
+        GameStateHashTree hashTree2 = new GameStateHashTree();
+        hashTree2.build(new WorldController());
+
+        assertEquals(hashTree1.getRootHash(), hashTree2.getRootHash());
+        assertEquals(hashTree1.getChildEntries(GameStateHashTree.ROOT_PATH),
+                hashTree2.getChildEntries(GameStateHashTree.ROOT_PATH));
+    }
+
+    @Test
+    public void testDesyncLocatorFindsDifferentObject() {
+        WorldController worldController1 = new WorldController();
+        WorldController worldController2 = new WorldController();
+        AbstractUnit unit = worldController2.getUnitContainer().getAllUnits().get(100);
+        unit.setPosition(unit.getX() + 0.001f, unit.getY());
+
+        GameStateHashTree hashTree1 = new GameStateHashTree();
+        hashTree1.build(worldController1, 4);
+        GameStateHashTree hashTree2 = new GameStateHashTree();
+        hashTree2.build(worldController2, 4);
+        assertFalse(hashTree1.getRootHash() == hashTree2.getRootHash());
+
+        DesyncLocator desyncLocator = new DesyncLocator(4, 1, 2);
+        int requests = 0;
+        while (!desyncLocator.isFinished()) {
+            String path = desyncLocator.getPath();
+            assertFalse(desyncLocator.addResponse(1, 4, path, hashTree1.getChildEntries(path)));
+            assertTrue(desyncLocator.addResponse(2, 4, path, hashTree2.getChildEntries(path)));
+            requests++;
+            assertTrue(requests < 10);
+        }
+
+        assertEquals("Object id " + unit.getObjectId() + " differs between players 1 and 2.",
+                desyncLocator.getResult());
+    }
+
+    @Test
+    public void testDesyncLocatorNoticesMissingObject() {
+        WorldController worldController1 = new WorldController();
+        WorldController worldController2 = new WorldController();
+        AbstractUnit unit = worldController2.getUnitContainer().getAllUnits().get(0);
+        worldController2.getUnitContainer().removeUnit(unit);
+
+        GameStateHashTree hashTree1 = new GameStateHashTree();
+        hashTree1.build(worldController1, 4);
+        GameStateHashTree hashTree2 = new GameStateHashTree();
+        hashTree2.build(worldController2, 4);
+
+        DesyncLocator desyncLocator = new DesyncLocator(4, 1, 2);
+        while (!desyncLocator.isFinished()) {
+            String path = desyncLocator.getPath();
+            desyncLocator.addResponse(1, 4, path, hashTree1.getChildEntries(path));
+            desyncLocator.addResponse(2, 4, path, hashTree2.getChildEntries(path));
+        }
+
+        assertTrue(desyncLocator.getResult(), desyncLocator.getResult().startsWith("Objects differ"));
+    }
+
+}
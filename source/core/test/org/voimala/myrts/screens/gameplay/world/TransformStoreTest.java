@@ -0,0 +1,41 @@
+package org.voimala.myrts.screens.gameplay.world;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+public class TransformStoreTest extends TestCase {
+
+    @Test
+    public void testInterpolatedTransformIsBetweenWorldUpdates() {
+        TransformStore transformStore = new TransformStore();
+        int slot = transformStore.add(null);
+        transformStore.setPosition(slot, 100, 200);
+        transformStore.setAngle(slot, 350);
+
+        transformStore.storeRenderTransforms();
+        transformStore.setPosition(slot, 200, 100);
+        transformStore.setAngle(slot, 10);
+
+        assertEquals(100f, transformStore.getInterpolatedX(slot, 0), 0.001f);
+        assertEquals(150f, transformStore.getInterpolatedX(slot, 0.5f), 0.001f);
+        assertEquals(150f, transformStore.getInterpolatedY(slot, 0.5f), 0.001f);
+        assertEquals(200f, transformStore.getInterpolatedX(slot, 1), 0.001f);
+        // Turns the shorter way trough 0 degrees
+        assertEquals(360f, transformStore.getInterpolatedAngle(slot, 0.5f), 0.001f);
+        assertEquals(370f, transformStore.getInterpolatedAngle(slot, 1), 0.001f);
+    }
+
+    @Test
+    public void testObjectAddedDuringWorldUpdateIsAtCurrentPosition() {
+        TransformStore transformStore = new TransformStore(1);
+        transformStore.add(null);
+        transformStore.storeRenderTransforms();
+
+        int slot = transformStore.add(null); // The store grows here
+        transformStore.setPosition(slot, 300, 400);
+
+        assertEquals(300f, transformStore.getInterpolatedX(slot, 0), 0.001f);
+        assertEquals(400f, transformStore.getInterpolatedY(slot, 0), 0.001f);
+    }
+
+}
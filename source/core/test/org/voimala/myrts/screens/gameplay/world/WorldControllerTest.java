@@ -68,5 +68,24 @@ public class WorldControllerTest extends TestCase {
         assertEquals(originalWorldHash, worldControllerClone.getGameStateHash());
     }
 
+    @Test
+    public void testGameStateHashChangesWhenStateChanges() {
+        WorldController worldController = new WorldController();
+        String originalWorldHash = worldController.getGameStateHash();
+        assertEquals(16, originalWorldHash.length());
+        assertEquals(originalWorldHash, worldController.getGameStateHash());
+
+        AbstractUnit unit = worldController.getUnitContainer().getAllUnits().get(0);
+        float originalX = unit.getX();
+        unit.setPosition(originalX + 0.001f, unit.getY());
+        assertFalse(originalWorldHash.equals(worldController.getGameStateHash()));
+
+        unit.setPosition(originalX, unit.getY());
+        assertEquals(originalWorldHash, worldController.getGameStateHash());
+
+        unit.getTurrets().get(0).setTarget(worldController.getUnitContainer().getAllUnits().get(5));
+        assertFalse(originalWorldHash.equals(worldController.getGameStateHash()));
+    }
+
     // TODO Create two simulations are make sure they are deterministic
 }
\ No newline at end of file
@@ -135,4 +135,26 @@ public class MathHelperTest {
         Assert.assertTrue(distance == 0);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testGetSegmentCircleIntersectionFractionHit() {
+        Assert.assertEquals(0.4, MathHelper.getSegmentCircleIntersectionFraction(0, 0, 100, 0, 50, 0, 10), 0.0001);
+    }
+
+    @Test
+    public void testGetSegmentCircleIntersectionFractionMiss() {
+        Assert.assertEquals(-1, MathHelper.getSegmentCircleIntersectionFraction(0, 0, 100, 0, 50, 20, 10), 0.0001);
+        Assert.assertEquals(-1, MathHelper.getSegmentCircleIntersectionFraction(0, 0, 30, 0, 50, 0, 10), 0.0001);
+        Assert.assertEquals(-1, MathHelper.getSegmentCircleIntersectionFraction(0, 0, 100, 0, -20, 0, 10), 0.0001);
+    }
+
+    @Test
+    public void testGetSegmentCircleIntersectionFractionStartInside() {
+        Assert.assertEquals(0, MathHelper.getSegmentCircleIntersectionFraction(48, 0, 100, 0, 50, 0, 10), 0.0001);
+    }
+
+    @Test
+    public void testGetDistanceBetweenPointAndSegmentSquared() {
+        Assert.assertEquals(100, MathHelper.getDistanceBetweenPointAndSegmentSquared(50, 10, 0, 0, 100, 0), 0.0001);
+        Assert.assertEquals(25, MathHelper.getDistanceBetweenPointAndSegmentSquared(-3, 4, 0, 0, 100, 0), 0.0001);
+    }
+}
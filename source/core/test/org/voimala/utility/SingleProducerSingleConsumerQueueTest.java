@@ -0,0 +1,55 @@
+package org.voimala.utility;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+public class SingleProducerSingleConsumerQueueTest extends TestCase {
+
+    @Test
+    public void testValuesArePolledInOrder() {
+        SingleProducerSingleConsumerQueue<Integer> queue = new SingleProducerSingleConsumerQueue<Integer>();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        queue.offer(1);
+        queue.offer(2);
+        assertFalse(queue.isEmpty());
+        assertEquals(Integer.valueOf(1), queue.poll());
+        queue.offer(3);
+        assertEquals(Integer.valueOf(2), queue.poll());
+        assertEquals(Integer.valueOf(3), queue.poll());
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testValuesArePassedBetweenThreadsInOrder() throws InterruptedException {
+        final SingleProducerSingleConsumerQueue<Integer> queue = new SingleProducerSingleConsumerQueue<Integer>();
+        final int valueCount = 100000;
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < valueCount; i++) {
+                    queue.offer(i);
+                }
+            }
+        });
+        producer.start();
+
+        int expectedValue = 0;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (expectedValue < valueCount && System.currentTimeMillis() < deadline) {
+            Integer value = queue.poll();
+            if (value != null) {
+                assertEquals(expectedValue, value.intValue());
+                expectedValue++;
+            }
+        }
+
+        producer.join();
+        assertEquals(valueCount, expectedValue);
+        assertTrue(queue.isEmpty());
+    }
+
+}